@@ -6,6 +6,10 @@
    import mars.mips.hardware.*;
 	
    import java.util.*;
+   import java.util.concurrent.Callable;
+   import java.util.concurrent.ExecutionException;
+   import java.util.concurrent.ForkJoinPool;
+   import java.util.concurrent.Future;
    import java.io.*;
    import java.awt.event.*;
    import javax.swing.*;
@@ -58,6 +62,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       private ArrayList parsedList;
       private ArrayList machineList;
       private BackStepper backStepper;
+      private ExecutionHistory executionHistory;
       private SymbolTable localSymbolTable;
       private MacroPool macroPool;
       private ArrayList<SourceLine> sourceLineList;
@@ -159,6 +164,19 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          return machineList;
       }
    
+   /**
+    * Installs machine statements assembled earlier, in place of assembling the program.
+    * Like a successful assemble, this also creates a new BackStepper and ExecutionHistory.
+    * @param machineList ArrayList of ProgramStatement, already stored in memory.
+    * @see mars.assembler.ObjectCache
+    **/
+    
+       public void setMachineList(ArrayList machineList) {
+         this.machineList = machineList;
+         this.backStepper = new BackStepper();
+         this.executionHistory = new ExecutionHistory();
+      }
+   
    
    /**
     * Returns BackStepper associated with this program.  It is created upon successful assembly.
@@ -169,6 +187,16 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          return backStepper;
       }
    
+   /**
+    * Returns ExecutionHistory associated with this program, used for reverse execution.
+    * It is created upon successful assembly.
+    * @return ExecutionHistory object, null if there is none.
+    **/
+    
+       public ExecutionHistory getExecutionHistory() {
+         return executionHistory;
+      }
+   
    /**
     * Returns SymbolTable associated with this program.  It is created at assembly time,
     * and stores local labels (those not declared using .globl directive).
@@ -178,6 +206,16 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          return localSymbolTable;
       }
    
+   /**
+    * Sets SymbolTable for this program's local labels.  Normally created when the
+    * program is tokenized; this is for programs loaded without being tokenized.
+    * @param localSymbolTable the program's local symbol table
+    **/
+    
+       public void setLocalSymbolTable(SymbolTable localSymbolTable) {
+         this.localSymbolTable = localSymbolTable;
+      }
+   
    /**
     * Returns status of BackStepper associated with this program.  
     * @return true if enabled, false if disabled or non-existant.
@@ -268,11 +306,14 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             filenames.add(0, exceptionHandler);
             leadFilePosition = 1;
          }
+         MIPSprogram[] preparees = new MIPSprogram[filenames.size()];
          for (int i=0; i<filenames.size(); i++) {
             String filename = (String) filenames.get(i);  
-            MIPSprogram preparee = (filename.equals(leadFilename)) ? this : new MIPSprogram();
-            preparee.readSource(filename);
-            preparee.tokenize();
+            preparees[i] = (filename.equals(leadFilename)) ? this : new MIPSprogram();
+         }
+         readAndTokenize(filenames, preparees);
+         for (int i=0; i<preparees.length; i++) {
+            MIPSprogram preparee = preparees[i];
          	// I want "this" MIPSprogram to be the first in the list...except for exception handler
             if (preparee == this && MIPSprogramsToAssemble.size()>0) {
                MIPSprogramsToAssemble.add(leadFilePosition,preparee);
@@ -284,6 +325,62 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          return MIPSprogramsToAssemble;
       }
    
+   // Read and tokenize each file into its MIPSprogram.  Files are independent of
+   // each other until assembly, so when there are several they are done concurrently
+   // on the common fork/join pool.  If any fail, the exception thrown is the one for
+   // the earliest failing file in the list, the same one a sequential pass would throw.
+   // The lead file named twice means one MIPSprogram twice, so that is done in sequence.
+       private static void readAndTokenize(ArrayList filenames, final MIPSprogram[] preparees) throws ProcessingException {
+         if (preparees.length == 1 || new HashSet(Arrays.asList(preparees)).size() < preparees.length) {
+            for (int i=0; i<preparees.length; i++) {
+               preparees[i].readSource((String) filenames.get(i));
+               preparees[i].tokenize();
+            }
+            return;
+         }
+         ArrayList tasks = new ArrayList();
+         for (int i=0; i<preparees.length; i++) {
+            final MIPSprogram preparee = preparees[i];
+            final String filename = (String) filenames.get(i);
+            tasks.add(
+                   new Callable() {
+                      public Object call() {
+                        try {
+                           preparee.readSource(filename);
+                           preparee.tokenize();
+                        } 
+                            catch (ProcessingException e) {
+                              return e;
+                           }
+                        return null;
+                     }
+                  });
+         }
+         List results = ForkJoinPool.commonPool().invokeAll(tasks);
+         for (int i=0; i<results.size(); i++) {
+            ProcessingException failure = null;
+            try {
+               failure = (ProcessingException) ((Future) results.get(i)).get();
+            } 
+                catch (ExecutionException e) {
+                  Throwable cause = e.getCause();
+                  if (cause instanceof RuntimeException) {
+                     throw (RuntimeException) cause;
+                  }
+                  throw (Error) cause;
+               } 
+                catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                  ErrorList errors = new ErrorList();
+                  errors.add(new ErrorMessage((MIPSprogram)null,0,0,e.toString()));
+                  throw new ProcessingException(errors);
+               }
+            if (failure != null) {
+               throw failure;
+            }
+         }
+      }
+   
    /**
     * Assembles the MIPS source program. All files comprising the program must have 
     * already been tokenized.  Assembler warnings are not considered errors.
@@ -314,9 +411,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        public ErrorList assemble(ArrayList MIPSprogramsToAssemble, boolean extendedAssemblerEnabled,
               boolean warningsAreErrors) throws ProcessingException {
          this.backStepper = null;
+         this.executionHistory = null;
          Assembler asm = new Assembler();
          this.machineList = asm.assemble(MIPSprogramsToAssemble, extendedAssemblerEnabled, warningsAreErrors);
          this.backStepper = new BackStepper();
+         this.executionHistory = new ExecutionHistory();
          return asm.getErrorList();
       }
    
@@ -4,6 +4,7 @@
    import mars.mips.dump.*;
    import mars.mips.hardware.*;
    import mars.simulator.*;
+   import mars.assembler.ObjectCache;
    import java.io.*;
    import java.util.*;
    import java.awt.*;
@@ -53,6 +54,13 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       Valid options (not case sensitive, separate by spaces) are:<br>
             a  -- assemble only, do not simulate<br>
            ad  -- both a and d<br>
+        batch  -- assemble and run many programs in a worker pool.  Option has 2 arguments,<br>
+                  <tt>batch &lt;source&gt; &lt;results&gt;</tt>.  &lt;source&gt; is a directory of programs<br>
+                  or a manifest file; see displayHelp() for details.<br>
+   	  bt<n>  -- use <n> worker threads for batch (default: number of processors).<br>
+        cache  -- keep assembled programs in an object cache.  Option has 1 argument,<br>
+                  <tt>cache &lt;directory&gt;</tt>.  An unchanged program assembled with the same<br>
+                  settings is loaded from the cache instead of being assembled again.<br>
    	  ae<n>  -- terminate MARS with integer exit code <n> if an assemble error occurs.<br>
    	  ascii  -- display memory or register contents interpreted as ASCII
    		   b  -- brief - do not display register/memory address along with contents<br>
@@ -80,6 +88,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  se<n>  -- terminate MARS with integer exit code <n> if a simulation (run) error occurs.<br>
            sm  -- Start execution at Main - Execution will start at program statement globally labeled main.<br>
           smc  -- Self Modifying Code - Program can write and branch to either text or data segment<br>
+        turbo  -- run pre-decoded program in a fast loop whenever no observers would notice<br>
            we  -- assembler Warnings will be considered Errors<br>
           <n>  -- where <n> is an integer maximum count of steps to simulate.<br>
                   If 0, negative or not specified, there is no maximum.<br>
@@ -108,6 +117,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       private boolean startAtMain; // Whether to start execution at statement labeled 'main' 
       private boolean countInstructions; // Whether to count and report number of instructions executed 
       private boolean selfModifyingCode; // Whether to allow self-modifying code (e.g. write to text segment)
+      private boolean turboSimulation; // Whether simulator may use its pre-decoded fast loop
       private static final String rangeSeparator = "-";
       private static final int splashDuration = 2000; // time in MS to show splash screen
       private static final int memoryWordsPerLine = 4; // display 4 memory words, tab separated, per line
@@ -125,6 +135,12 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       private ArrayList programArgumentList; // optional program args for MIPS program (becomes argc, argv)
       private int assembleErrorExitCode;  // MARS command exit code to return if assemble error occurs
       private int simulateErrorExitCode;// MARS command exit code to return if simulation error occurs
+      private String batchSource; // directory or manifest of programs for batch mode, null if not batch
+      private String batchResults; // file to write batch results to
+      private int batchThreads; // worker threads for batch mode
+      private String objectCacheDirectory; // directory of cached assembled programs, null if none
+      private static final String BATCH_INPUT_EXTENSION = ".in";
+      private static final String BATCH_EXPECTED_EXTENSION = ".expected";
    		
       public MarsLaunch(String[] args) {
          boolean gui = (args.length == 0);
@@ -145,9 +161,14 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             startAtMain = false;
             countInstructions = false;
 				selfModifyingCode = false;
+            turboSimulation = false;
             instructionCount = 0;
             assembleErrorExitCode = 0;
             simulateErrorExitCode = 0;
+            batchSource = null;
+            batchResults = null;
+            batchThreads = Runtime.getRuntime().availableProcessors();
+            objectCacheDirectory = null;
             registerDisplayList = new ArrayList();
             memoryDisplayList = new ArrayList();
             filenameList = new ArrayList();
@@ -157,7 +178,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             maxSteps = -1;
             out = System.out;  
             if (parseCommandArgs(args)) {
-               if (runCommand()) {
+               if (batchSource != null) {
+                  runBatch();
+               } 
+               else if (runCommand()) {
                   displayMiscellaneousPostMortem();
                   displayRegistersPostMortem();
                   displayMemoryPostMortem();
@@ -311,6 +335,27 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                }
                continue;
             } 
+            if (args[i].toLowerCase().equals("batch")) {
+               if (args.length <= (i+2)) {
+                  out.println("Batch command line argument requires a source directory or manifest and a results file name.");
+                  argsOK = false;
+               } 
+               else {
+                  batchSource = args[++i];
+                  batchResults = args[++i];
+               }
+               continue;
+            } 
+            if (args[i].toLowerCase().equals("cache")) {
+               if (args.length <= (i+1)) {
+                  out.println("Cache command line argument requires a directory name.");
+                  argsOK = false;
+               } 
+               else {
+                  objectCacheDirectory = args[++i];
+               }
+               continue;
+            } 
             if (args[i].toLowerCase().equals("mc")) {
                String configName = args[++i];
                MemoryConfiguration config = MemoryConfigurations.getConfigurationByName(configName);
@@ -333,6 +378,17 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                   catch (NumberFormatException nfe) {
                    // Let it fall thru and get handled by catch-all
                   }
+            }
+         	// Set number of batch worker threads
+            if (args[i].toLowerCase().indexOf("bt")==0) {
+               String s = args[i].substring(2);					   
+               try {
+                  batchThreads = Integer.decode(s).intValue();
+                  continue;
+               }             
+                  catch (NumberFormatException nfe) {
+                   // Let it fall thru and get handled by catch-all
+                  }
             }
          	// Set MARS exit code for simulate error
             if (args[i].toLowerCase().indexOf("se")==0) {
@@ -399,6 +455,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                selfModifyingCode = true;
                continue;
             }
+            if (args[i].toLowerCase().equals("turbo")) {
+               turboSimulation = true;
+               continue;
+            }
             if (args[i].toLowerCase().equals("ic")) { // added 19-Jul-2012 DPS
                countInstructions = true;
                continue;
@@ -467,6 +527,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          try {
             Globals.getSettings().setBooleanSettingNonPersistent(Settings.DELAYED_BRANCHING_ENABLED, delayedBranching);
             Globals.getSettings().setBooleanSettingNonPersistent(Settings.SELF_MODIFYING_CODE_ENABLED, selfModifyingCode);
+            Globals.getSettings().setBooleanSettingNonPersistent(Settings.TURBO_SIMULATION_ENABLED, turboSimulation);
             File mainFile = new File((String) filenameList.get(0)).getAbsoluteFile();// First file is "main" file
             ArrayList filesToAssemble;
             if (assembleProject) { 
@@ -492,18 +553,31 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             else {
                filesToAssemble = FilenameFinder.getFilenameList(filenameList, FilenameFinder.MATCH_ALL_EXTENSIONS);
             }
-            if (Globals.debug) {
-               out.println("--------  TOKENIZING BEGINS  -----------");
-            }
-            ArrayList MIPSprogramsToAssemble = 
-                      code.prepareFilesForAssembly(filesToAssemble, mainFile.getAbsolutePath(), null);		
-            if (Globals.debug) {
-               out.println("--------  ASSEMBLY BEGINS  -----------");
-            }
-         	// Added logic to check for warnings and print if any. DPS 11/28/06
-            ErrorList warnings = code.assemble(MIPSprogramsToAssemble, pseudo, warningsAreErrors);
-            if (warnings != null && warnings.warningsOccurred()) {
-               out.println(warnings.generateWarningReport());
+            ObjectCache objectCache = (objectCacheDirectory == null) ? null : new ObjectCache(new File(objectCacheDirectory));
+            String cachedWarnings = (objectCache == null) ? null
+                      : objectCache.load(code, filesToAssemble, mainFile.getAbsolutePath(), pseudo, warningsAreErrors);
+            if (cachedWarnings != null) {
+               if (cachedWarnings.length() > 0) {
+                  out.println(cachedWarnings);
+               }
+            } 
+            else {
+               if (Globals.debug) {
+                  out.println("--------  TOKENIZING BEGINS  -----------");
+               }
+               ArrayList MIPSprogramsToAssemble = 
+                         code.prepareFilesForAssembly(filesToAssemble, mainFile.getAbsolutePath(), null);		
+               if (Globals.debug) {
+                  out.println("--------  ASSEMBLY BEGINS  -----------");
+               }
+            	// Added logic to check for warnings and print if any. DPS 11/28/06
+               ErrorList warnings = code.assemble(MIPSprogramsToAssemble, pseudo, warningsAreErrors);
+               if (warnings != null && warnings.warningsOccurred()) {
+                  out.println(warnings.generateWarningReport());
+               }
+               if (objectCache != null) {
+                  objectCache.store(MIPSprogramsToAssemble, warnings, filesToAssemble, mainFile.getAbsolutePath(), pseudo, warningsAreErrors);
+               }
             }
             RegisterFile.initializeProgramCounter(startAtMain); // DPS 3/9/09
             if (simulate) {
@@ -533,6 +607,175 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       }
    
    
+   	//////////////////////////////////////////////////////////////////////
+   	// Batch mode: assemble and run every program named by batchSource in a
+   	// SimulationPool, then write one tab-separated line per program to
+   	// batchResults.  Switches that describe how to run (db, sm, smc, pa, <n>)
+   	// apply to every program; display switches are ignored.
+   	
+      private void runBatch() {
+         ArrayList programs = new ArrayList(); // each element holds program, input, expected file names
+         try {
+            programs = getBatchPrograms(new File(batchSource));
+         } 
+            catch (IOException e) {
+               out.println("Unable to read batch source "+batchSource+": "+e.getMessage());
+               Globals.exitCode = simulateErrorExitCode;
+               return;
+            }
+         ArrayList jobs = new ArrayList();
+         ArrayList expected = new ArrayList();
+         for (int i=0; i<programs.size(); i++) {
+            String[] program = (String[]) programs.get(i);
+            SimulationJob job = new SimulationJob(program[0]);
+            job.setMaxSteps(maxSteps);
+            job.setDelayedBranching(delayedBranching);
+            job.setSelfModifyingCode(selfModifyingCode);
+            job.setStartAtMain(startAtMain);
+            job.setArguments(programArgumentList);
+            String expectedOutput = null;
+            try {
+               job.setInput((program[1] == null) ? null : readFile(program[1]));
+               expectedOutput = (program[2] == null) ? null : readFile(program[2]);
+            } 
+               catch (IOException e) {
+                  out.println("Unable to read input or expected output for "+program[0]+": "+e.getMessage());
+               }
+            expected.add(expectedOutput);
+            jobs.add(job);
+         }
+         SimulationPool pool = new SimulationPool(batchThreads);
+         ArrayList results;
+         try {
+            results = pool.runAll(jobs);
+         } 
+            catch (InterruptedException e) {
+               out.println("Batch interrupted.");
+               return;
+            }
+            finally {
+               pool.shutdown();
+            }
+         int passed = 0, failed = 0, errors = 0;
+         try {
+            PrintStream results_out = new PrintStream(new FileOutputStream(batchResults), false, "UTF-8");
+            results_out.println("file\tstatus\texit\tinstructions\tstdout_sha256\texpected\twall_ms\terrors");
+            for (int i=0; i<results.size(); i++) {
+               SimulationResult result = (SimulationResult) results.get(i);
+               String match = "-";
+               if (expected.get(i) != null) {
+                  if (result.getOutput().equals(expected.get(i))) {
+                     match = "pass";
+                     passed++;
+                  } 
+                  else {
+                     match = "fail";
+                     failed++;
+                  }
+               }
+               if (result.getStatus() != SimulationResult.COMPLETED) {
+                  errors++;
+               }
+               results_out.println(((String[]) programs.get(i))[0] + "\t" + batchStatusName(result.getStatus()) + "\t" +
+                  result.getExitCode() + "\t" + result.getInstructionCount() + "\t" + sha256(result.getOutput()) + "\t" +
+                  match + "\t" + result.getWallTime() + "\t" + escapeBatchField(result.getMessages() + result.getErrorOutput()));
+            }
+            results_out.close();
+         } 
+            catch (IOException e) {
+               out.println("Unable to write batch results to "+batchResults+": "+e.getMessage());
+               Globals.exitCode = simulateErrorExitCode;
+               return;
+            }
+         out.println(results.size()+" programs run, "+errors+" did not complete normally, "+
+            passed+" matched expected output, "+failed+" did not.");
+      }
+   
+   	// A directory contributes every file with an assembly extension, each with
+   	// optional <name>.in and <name>.expected next to it.  Any other file is a
+   	// manifest: one program per line, "program [input [expected]]", relative
+   	// to the manifest's directory; blank lines and lines starting with # are skipped.
+      private ArrayList getBatchPrograms(File source) throws IOException {
+         ArrayList programs = new ArrayList();
+         if (source.isDirectory()) {
+            ArrayList files = FilenameFinder.getFilenameList(source.getPath(), Globals.fileExtensions);
+            Collections.sort(files);
+            for (int i=0; i<files.size(); i++) {
+               String file = (String) files.get(i);
+               String base = file.substring(0, file.lastIndexOf('.'));
+               File input = new File(base + BATCH_INPUT_EXTENSION);
+               File expected = new File(base + BATCH_EXPECTED_EXTENSION);
+               programs.add(new String[] { file,
+                  input.exists() ? input.getPath() : null,
+                  expected.exists() ? expected.getPath() : null });
+            }
+            return programs;
+         }
+         File directory = source.getAbsoluteFile().getParentFile();
+         BufferedReader reader = new BufferedReader(new FileReader(source));
+         String line;
+         while ((line = reader.readLine()) != null) {
+            StringTokenizer st = new StringTokenizer(line);
+            if (!st.hasMoreTokens() || line.trim().startsWith("#")) {
+               continue;
+            }
+            String[] program = new String[3];
+            for (int i=0; i<3 && st.hasMoreTokens(); i++) {
+               File file = new File(st.nextToken());
+               program[i] = (file.isAbsolute() ? file : new File(directory, file.getPath())).getPath();
+            }
+            programs.add(program);
+         }
+         reader.close();
+         return programs;
+      }
+   
+      private static String readFile(String name) throws IOException {
+         InputStream in = new FileInputStream(name);
+         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+         byte[] buffer = new byte[8192];
+         int length;
+         while ((length = in.read(buffer)) > 0) {
+            bytes.write(buffer, 0, length);
+         }
+         in.close();
+         return bytes.toString();
+      }
+   
+      private static String batchStatusName(int status) {
+         switch (status) {
+            case SimulationResult.COMPLETED:      
+               return "ok";
+            case SimulationResult.ASSEMBLY_ERROR: 
+               return "assemble-error";
+            case SimulationResult.RUNTIME_ERROR:  
+               return "runtime-error";
+            case SimulationResult.STEP_LIMIT:     
+               return "step-limit";
+            default:                              
+               return "internal-error";
+         }
+      }
+   
+      private static String sha256(String text) {
+         try {
+            byte[] digest = java.security.MessageDigest.getInstance("SHA-256").digest(text.getBytes("UTF-8"));
+            StringBuffer hex = new StringBuffer();
+            for (int i=0; i<digest.length; i++) {
+               hex.append(Integer.toHexString((digest[i] & 0xFF) | 0x100).substring(1));
+            }
+            return hex.toString();
+         } 
+            catch (Exception e) {
+               return "-";
+            }
+      }
+   
+   	// Keep each result on one line with tab-separated fields.
+      private static String escapeBatchField(String text) {
+         return text.trim().replace("\\", "\\\\").replace("\t", "\\t").replace("\r", "").replace("\n", "\\n");
+      }
+   
    	//////////////////////////////////////////////////////////////////////
       // Check for memory address subrange.  Has to be two integers separated
       // by "-"; no embedded spaces.  e.g. 0x00400000-0x00400010
@@ -792,6 +1035,17 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          out.println("  ae<n>  -- terminate MARS with integer exit code <n> if an assemble error occurs.");
          out.println("  ascii  -- display memory or register contents interpreted as ASCII codes.");
          out.println("      b  -- brief - do not display register/memory address along with contents");
+         out.println("  batch <source> <results> -- assemble and run many programs in one MARS, in a");
+         out.println("            pool of worker threads, and write one tab-separated line of results");
+         out.println("            per program to file <results>.  <source> is either a directory, in");
+         out.println("            which each assembly file is a program with optional standard input");
+         out.println("            <name>"+BATCH_INPUT_EXTENSION+" and expected output <name>"+BATCH_EXPECTED_EXTENSION+", or a manifest file with");
+         out.println("            one 'program [input [expected]]' per line.  db, sm, smc, pa and <n>");
+         out.println("            apply to every program; display options are ignored.");
+         out.println("  bt<n>  -- use <n> worker threads for batch (default: number of processors).");
+         out.println("  cache <directory> -- keep assembled programs in an object cache in <directory>.");
+         out.println("            A program whose source files and assembly settings are unchanged is");
+         out.println("            loaded from the cache instead of being assembled again.");
          out.println("      d  -- display MARS debugging statements");
          out.println("     db  -- MIPS delayed branching is enabled");
          out.println("    dec  -- display memory or register contents in decimal.");
@@ -817,6 +1071,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          out.println("  se<n>  -- terminate MARS with integer exit code <n> if a simulation (run) error occurs.");
          out.println("     sm  -- start execution at statement with global label main, if defined");
          out.println("    smc  -- Self Modifying Code - Program can write and branch to either text or data segment");
+         out.println("  turbo  -- run the pre-decoded program in a fast loop.  Falls back to normal");
+         out.println("            simulation if 'ic' is also used.");
          out.println("    <n>  -- where <n> is an integer maximum count of steps to simulate.");
          out.println("            If 0, negative or not specified, there is no maximum.");
          out.println(" $<reg>  -- where <reg> is number or name (e.g. 5, t3, f10) of register whose ");
@@ -37,6 +37,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  * Represents one assembly/machine statement.  This represents the "bare machine" level.
  * Pseudo-instructions have already been processed at this point and each assembly 
  * statement generated by them is one of these.
+ * <br><br>
+ * Since a statement is kept for every instruction of the program, only the compact
+ * form is stored: the binary code, operand values and a short list of basic statement
+ * elements.  The basic assembly and binary machine code strings are produced from
+ * these when asked for.
  * 
  * @author Pete Sanderson and Jason Bumgarner 
  * @version August 2003
@@ -45,7 +50,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 
     public class ProgramStatement {
       private MIPSprogram sourceMIPSprogram;
-      private String source, basicAssemblyStatement, machineStatement;
+      private String source;
+      private String basicAssemblyStatement, machineStatement; // only if assigned by set methods
+      private boolean basicStatementBuilt, machineStatementBuilt;
       private TokenList originalTokenList, strippedTokenList;
       private BasicStatementList basicStatementList;
       private int[] operands;
@@ -83,6 +90,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          this.basicAssemblyStatement = null;
          this.basicStatementList = new BasicStatementList();
          this.machineStatement = null;
+         this.basicStatementBuilt = this.machineStatementBuilt = false;
          this.binaryStatement = 0;  // nop, or sll $0, $0, 0  (32 bits of 0's)
          this.altered = false;
       }
@@ -106,6 +114,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          this.originalTokenList = this.strippedTokenList = null;
          this.source = "";
          this.machineStatement = this.basicAssemblyStatement = null;
+         this.basicStatementBuilt = this.machineStatementBuilt = false;
          BasicInstruction instr = Globals.instructionSet.findByBinaryCode(binaryStatement);
          if (instr == null) {
             this.operands = null;
@@ -143,7 +152,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             this.numOperands = numOps;
          }
          this.altered = false;
-         this.basicStatementList = buildBasicStatementListFromBinaryCode(binaryStatement, instr, operands, numOperands);
+         this.basicStatementList = null; // built when first displayed, see getPrintableBasicAssemblyStatement()
       }
    	
    
@@ -156,9 +165,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
      **/
        public void buildBasicStatementFromBasicInstruction(ErrorList errors) {
          Token token = strippedTokenList.get(0);
-         String basicStatementElement = token.getValue()+" ";;
-         String basic = basicStatementElement;
-         basicStatementList.addString(basicStatementElement); // the operator
+         basicStatementList.addOperator(token.getValue());
          TokenTypes tokenType, nextTokenType;
          String tokenValue;
          int registerNumber;
@@ -168,9 +175,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             tokenType = token.getType();
             tokenValue = token.getValue();
             if (tokenType == TokenTypes.REGISTER_NUMBER) {
-               basicStatementElement = tokenValue;
-               basic += basicStatementElement;
-               basicStatementList.addString(basicStatementElement);
+               basicStatementList.addString(tokenValue);
                try {
                   registerNumber = RegisterFile.getUserRegister(tokenValue).getNumber();
                } 
@@ -183,9 +188,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             } 
             else if (tokenType == TokenTypes.REGISTER_NAME) {
                registerNumber = RegisterFile.getNumber(tokenValue);
-               basicStatementElement = "$" + registerNumber;
-               basic += basicStatementElement;
-               basicStatementList.addString(basicStatementElement);
+               basicStatementList.addString(registerString(registerNumber, "$", registerStrings));
                if (registerNumber < 0) {
                     // should never happen; should be caught before now...
                   errors.add(new ErrorMessage(this.sourceMIPSprogram, token.getSourceLine(), token.getStartPos(),"invalid register name"));
@@ -195,9 +198,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             } 
             else if (tokenType == TokenTypes.FP_REGISTER_NAME) {
                registerNumber = Coprocessor1.getRegisterNumber(tokenValue);
-               basicStatementElement = "$f" + registerNumber;
-               basic += basicStatementElement;
-               basicStatementList.addString(basicStatementElement);
+               basicStatementList.addString(registerString(registerNumber, "$f", fpRegisterStrings));
                if (registerNumber < 0) {
                     // should never happen; should be caught before now...
                   errors.add(new ErrorMessage(this.sourceMIPSprogram, token.getSourceLine(), token.getStartPos(),"invalid FPU register name"));
@@ -240,7 +241,6 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                   }
                }
             	 //////////////////////////////////////////////////////////////////////
-               basic += address;
                if (absoluteAddress) { // record as address if absolute, value if relative
                   basicStatementList.addAddress(address);
                } 
@@ -295,15 +295,12 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             *        }
             **************************  END DPS 3-July-2008 COMMENTS *******************************/
             
-               basic += tempNumeric;
                basicStatementList.addValue(tempNumeric);  
                this.operands[this.numOperands++] = tempNumeric;
                 ///// End modification 1/7/05 KENV   ///////////////////////////////////////////
             } 
             else {
-               basicStatementElement = tokenValue;
-               basic += basicStatementElement;
-               basicStatementList.addString(basicStatementElement);
+               basicStatementList.addString(tokenValue);
             }
             // add separator if not at end of token list AND neither current nor 
             // next token is a parenthesis
@@ -312,13 +309,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                if (tokenType != TokenTypes.LEFT_PAREN  &&  tokenType != TokenTypes.RIGHT_PAREN  &&
                    nextTokenType != TokenTypes.LEFT_PAREN && nextTokenType != TokenTypes.RIGHT_PAREN)
                {
-                  basicStatementElement = ",";
-                  basic += basicStatementElement;
-                  basicStatementList.addString(basicStatementElement);
+                  basicStatementList.addString(",");
                }
             }
          }
-         this.basicAssemblyStatement = basic;
+         this.basicStatementBuilt = true;
       } //buildBasicStatementFromBasicInstruction()
     
     
@@ -330,10 +325,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
      * @param errors The list of assembly errors encountered so far.  May add to it here.
      **/
        public void buildMachineStatementFromBasicStatement(ErrorList errors) {
-      
+         String mask;
          try {
                //mask indicates bit positions for 'f'irst, 's'econd, 't'hird operand
-            this.machineStatement = ((BasicInstruction)instruction).getOperationMask();
+            mask = ((BasicInstruction)instruction).getOperationMask();
          }   // This means the pseudo-instruction expansion generated another
              // pseudo-instruction (expansion must be to all basic instructions).
          	 // This is an error on the part of the pseudo-instruction author.
@@ -343,7 +338,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                return;            
             }        
          BasicInstructionFormat format = ((BasicInstruction)instruction).getInstructionFormat();
-      
+         // Start from the mask's constant bits, then fill in each operand's bits.
+         int binary = ((BasicInstruction)instruction).getOpcodeMatch();
          if (format == BasicInstructionFormat.J_FORMAT) {
             if ((this.textAddress & 0xF0000000) != (this.operands[0] & 0xF0000000)) {
                // attempt to jump beyond 28-bit byte (26-bit word) address range. 
@@ -354,19 +350,20 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             }
             // Note the  bit shift to make this a word address.
             this.operands[0] = this.operands[0] >>> 2;
-            this.insertBinaryCode(this.operands[0], Instruction.operandMask[0], errors);          
+            binary = this.insertBinaryCode(binary, mask, this.operands[0], Instruction.operandMask[0], errors);          
          } 
          else if (format == BasicInstructionFormat.I_BRANCH_FORMAT) { 
             for (int i=0; i<this.numOperands-1; i++) {
-               this.insertBinaryCode(this.operands[i], Instruction.operandMask[i], errors);
+               binary = this.insertBinaryCode(binary, mask, this.operands[i], Instruction.operandMask[i], errors);
             }
-            this.insertBinaryCode(operands[this.numOperands-1], Instruction.operandMask[this.numOperands-1], errors);         
+            binary = this.insertBinaryCode(binary, mask, operands[this.numOperands-1], Instruction.operandMask[this.numOperands-1], errors);         
          } 
          else {  // R_FORMAT or I_FORMAT
             for (int i=0; i<this.numOperands; i++)
-               this.insertBinaryCode(this.operands[i], Instruction.operandMask[i], errors);
+               binary = this.insertBinaryCode(binary, mask, this.operands[i], Instruction.operandMask[i], errors);
          }
-         this.binaryStatement = Binary.binaryStringToInt(this.machineStatement);
+         this.binaryStatement = binary;
+         this.machineStatementBuilt = true;
          return;
       } // buildMachineStatementFromBasicStatement(
         
@@ -381,11 +378,13 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        public String toString() {
         // a crude attempt at string formatting.  Where's C when you need it?
          String blanks = "                               ";
+         String basicAssemblyStatement = this.getBasicAssemblyStatement();
+         String machineStatement = this.getMachineStatement();
          String result = "["+this.textAddress+"]";
-         if (this.basicAssemblyStatement != null) {
-            int firstSpace = this.basicAssemblyStatement.indexOf(" ");
-            result += blanks.substring(0, 16-result.length()) + this.basicAssemblyStatement.substring(0,firstSpace);
-            result += blanks.substring(0, 24-result.length()) + this.basicAssemblyStatement.substring(firstSpace+1);;
+         if (basicAssemblyStatement != null) {
+            int firstSpace = basicAssemblyStatement.indexOf(" ");
+            result += blanks.substring(0, 16-result.length()) + basicAssemblyStatement.substring(0,firstSpace);
+            result += blanks.substring(0, 24-result.length()) + basicAssemblyStatement.substring(firstSpace+1);;
          } 
          else {
             result += blanks.substring(0, 16 - result.length()) + "0x" + Integer.toString(this.binaryStatement, 16);
@@ -396,11 +395,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             // result += operands[i] + " ";
                result += Integer.toString(operands[i], 16) + " ";
          }
-         if (this.machineStatement != null) {
-            result += "["+Binary.binaryStringToHexString(this.machineStatement)+"]";
-            result += "  "+this.machineStatement.substring(0,6)+"|" + this.machineStatement.substring(6,11)+"|"+
-               this.machineStatement.substring(11,16)+"|" + this.machineStatement.substring(16,21)+"|"+
-               this.machineStatement.substring(21,26)+"|" + this.machineStatement.substring(26,32);
+         if (machineStatement != null) {
+            result += "["+Binary.binaryStringToHexString(machineStatement)+"]";
+            result += "  "+machineStatement.substring(0,6)+"|" + machineStatement.substring(6,11)+"|"+
+               machineStatement.substring(11,16)+"|" + machineStatement.substring(16,21)+"|"+
+               machineStatement.substring(21,26)+"|" + machineStatement.substring(26,32);
          }
          return result;
       } // toString()
@@ -488,6 +487,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
      **/
      
        public String getBasicAssemblyStatement() {
+         if (basicAssemblyStatement == null && basicStatementBuilt) {
+            return basicStatementList.toString(mars.venus.NumberDisplayBaseChooser.DECIMAL,
+                                               mars.venus.NumberDisplayBaseChooser.DECIMAL);
+         }
          return basicAssemblyStatement;
       }
     
@@ -499,6 +502,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
      * @return The Basic Assembly statement.
      **/   
        public String getPrintableBasicAssemblyStatement() {
+         if (basicStatementList == null) {
+            basicStatementList = buildBasicStatementListFromBinaryCode(binaryStatement, 
+                                      (operands == null) ? null : (BasicInstruction) instruction,
+                                      operands, numOperands);
+         }
          return basicStatementList.toString();
       }
    	 
@@ -508,6 +516,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
      **/
      
        public String getMachineStatement() {
+         if (machineStatement == null && machineStatementBuilt) {
+            return Binary.intToBinaryString(binaryStatement);
+         }
          return machineStatement;
       }
     
@@ -572,23 +583,37 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
     
     //////////////////////////////////////////////////////////////////////////////
     //  Given operand (register or integer) and mask character ('f', 's', or 't'),
-    //  generate the correct sequence of bits and replace the mask with them.
-       private void insertBinaryCode(int value, char mask, ErrorList errors) {
-         int startPos = this.machineStatement.indexOf(mask);
-         int endPos = this.machineStatement.lastIndexOf(mask);
+    //  generate the correct sequence of bits and put them into the binary code at
+    //  the positions the operation mask gives for that character.
+       private int insertBinaryCode(int binary, String operationMask, int value, char mask, ErrorList errors) {
+         int startPos = operationMask.indexOf(mask);
+         int endPos = operationMask.lastIndexOf(mask);
          if (startPos == -1 || endPos == -1) { // should NEVER occur
             errors.add(new ErrorMessage(this.sourceMIPSprogram,this.sourceLine,0,
                    "INTERNAL ERROR: mismatch in number of operands in statement vs mask"));
-            return;
+            return binary;
          }
-         String bitString = Binary.intToBinaryString(value, endPos-startPos+1);
-         String state = this.machineStatement.substring(0, startPos) + bitString;
-         if (endPos < this.machineStatement.length()-1)
-            state = state + this.machineStatement.substring(endPos+1);
-         this.machineStatement = state;
-         return;
+         int width = endPos-startPos+1;
+         int shift = operationMask.length()-1-endPos;
+         int fieldMask = ((width == 32) ? -1 : (1 << width) - 1) << shift;
+         return (binary & ~fieldMask) | ((value << shift) & fieldMask);
       } // insertBinaryCode()
    
+   // Shared strings for register operands of basic statements, so each statement
+   // does not need its own copy of "$8" and the like.
+      private static final String[] registerStrings = new String[32];
+      private static final String[] fpRegisterStrings = new String[32];
+   
+       private static String registerString(int registerNumber, String marker, String[] strings) {
+         if (registerNumber < 0 || registerNumber >= strings.length) {
+            return marker + registerNumber;
+         }
+         if (strings[registerNumber] == null) {
+            strings[registerNumber] = marker + registerNumber;
+         }
+         return strings[registerNumber];
+      }
+   
    
     //////////////////////////////////////////////////////////////////////////////
    /*
@@ -605,7 +630,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             return statementList;
          } 
          else {
-            statementList.addString(instr.getName()+" ");
+            statementList.addOperator(instr.getName());
          }
          for (int i=0; i<numOperands;i++) {
             // add separator if not at end of token list AND neither current nor 
@@ -668,45 +693,71 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 //  DPS 29-July-2010
    	 
        private class BasicStatementList {
-      
-         private ArrayList list;
+         // Element kinds, one per element; iValues and sValues hold the element's value.
+         private static final byte STRING = 0, ADDRESS = 1, VALUE = 2, OPERATOR = 3;
+         private byte[] kinds;
+         private int[] iValues;
+         private String[] sValues;
+         private int size;
       
           BasicStatementList() {
-            list = new ArrayList();
+            size = 0;
+         }
+      
+          void addOperator(String operator) {
+            add(OPERATOR, operator, 0);
          }
       
           void addString(String string) {
-            list.add(new ListElement(0, string, 0));
+            add(STRING, string, 0);
          }
       
           void addAddress(int address) {
-            list.add(new ListElement(1, null, address));
+            add(ADDRESS, null, address);
          }
       
           void addValue(int value) {
-            list.add(new ListElement(2, null, value));
+            add(VALUE, null, value);
+         }
+      
+          private void add(byte kind, String sValue, int iValue) {
+            if (kinds == null || size == kinds.length) {
+               int capacity = (kinds == null) ? 8 : 2*kinds.length;
+               kinds = (kinds == null) ? new byte[capacity] : Arrays.copyOf(kinds, capacity);
+               iValues = (iValues == null) ? new int[capacity] : Arrays.copyOf(iValues, capacity);
+               sValues = (sValues == null) ? new String[capacity] : Arrays.copyOf(sValues, capacity);
+            }
+            kinds[size] = kind;
+            iValues[size] = iValue;
+            sValues[size] = sValue;
+            size++;
          }
       
           public String toString() {
             int addressBase =  (Globals.getSettings().getBooleanSetting(Settings.DISPLAY_ADDRESSES_IN_HEX)) ? mars.venus.NumberDisplayBaseChooser.HEXADECIMAL : mars.venus.NumberDisplayBaseChooser.DECIMAL;
             int valueBase =  (Globals.getSettings().getBooleanSetting(Settings.DISPLAY_VALUES_IN_HEX)) ? mars.venus.NumberDisplayBaseChooser.HEXADECIMAL : mars.venus.NumberDisplayBaseChooser.DECIMAL;
-         	
+            return toString(addressBase, valueBase);
+         }
+      
+          String toString(int addressBase, int valueBase) {
             StringBuffer result = new StringBuffer();
-            for (int i=0; i<list.size(); i++) {
-               ListElement e = (ListElement) list.get(i);
-               switch (e.type) {
-                  case 0 :  
-                     result.append(e.sValue);
+            for (int i=0; i<size; i++) {
+               switch (kinds[i]) {
+                  case OPERATOR :
+                     result.append(sValues[i]).append(' ');
+                     break;
+                  case STRING :  
+                     result.append(sValues[i]);
                      break;
-                  case 1 :  
-                     result.append(mars.venus.NumberDisplayBaseChooser.formatNumber(e.iValue, addressBase));
+                  case ADDRESS :  
+                     result.append(mars.venus.NumberDisplayBaseChooser.formatNumber(iValues[i], addressBase));
                      break;
-                  case 2 :  
+                  case VALUE :  
                      if (valueBase == mars.venus.NumberDisplayBaseChooser.HEXADECIMAL) {
-                        result.append(mars.util.Binary.intToHexString(e.iValue)); // 13-July-2011, was: intToHalfHexString()
+                        result.append(mars.util.Binary.intToHexString(iValues[i])); // 13-July-2011, was: intToHalfHexString()
                      } 
                      else {
-                        result.append(mars.venus.NumberDisplayBaseChooser.formatNumber(e.iValue, valueBase));
+                        result.append(mars.venus.NumberDisplayBaseChooser.formatNumber(iValues[i], valueBase));
                      }
                   default:  
                      break;
@@ -714,17 +765,6 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             }
             return result.toString();
          }
-      	
-          private class ListElement {
-            int type;
-            String sValue;
-            int iValue;
-             ListElement(int type, String sValue, int iValue) {
-               this.type = type;
-               this.sValue = sValue;
-               this.iValue = iValue;
-            }
-         }
       }
    
    }
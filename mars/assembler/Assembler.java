@@ -3,6 +3,12 @@
    import java.util.ArrayList;
    import java.util.Collections;
    import java.util.Comparator;
+   import java.util.HashSet;
+   import java.util.List;
+   import java.util.concurrent.Callable;
+   import java.util.concurrent.ExecutionException;
+   import java.util.concurrent.ForkJoinPool;
+   import java.util.concurrent.Future;
 
    import mars.ErrorList;
    import mars.ErrorMessage;
@@ -15,6 +21,7 @@
    import mars.mips.instructions.BasicInstruction;
    import mars.mips.instructions.ExtendedInstruction;
    import mars.mips.instructions.Instruction;
+   import mars.mips.instructions.TranslationTemplate;
    import mars.util.Binary;
    import mars.util.SystemIO;
 
@@ -71,6 +78,7 @@
       private UserKernelAddressSpace dataAddress;
       private DataSegmentForwardReferences currentFileDataSegmentForwardReferences,
       	accumulatedDataSegmentForwardReferences;
+      private ArrayList firstPassSteps; // recorded by parser for bindFirstPass()
    
    /**
     * Parse and generate machine code for the given MIPS program. It must have
@@ -201,67 +209,18 @@
       // TO SECOND PASS. THIS ASSURES ALL SYMBOL TABLES ARE CORRECTLY BUILT.
       // THERE IS ONE GLOBAL SYMBOL TABLE (for identifiers declared .globl) PLUS
       // ONE LOCAL SYMBOL TABLE FOR EACH SOURCE FILE.
+      // Each file is first parsed on its own, concurrently when there are several;
+      // then, file by file in order, the recorded steps are bound to addresses,
+      // symbols and the data segment exactly as a single sequential pass would.
+         List parsing = this.parseSourceFiles(tokenizedProgramFiles, extendedAssemblerEnabled);
          for (int fileIndex = 0; fileIndex < tokenizedProgramFiles.size(); fileIndex++) {
             if (errors.errorLimitExceeded())
                break;
-            this.fileCurrentlyBeingAssembled = (MIPSprogram) tokenizedProgramFiles.get(fileIndex); 
-         // List of labels declared ".globl". new list for each file assembled
-            this.globalDeclarationList = new TokenList();
-         // Parser begins by default in text segment until directed otherwise.
-            this.inDataSegment = false;
-         // Macro segment will be started by .macro directive
-            this.inMacroSegment = false;
-         // Default is to align data from directives on appropriate boundary (word, half, byte)
-         // This can be turned off for remainder of current data segment with ".align 0"
-            this.autoAlign = true;
-         // Default data directive is .word for 4 byte data items
-            this.dataDirective = Directives.WORD;
-         // Clear out (initialize) symbol table related structures.
-            fileCurrentlyBeingAssembled.getLocalSymbolTable().clear();
-            currentFileDataSegmentForwardReferences.clear();
-         // sourceList is an ArrayList of String objects, one per source line.
-         // tokenList is an ArrayList of TokenList objects, one per source line;
-         // each ArrayList in tokenList consists of Token objects.
-            ArrayList<SourceLine> sourceLineList = fileCurrentlyBeingAssembled.getSourceLineList();
-            ArrayList tokenList = fileCurrentlyBeingAssembled.getTokenList();
-            ArrayList parsedList = fileCurrentlyBeingAssembled.createParsedList();
-         // each file keeps its own macro definitions
-            MacroPool macroPool = fileCurrentlyBeingAssembled.createMacroPool();
-         // FIRST PASS OF ASSEMBLER VERIFIES SYNTAX, GENERATES SYMBOL TABLE,
-         // INITIALIZES DATA SEGMENT
-            ArrayList<ProgramStatement> statements;
-            for (int i = 0; i < tokenList.size(); i++) {
-               if (errors.errorLimitExceeded())
-                  break; 
-               for (int z=0; z<((TokenList)tokenList.get(i)).size(); z++) { 
-                  Token t = ((TokenList) tokenList.get(i)).get(z);
-               	// record this token's original source program and line #. Differs from final, if .include used
-                  t.setOriginal(sourceLineList.get(i).getMIPSprogram(),sourceLineList.get(i).getLineNumber());
-               }           	
-               statements = this.parseLine((TokenList) tokenList.get(i),
-                  sourceLineList.get(i).getSource(), 
-                  sourceLineList.get(i).getLineNumber(), 
-                  extendedAssemblerEnabled);
-               if (statements != null) {
-                  parsedList.addAll(statements);
-               }
-            }
-            if (inMacroSegment) {
-               errors.add(new ErrorMessage(fileCurrentlyBeingAssembled,
-                  fileCurrentlyBeingAssembled.getLocalMacroPool().getCurrent().getFromLine(),
-                  0, "Macro started but not ended (no .end_macro directive)"));
-            }
-         // move ".globl" symbols from local symtab to global
-            this.transferGlobals();
-         // Attempt to resolve forward label references that were discovered in operand fields
-         // of data segment directives in current file. Those that are not resolved after this
-         // call are either references to global labels not seen yet, or are undefined.
-         // Cannot determine which until all files are parsed, so copy unresolved entries
-         // into accumulated list and clear out this one for re-use with the next source file.
-            currentFileDataSegmentForwardReferences.resolve(fileCurrentlyBeingAssembled
-               .getLocalSymbolTable());
-            accumulatedDataSegmentForwardReferences.add(currentFileDataSegmentForwardReferences);
-            currentFileDataSegmentForwardReferences.clear();
+            ParsedSourceFile parsed = (parsing == null)
+               ? new Assembler().parseSourceFile((MIPSprogram) tokenizedProgramFiles.get(fileIndex),
+                  extendedAssemblerEnabled)
+               : awaitParsedSourceFile((Future) parsing.get(fileIndex));
+            this.bindFirstPass(parsed);
          } // end of first-pass loop for each MIPSprogram
       
       
@@ -326,37 +285,55 @@
                // ////////////////////////////////////////////////////////////////////////////
                // If we are using compact memory config and there is a compact expansion, use it
                   ArrayList templateList;
+                  TranslationTemplate[] compiledTemplates;
                   if (compactTranslationCanBeApplied(statement)) {
                      templateList = inst.getCompactBasicIntructionTemplateList();
+                     compiledTemplates = inst.getCompactBasicInstructionTranslationTemplates();
                   } 
                   else {
                      templateList = inst.getBasicIntructionTemplateList();
+                     compiledTemplates = inst.getBasicInstructionTranslationTemplates();
                   }
                
                // subsequent ProgramStatement constructor needs the correct text segment address.
                   textAddress.set(statement.getAddress());
                // Will generate one basic instruction for each template in the list.
                   for (int instrNumber = 0; instrNumber < templateList.size(); instrNumber++) {
-                     String instruction = ExtendedInstruction.makeTemplateSubstitutions(
-                        this.fileCurrentlyBeingAssembled,
-                        (String) templateList.get(instrNumber), theTokenList);
-                  // 23 Jan 2008 by DPS. Template substitution may result in no instruction.
-                  // If this is the case, skip remainder of loop iteration. This should only
-                  // happen if template substitution was for "nop" instruction but delayed branching
-                  // is disabled so the "nop" is not generated.
-                     if (instruction == null || instruction == "") {
-                        continue;
+                  // Use the compiled template if there is one; it generates the tokens directly.
+                     TranslationTemplate compiled = (compiledTemplates == null) ? null : compiledTemplates[instrNumber];
+                     TokenList newTokenList = (compiled == null) ? null
+                        : compiled.expand(this.fileCurrentlyBeingAssembled, sourceLine, theTokenList);
+                     ArrayList instrMatches;
+                     if (newTokenList != null) {
+                        if (newTokenList.isEmpty()) {
+                           continue; // delayed branching "nop" not generated, see below
+                        }
+                        if (Globals.debug)
+                           System.out.println("PSEUDO generated: " + newTokenList);
+                        instrMatches = compiled.getInstructionMatches();
+                     } 
+                     else {
+                        String instruction = ExtendedInstruction.makeTemplateSubstitutions(
+                           this.fileCurrentlyBeingAssembled,
+                           (String) templateList.get(instrNumber), theTokenList);
+                     // 23 Jan 2008 by DPS. Template substitution may result in no instruction.
+                     // If this is the case, skip remainder of loop iteration. This should only
+                     // happen if template substitution was for "nop" instruction but delayed branching
+                     // is disabled so the "nop" is not generated.
+                        if (instruction == null || instruction == "") {
+                           continue;
+                        }
+                     
+                     // All substitutions have been made so we have generated
+                     // a valid basic instruction!
+                        if (Globals.debug)
+                           System.out.println("PSEUDO generated: " + instruction);
+                     // For generated instruction: tokenize, build program
+                     // statement, add to list.
+                        newTokenList = new Tokenizer().tokenizeLine(sourceLine,
+                           instruction, errors,false);
+                        instrMatches = this.matchInstruction(newTokenList.get(0));
                      }
-                  
-                  // All substitutions have been made so we have generated
-                  // a valid basic instruction!
-                     if (Globals.debug)
-                        System.out.println("PSEUDO generated: " + instruction);
-                  // For generated instruction: tokenize, build program
-                  // statement, add to list.
-                     TokenList newTokenList = new Tokenizer().tokenizeLine(sourceLine,
-                        instruction, errors,false);
-                     ArrayList instrMatches = this.matchInstruction(newTokenList.get(0));
                      Instruction instr = OperandFormat.bestOperandMatch(newTokenList,
                         instrMatches);
                   // Only first generated instruction is linked to original source
@@ -436,25 +413,198 @@
          }
       }
    
+   // //////////////////////////////////////////////////////////////////////
+   // Starts the first-pass parse of every file on the common fork/join pool and
+   // returns their Futures in file order, or null if the files are to be parsed one
+   // at a time as they are bound: a single file, a file listed twice (one MIPSprogram
+   // cannot be parsed twice at once), or debug output, which would interleave.
+      private List parseSourceFiles(ArrayList tokenizedProgramFiles,
+       	final boolean extendedAssemblerEnabled) {
+         if (tokenizedProgramFiles.size() == 1 || Globals.debug
+         	|| new HashSet(tokenizedProgramFiles).size() < tokenizedProgramFiles.size()) {
+            return null;
+         }
+         ArrayList tasks = new ArrayList();
+         for (int i = 0; i < tokenizedProgramFiles.size(); i++) {
+            final MIPSprogram program = (MIPSprogram) tokenizedProgramFiles.get(i);
+            tasks.add(
+                   new Callable() {
+                      public Object call() {
+                        return new Assembler().parseSourceFile(program, extendedAssemblerEnabled);
+                     }
+                  });
+         }
+         return ForkJoinPool.commonPool().invokeAll(tasks);
+      }
+   
+   // Waits for one file's parse.  A failure is rethrown as it would have been had
+   // the file been parsed in sequence.
+      private static ParsedSourceFile awaitParsedSourceFile(Future parse) throws ProcessingException {
+         try {
+            return (ParsedSourceFile) parse.get();
+         } 
+             catch (ExecutionException e) {
+               Throwable cause = e.getCause();
+               if (cause instanceof RuntimeException) {
+                  throw (RuntimeException) cause;
+               }
+               throw (Error) cause;
+            } 
+             catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+               ErrorList errors = new ErrorList();
+               errors.add(new ErrorMessage((MIPSprogram)null,0,0,e.toString()));
+               throw new ProcessingException(errors);
+            }
+      }
+   
+   // //////////////////////////////////////////////////////////////////////
+   // First pass over one file on its own: verifies syntax, expands macros and matches
+   // instructions to their operands.  Nothing here depends on another file, an address
+   // or a symbol table, so files can be parsed concurrently, each by its own Assembler.
+   // Labels, directives and instructions, which do, are recorded as steps in source
+   // order along with the messages produced so far, for bindFirstPass() to carry out.
+      private ParsedSourceFile parseSourceFile(MIPSprogram program, boolean extendedAssemblerEnabled) {
+         this.errors = new ErrorList();
+         this.firstPassSteps = new ArrayList();
+         this.fileCurrentlyBeingAssembled = program;
+      // Parser begins by default in text segment until directed otherwise.
+         this.inDataSegment = false;
+      // Macro segment will be started by .macro directive
+         this.inMacroSegment = false;
+      // sourceList is an ArrayList of String objects, one per source line.
+      // tokenList is an ArrayList of TokenList objects, one per source line;
+      // each ArrayList in tokenList consists of Token objects.
+         ArrayList<SourceLine> sourceLineList = program.getSourceLineList();
+         ArrayList tokenList = program.getTokenList();
+         program.createParsedList();
+      // each file keeps its own macro definitions
+         program.createMacroPool();
+         for (int i = 0; i < tokenList.size(); i++) {
+            if (errors.errorLimitExceeded())
+               break; 
+            for (int z=0; z<((TokenList)tokenList.get(i)).size(); z++) { 
+               Token t = ((TokenList) tokenList.get(i)).get(z);
+            	// record this token's original source program and line #. Differs from final, if .include used
+               t.setOriginal(sourceLineList.get(i).getMIPSprogram(),sourceLineList.get(i).getLineNumber());
+            }
+            this.recordStep(new FirstPassStep(FirstPassStep.LINE));
+            this.parseLine((TokenList) tokenList.get(i),
+               sourceLineList.get(i).getSource(), 
+               sourceLineList.get(i).getLineNumber(), 
+               extendedAssemblerEnabled);
+         }
+         if (inMacroSegment) {
+            errors.add(new ErrorMessage(program,
+               program.getLocalMacroPool().getCurrent().getFromLine(),
+               0, "Macro started but not ended (no .end_macro directive)"));
+         }
+         return new ParsedSourceFile(program, this.firstPassSteps, this.errors);
+      }
+   
+   // //////////////////////////////////////////////////////////////////////
+   // Carries out the steps recorded for one file by parseSourceFile(), in order, against
+   // the addresses, data segment and global symbol table left by the files before it.
+   // Each parse message is added before the step that followed it, so the messages come
+   // out in the order and number a single sequential pass would produce.
+      private void bindFirstPass(ParsedSourceFile parsed) {
+         this.fileCurrentlyBeingAssembled = parsed.program; 
+      // List of labels declared ".globl". new list for each file assembled
+         this.globalDeclarationList = new TokenList();
+         this.inDataSegment = false;
+         this.inMacroSegment = false;
+      // Default is to align data from directives on appropriate boundary (word, half, byte)
+      // This can be turned off for remainder of current data segment with ".align 0"
+         this.autoAlign = true;
+      // Default data directive is .word for 4 byte data items
+         this.dataDirective = Directives.WORD;
+      // Clear out (initialize) symbol table related structures.
+         fileCurrentlyBeingAssembled.getLocalSymbolTable().clear();
+         currentFileDataSegmentForwardReferences.clear();
+         ArrayList parsedList = fileCurrentlyBeingAssembled.getParsedList();
+         MacroPool macroPool = fileCurrentlyBeingAssembled.getLocalMacroPool();
+         ArrayList messages = parsed.errors.getErrorMessages();
+         int added = 0;
+         for (int i = 0; i < parsed.steps.size(); i++) {
+            FirstPassStep step = (FirstPassStep) parsed.steps.get(i);
+            for ( ; added < step.messages; added++) {
+               errors.add((ErrorMessage) messages.get(added));
+            }
+            if (step.kind == FirstPassStep.LINE) {
+               if (errors.errorLimitExceeded())
+                  break;
+            } 
+            else if (step.kind == FirstPassStep.LABEL) {
+               this.defineLabel(step.token);
+            } 
+            else if (step.kind == FirstPassStep.DIRECTIVE) {
+               this.executeDirective(step.tokens);
+            } 
+            else if (step.kind == FirstPassStep.CONTINUATION) {
+               this.executeDirectiveContinuation(step.tokens);
+            } 
+            else if (step.kind == FirstPassStep.STATEMENT) {
+               parsedList.add(this.placeStatement(step));
+            } 
+            // Macro expansion is replayed so messages carry the same expansion history.
+            else if (step.kind == FirstPassStep.MACRO_CALL) {
+               macroPool.pushOnCallStack(step.token);
+            } 
+            else {
+               macroPool.popFromCallStack();
+            }
+         }
+         for ( ; added < messages.size(); added++) {
+            errors.add((ErrorMessage) messages.get(added));
+         }
+      // move ".globl" symbols from local symtab to global
+         this.transferGlobals();
+      // Attempt to resolve forward label references that were discovered in operand fields
+      // of data segment directives in current file. Those that are not resolved after this
+      // call are either references to global labels not seen yet, or are undefined.
+      // Cannot determine which until all files are parsed, so copy unresolved entries
+      // into accumulated list and clear out this one for re-use with the next source file.
+         currentFileDataSegmentForwardReferences.resolve(fileCurrentlyBeingAssembled
+            .getLocalSymbolTable());
+         accumulatedDataSegmentForwardReferences.add(currentFileDataSegmentForwardReferences);
+         currentFileDataSegmentForwardReferences.clear();
+      }
+   
+      private void recordStep(FirstPassStep step) {
+         step.messages = errors.getErrorMessages().size();
+         this.firstPassSteps.add(step);
+      }
+   
+   // Gives a matched instruction its text segment address and the room it takes there.
+      private ProgramStatement placeStatement(FirstPassStep step) {
+         ProgramStatement programStatement = new ProgramStatement(this.fileCurrentlyBeingAssembled,
+            step.source, step.tokenList, step.tokens, step.instruction, textAddress.get(),
+            step.sourceLine);
+      // instruction length is 4 for all basic instruction, varies for extended instruction
+      // Modified to permit use of compact expansion if address fits
+      // in 15 bits. DPS 4-Aug-2009
+         int instLength = step.instruction.getInstructionLength();
+         if (compactTranslationCanBeApplied(programStatement)) {
+            instLength = ((ExtendedInstruction) step.instruction).getCompactInstructionLength();
+         }
+         textAddress.increment(instLength);
+         return programStatement;
+      }
+   
    /**
     * This method parses one line of MIPS source code. It works with the list
-    * of tokens, but original source is also provided. It also carries out
-    * directives, which includes initializing the data segment. This method is
-    * invoked in the assembler first pass.
+    * of tokens, but original source is also provided. Labels, directives and
+    * matched instructions are recorded as steps for bindFirstPass() to carry out.
+    * This method is invoked in the assembler first pass.
     * 
     * @param tokenList
     * @param source
     * @param sourceLineNumber
     * @param extendedAssemblerEnabled
-    * @return ArrayList of ProgramStatements because parsing a macro expansion
-    *         request will return a list of ProgramStatements expanded
     */
-      private ArrayList<ProgramStatement> parseLine(TokenList tokenList, String source,
+      private void parseLine(TokenList tokenList, String source,
        	int sourceLineNumber, boolean extendedAssemblerEnabled) { 
       	
-         ArrayList<ProgramStatement> ret = new ArrayList<ProgramStatement>();
-      
-         ProgramStatement programStatement;
          TokenList tokens = this.stripComment(tokenList);
       
       // Labels should not be processed in macro definition segment.
@@ -466,20 +616,20 @@
             stripLabels(tokens);
          }
          if (tokens.isEmpty())
-            return null;
+            return;
       // Grab first (operator) token...
          Token token = tokens.get(0);
          TokenTypes tokenType = token.getType();
       
       // Let's handle the directives here...
          if (tokenType == TokenTypes.DIRECTIVE) {
-            this.executeDirective(tokens);
-            return null;
+            this.recordDirective(tokens);
+            return;
          }
       
       // don't parse if in macro segment
          if (inMacroSegment)
-            return null;
+            return;
       
       // SPIM-style macro calling:
          TokenList parenFreeTokens = tokens;
@@ -501,6 +651,7 @@
                   .getSourceLine(), 0, "Detected a macro expansion loop (recursive reference). "));
             } 
             else {
+               this.recordStep(new FirstPassStep(FirstPassStep.MACRO_CALL, token));
             //                for (int i = macro.getFromLine() + 1; i < macro.getToLine(); i++) {
             //                   String substituted = macro.getSubstitutedLine(i, tokens, counter, errors);
             //                   TokenList tokenList2 = fileCurrentlyBeingAssembled.getTokenizer().tokenizeLine(
@@ -527,14 +678,13 @@
                      substituted = tokenList2.getProcessedLine();
                
                   // recursively parse lines of expanded macro
-                  ArrayList<ProgramStatement> statements = parseLine(tokenList2, "<" + (i-macro.getFromLine()+macro.getOriginalFromLine()) + "> "
+                  parseLine(tokenList2, "<" + (i-macro.getFromLine()+macro.getOriginalFromLine()) + "> "
                      + substituted.trim(), sourceLineNumber, extendedAssemblerEnabled);
-                  if (statements != null)
-                     ret.addAll(statements);
                }
                macroPool.popFromCallStack();
+               this.recordStep(new FirstPassStep(FirstPassStep.MACRO_RETURN));
             }
-            return ret;
+            return;
          }
       
       // DPS 14-July-2008
@@ -552,7 +702,7 @@
             errors.add(new ErrorMessage(ErrorMessage.WARNING, token.getSourceMIPSprogram(), token
                .getSourceLine(), token.getStartPos(), "MARS does not recognize the "
                + token.getValue() + " directive.  Ignored."));
-            return null;
+            return;
          }
       
       // The directives with lists (.byte, .double, .float, .half, .word, .ascii, .asciiz)
@@ -569,8 +719,8 @@
          			tokenType == TokenTypes.QUOTED_STRING || tokenType == TokenTypes.IDENTIFIER
          			|| TokenTypes.isIntegerTokenType(tokenType) || TokenTypes
          				.isFloatingTokenType(tokenType))) {
-            this.executeDirectiveContinuation(tokens);
-            return null;
+            this.recordStep(new FirstPassStep(FirstPassStep.CONTINUATION, tokens));
+            return;
          }
       
       // If we are in the text segment, the variable "token" must now refer to
@@ -581,7 +731,7 @@
          if (!this.inDataSegment) {
             ArrayList instrMatches = this.matchInstruction(token);
             if (instrMatches == null)
-               return ret;
+               return;
          // OK, we've got an operator match, let's check the operands.
             Instruction inst = OperandFormat.bestOperandMatch(tokens, instrMatches);
          // Here's the place to flag use of extended (pseudo) instructions
@@ -592,21 +742,9 @@
                   "Extended (pseudo) instruction or format not permitted.  See Settings."));
             }
             if (OperandFormat.tokenOperandMatch(tokens, inst, errors)) {
-               programStatement = new ProgramStatement(this.fileCurrentlyBeingAssembled, source,
-                  tokenList, tokens, inst, textAddress.get(), sourceLineNumber);
-            // instruction length is 4 for all basic instruction, varies for extended instruction
-            // Modified to permit use of compact expansion if address fits
-            // in 15 bits. DPS 4-Aug-2009
-               int instLength = inst.getInstructionLength();
-               if (compactTranslationCanBeApplied(programStatement)) {
-                  instLength = ((ExtendedInstruction) inst).getCompactInstructionLength();
-               }
-               textAddress.increment(instLength);
-               ret.add(programStatement);
-               return ret;
+               this.recordStep(new FirstPassStep(source, tokenList, tokens, inst, sourceLineNumber));
             }
          }
-         return null;
       } // parseLine()
    
       private void detectLabels(TokenList tokens, Macro current) {
@@ -670,9 +808,7 @@
                   // an instruction name was used as label (e.g. lw:), so change its token type
                   token.setType(TokenTypes.IDENTIFIER);
                }
-               fileCurrentlyBeingAssembled.getLocalSymbolTable().addSymbol(token,
-                  (this.inDataSegment) ? dataAddress.get() : textAddress.get(),
-                  this.inDataSegment, this.errors);
+               this.recordStep(new FirstPassStep(FirstPassStep.LABEL, token));
                return true;
             } 
             else {
@@ -681,6 +817,13 @@
          }
       } // parseLabel()
    
+   // Records label in the local symbol table at the current text or data address.
+      private void defineLabel(Token token) {
+         fileCurrentlyBeingAssembled.getLocalSymbolTable().addSymbol(token,
+            (this.inDataSegment) ? dataAddress.get() : textAddress.get(),
+            this.inDataSegment, this.errors);
+      }
+   
       private boolean tokenListBeginsWithLabel(TokenList tokens) {
       // 2-July-2010. DPS. Remove prohibition of operator names as labels
          if (tokens.size() < 2)
@@ -689,6 +832,27 @@
             && tokens.get(1).getType() == TokenTypes.COLON;
       }
    
+   // //////////////////////////////////////////////////////////////////////////////////
+   // While parsing, directives that begin or end a macro definition, and any inside
+   // one, are carried out at once since they decide how the lines after them parse.
+   // Others are recorded for bindFirstPass(), noting only whether they switch to the
+   // data or text segment, which is all that later parsing depends on.
+      private void recordDirective(TokenList tokens) {
+         Directives direct = Directives.matchDirective(tokens.get(0).getValue());
+         if (direct == Directives.MACRO || direct == Directives.END_MACRO
+         	|| (inMacroSegment && direct != null)) {
+            this.executeDirective(tokens);
+            return;
+         }
+         this.recordStep(new FirstPassStep(FirstPassStep.DIRECTIVE, tokens));
+         if (direct == Directives.DATA || direct == Directives.KDATA) {
+            this.inDataSegment = true;
+         } 
+         else if (direct == Directives.TEXT || direct == Directives.KTEXT) {
+            this.inDataSegment = false;
+         }
+      }
+   
    // //////////////////////////////////////////////////////////////////////////////////
    // This source code line is a directive, not a MIPS instruction. Let's carry it out.
       private void executeDirective(TokenList tokens) {
@@ -1372,6 +1536,59 @@
       }
    
    // ///////////////////////////////////////////////////////////////////////////////////
+   // Private class holding one file's first-pass parse: its recorded steps and the
+   // error and warning messages produced while parsing.
+      private static class ParsedSourceFile {
+         private MIPSprogram program;
+         private ArrayList steps;
+         private ErrorList errors;
+      
+         private ParsedSourceFile(MIPSprogram program, ArrayList steps, ErrorList errors) {
+            this.program = program;
+            this.steps = steps;
+            this.errors = errors;
+         }
+      }
+   
+   // Private class for one recorded first-pass step.  Messages is the number of parse
+   // messages that preceded it; LINE marks the start of each source line.
+      private static class FirstPassStep {
+         private static final int LINE = 0, LABEL = 1, DIRECTIVE = 2, CONTINUATION = 3,
+         	STATEMENT = 4, MACRO_CALL = 5, MACRO_RETURN = 6;
+         private int kind;
+         private int messages;
+         private Token token;
+         private TokenList tokens;
+         private TokenList tokenList;
+         private String source;
+         private Instruction instruction;
+         private int sourceLine;
+      
+         private FirstPassStep(int kind) {
+            this.kind = kind;
+         }
+      
+         private FirstPassStep(int kind, Token token) {
+            this.kind = kind;
+            this.token = token;
+         }
+      
+         private FirstPassStep(int kind, TokenList tokens) {
+            this.kind = kind;
+            this.tokens = tokens;
+         }
+      
+         private FirstPassStep(String source, TokenList tokenList, TokenList tokens,
+          	Instruction instruction, int sourceLine) {
+            this.kind = STATEMENT;
+            this.source = source;
+            this.tokenList = tokenList;
+            this.tokens = tokens;
+            this.instruction = instruction;
+            this.sourceLine = sourceLine;
+         }
+      }
+   
    // Private class to simultaneously track addresses in both user and kernel
    // address spaces.
    // Instantiate one for data segment and one for text segment.
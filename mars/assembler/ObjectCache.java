@@ -0,0 +1,421 @@
+   package mars.assembler;
+   import mars.*;
+   import mars.mips.hardware.*;
+   import mars.mips.instructions.*;
+   import mars.util.SystemIO;
+   import java.util.*;
+   import java.io.*;
+   import java.security.MessageDigest;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * On-disk cache of assembled programs, used by the command-line "cache" option.
+ * After a successful assemble the result is saved in one object file: each
+ * basic statement of the machine list with its source, tokens and instruction,
+ * the global and local symbol tables, every block of data memory the assembler
+ * wrote (data segment, stack, kernel data and memory-mapped I/O alike), and any
+ * warnings.  A later run with the same source
+ * files and the same assembly settings loads that file instead of assembling.
+ * <br><br>
+ * The object file name is a SHA-256 digest of everything that decides the
+ * result: the name and contents of each source file, the lead file, the memory
+ * configuration, byte order, delayed branching, whether pseudo-instructions are
+ * permitted, whether warnings are errors, and the enabled languages with the
+ * instructions they define.  Files read through .include are recorded in the
+ * object file and checked again when it is loaded.
+ * <br><br>
+ * Loading rebuilds each statement with ProgramStatement's own code, given the
+ * stored tokens, instruction and symbol tables.  So it skips tokenizing,
+ * parsing, macro and pseudo-instruction expansion, and operand matching.  Any
+ * problem reading an object file is treated as a miss, and the program is
+ * assembled as usual.
+ */
+
+    public class ObjectCache {
+      private static final int MAGIC = 0x4D4F424A; // "MOBJ"
+      private static final int FORMAT_VERSION = 2;
+      private static final String OBJECT_FILE_EXTENSION = ".mobj";
+      private static final TokenTypes[] TOKEN_TYPES = {
+            TokenTypes.COMMENT, TokenTypes.DIRECTIVE, TokenTypes.OPERATOR, TokenTypes.DELIMITER,
+            TokenTypes.REGISTER_NAME, TokenTypes.REGISTER_NUMBER, TokenTypes.FP_REGISTER_NAME,
+            TokenTypes.IDENTIFIER, TokenTypes.LEFT_PAREN, TokenTypes.RIGHT_PAREN, TokenTypes.INTEGER_5,
+            TokenTypes.INTEGER_16, TokenTypes.INTEGER_16U, TokenTypes.INTEGER_32, TokenTypes.REAL_NUMBER,
+            TokenTypes.QUOTED_STRING, TokenTypes.PLUS, TokenTypes.MINUS, TokenTypes.COLON,
+            TokenTypes.ERROR, TokenTypes.MACRO_PARAMETER,
+            };
+
+      private File directory;
+
+   /**
+    * Create a cache that keeps its object files in the given directory.
+    * The directory is created when the first object file is saved.
+    * @param directory directory for object files
+    */
+       public ObjectCache(File directory) {
+         this.directory = directory;
+      }
+
+   /**
+    * Load a previously assembled program, if there is an object file for exactly these
+    * source files and the current settings.  On success memory, the global symbol table
+    * and the lead program are set up just as <tt>MIPSprogram.assemble()</tt> leaves them.
+    * @param leadProgram the MIPSprogram to receive the machine list
+    * @param filenames ArrayList of String, the source files in assembly order
+    * @param leadFilename name of the source file represented by leadProgram
+    * @param extendedAssemblerEnabled true if pseudo-instructions are permitted
+    * @param warningsAreErrors true if assembler warnings are treated as errors
+    * @return the warning report produced when the program was assembled (empty if there
+    * were no warnings), or null if the program must be assembled
+    */
+       public String load(MIPSprogram leadProgram, ArrayList filenames, String leadFilename,
+                          boolean extendedAssemblerEnabled, boolean warningsAreErrors) {
+         File objectFile = getObjectFile(filenames, leadFilename, extendedAssemblerEnabled, warningsAreErrors);
+         if (objectFile == null || !objectFile.isFile()) {
+            return null;
+         }
+         DataInputStream in = null;
+         try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(objectFile)));
+            return read(in, leadProgram, leadFilename);
+         }
+             catch (Exception e) {
+               return null;
+            }
+            finally {
+               close(in);
+            }
+      }
+
+   /**
+    * Save an object file for a program just assembled without errors.  Must be called
+    * before the program runs, while memory holds only what the assembler put there.
+    * Failure to save is not an error; the program is simply assembled again next time.
+    * @param programs ArrayList of MIPSprogram, as given to <tt>MIPSprogram.assemble()</tt>
+    * @param warnings the ErrorList returned by <tt>MIPSprogram.assemble()</tt>
+    * @param filenames ArrayList of String, the source files in assembly order
+    * @param leadFilename name of the source file represented by the lead program
+    * @param extendedAssemblerEnabled true if pseudo-instructions are permitted
+    * @param warningsAreErrors true if assembler warnings are treated as errors
+    */
+       public void store(ArrayList programs, ErrorList warnings, ArrayList filenames, String leadFilename,
+                         boolean extendedAssemblerEnabled, boolean warningsAreErrors) {
+         File objectFile = getObjectFile(filenames, leadFilename, extendedAssemblerEnabled, warningsAreErrors);
+         if (objectFile == null) {
+            return;
+         }
+         File temporary = null;
+         DataOutputStream out = null;
+         try {
+            directory.mkdirs();
+            // written under a private name, then renamed, so concurrent runs never see a partial file
+            temporary = File.createTempFile("mars", ".tmp", directory);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+            write(out, programs, (warnings != null && warnings.warningsOccurred()) ? warnings.generateWarningReport() : "");
+            out.close();
+            out = null;
+            if (!temporary.renameTo(objectFile)) {
+               temporary.delete();
+            }
+         }
+             catch (Exception e) {
+               close(out);
+               if (temporary != null) {
+                  temporary.delete();
+               }
+            }
+      }
+
+   //////////////////////////////////////////////////////////////////////
+   // Object file layout, all in DataOutputStream format:
+   //   magic, version, warning report,
+   //   included files (name, digest of contents),
+   //   source files (name, local symbols), global symbols,
+   //   statements (file, address, source line, source, instruction, tokens),
+   //   data blocks for each data segment (address, words).
+
+       private void write(DataOutputStream out, ArrayList programs, String warningReport) throws Exception {
+         out.writeInt(MAGIC);
+         out.writeInt(FORMAT_VERSION);
+         writeString(out, warningReport);
+         ArrayList included = new ArrayList();
+         for (int i=0; i<programs.size(); i++) {
+            included.addAll(((MIPSprogram) programs.get(i)).getTokenizer().getIncludedPrograms());
+         }
+         out.writeInt(included.size());
+         for (int i=0; i<included.size(); i++) {
+            String filename = ((MIPSprogram) included.get(i)).getFilename();
+            writeString(out, filename);
+            writeString(out, digest(readBytes(filename)));
+         }
+         HashMap programIndex = new HashMap();
+         out.writeInt(programs.size());
+         for (int i=0; i<programs.size(); i++) {
+            MIPSprogram program = (MIPSprogram) programs.get(i);
+            programIndex.put(program, new Integer(i));
+            writeString(out, program.getFilename());
+            writeSymbols(out, program.getLocalSymbolTable());
+         }
+         writeSymbols(out, Globals.symbolTable);
+         IdentityHashMap instructionIndex = new IdentityHashMap();
+         ArrayList instructionList = Globals.instructionSet.getInstructionList();
+         for (int i=0; i<instructionList.size(); i++) {
+            instructionIndex.put(instructionList.get(i), new Integer(i));
+         }
+         ArrayList machineList = ((MIPSprogram) programs.get(0)).getMachineList();
+         out.writeInt(machineList.size());
+         for (int i=0; i<machineList.size(); i++) {
+            ProgramStatement statement = (ProgramStatement) machineList.get(i);
+            Integer file = (Integer) programIndex.get(statement.getSourceMIPSprogram());
+            out.writeInt((file == null) ? -1 : file.intValue());
+            out.writeInt(statement.getAddress());
+            out.writeInt(statement.getSourceLine());
+            writeString(out, statement.getSource());
+            out.writeInt(((Integer) instructionIndex.get(statement.getInstruction())).intValue());
+            writeTokens(out, statement.getOriginalTokenList());
+            out.writeBoolean(statement.getStrippedTokenList() == statement.getOriginalTokenList());
+            if (statement.getStrippedTokenList() != statement.getOriginalTokenList()) {
+               writeTokens(out, statement.getStrippedTokenList());
+            }
+         }
+         int[] blocks = Globals.memory.getAllocatedBlockAddresses();
+         int[] words = new int[Memory.getBlockLengthWords()];
+         out.writeInt(blocks.length);
+         for (int b=0; b<blocks.length; b++) {
+            out.writeInt(blocks[b]);
+            Globals.memory.getBlock(blocks[b], words);
+            for (int w=0; w<words.length; w++) {
+               out.writeInt(words[w]);
+            }
+         }
+      }
+
+       private String read(DataInputStream in, MIPSprogram leadProgram, String leadFilename) throws Exception {
+         if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+            return null;
+         }
+         String warningReport = readString(in);
+         int includedCount = in.readInt();
+         for (int i=0; i<includedCount; i++) {
+            String filename = readString(in);
+            if (!readString(in).equals(digest(readBytes(filename)))) {
+               return null;
+            }
+         }
+         Globals.symbolTable.clear();
+         Globals.memory.clear();
+         ErrorList errors = new ErrorList();
+         MIPSprogram[] programs = new MIPSprogram[in.readInt()];
+         for (int i=0; i<programs.length; i++) {
+            String filename = readString(in);
+            programs[i] = (filename.equals(leadFilename)) ? leadProgram : new MIPSprogram();
+            programs[i].readSource(filename);
+            programs[i].setLocalSymbolTable(new SymbolTable(filename));
+            readSymbols(in, programs[i].getLocalSymbolTable(), programs[i], errors);
+         }
+         readSymbols(in, Globals.symbolTable, null, errors);
+         ArrayList instructionList = Globals.instructionSet.getInstructionList();
+         ArrayList machineList = new ArrayList();
+         int statementCount = in.readInt();
+         for (int i=0; i<statementCount; i++) {
+            int file = in.readInt();
+            MIPSprogram program = (file < 0) ? null : programs[file];
+            int address = in.readInt();
+            int sourceLine = in.readInt();
+            String source = readString(in);
+            Instruction instruction = (Instruction) instructionList.get(in.readInt());
+            TokenList original = readTokens(in, program);
+            TokenList stripped = (in.readBoolean()) ? original : readTokens(in, program);
+            ProgramStatement statement = new ProgramStatement(program, source, original, stripped,
+                                                               instruction, address, sourceLine);
+            statement.buildBasicStatementFromBasicInstruction(errors);
+            statement.buildMachineStatementFromBasicStatement(errors);
+            if (errors.errorsOccurred()) {
+               return null;
+            }
+            Globals.memory.setStatement(address, statement);
+            machineList.add(statement);
+         }
+         int[] words = new int[Memory.getBlockLengthWords()];
+         int blockCount = in.readInt();
+         for (int b=0; b<blockCount; b++) {
+            int address = in.readInt();
+            for (int w=0; w<words.length; w++) {
+               words[w] = in.readInt();
+            }
+            Globals.memory.setBlock(address, words);
+         }
+         leadProgram.setMachineList(machineList);
+         SystemIO.resetFiles();
+         return warningReport;
+      }
+
+       private static void writeSymbols(DataOutputStream out, SymbolTable table) throws IOException {
+         ArrayList symbols = table.getAllSymbols();
+         out.writeInt(symbols.size());
+         for (int i=0; i<symbols.size(); i++) {
+            Symbol symbol = (Symbol) symbols.get(i);
+            writeString(out, symbol.getName());
+            out.writeInt(symbol.getAddress());
+            out.writeBoolean(symbol.getType());
+         }
+      }
+
+       private static void readSymbols(DataInputStream in, SymbolTable table, MIPSprogram program,
+                                       ErrorList errors) throws IOException {
+         int count = in.readInt();
+         for (int i=0; i<count; i++) {
+            Token label = new Token(TokenTypes.IDENTIFIER, readString(in), program, 0, 0);
+            table.addSymbol(label, in.readInt(), in.readBoolean(), errors);
+         }
+      }
+
+       private static void writeTokens(DataOutputStream out, TokenList tokens) throws IOException {
+         out.writeInt(tokens.size());
+         for (int i=0; i<tokens.size(); i++) {
+            Token token = tokens.get(i);
+            out.writeInt(Arrays.asList(TOKEN_TYPES).indexOf(token.getType()));
+            writeString(out, token.getValue());
+            out.writeInt(token.getSourceLine());
+            out.writeInt(token.getStartPos());
+         }
+      }
+
+       private static TokenList readTokens(DataInputStream in, MIPSprogram program) throws IOException {
+         TokenList tokens = new TokenList();
+         int count = in.readInt();
+         for (int i=0; i<count; i++) {
+            TokenTypes type = TOKEN_TYPES[in.readInt()];
+            String value = readString(in);
+            int line = in.readInt();
+            tokens.add(new Token(type, value, program, line, in.readInt()));
+         }
+         return tokens;
+      }
+
+   // writeUTF() is limited to 64K bytes, too little for some source lines or reports.
+       private static void writeString(DataOutputStream out, String s) throws IOException {
+         byte[] bytes = s.getBytes("UTF-8");
+         out.writeInt(bytes.length);
+         out.write(bytes);
+      }
+
+       private static String readString(DataInputStream in) throws IOException {
+         byte[] bytes = new byte[in.readInt()];
+         in.readFully(bytes);
+         return new String(bytes, "UTF-8");
+      }
+
+   //////////////////////////////////////////////////////////////////////
+   // The object file for a given set of sources and settings, or null if a
+   // source file cannot be read.
+
+       private File getObjectFile(ArrayList filenames, String leadFilename,
+                                  boolean extendedAssemblerEnabled, boolean warningsAreErrors) {
+         try {
+            MessageDigest key = MessageDigest.getInstance("SHA-256");
+            StringBuffer settings = new StringBuffer();
+            settings.append(FORMAT_VERSION).append('\n');
+            settings.append(leadFilename).append('\n');
+            settings.append(MemoryConfigurations.getCurrentConfiguration().getConfigurationIdentifier()).append('\n');
+            settings.append(Globals.memory.getByteOrder()).append('\n');
+            settings.append(Globals.getSettings().getBooleanSetting(Settings.DELAYED_BRANCHING_ENABLED)).append('\n');
+            settings.append(extendedAssemblerEnabled).append('\n');
+            settings.append(warningsAreErrors).append('\n');
+            for (int i=0; i<LanguageLoader.assemblyList.size(); i++) {
+               CustomAssembly language = (CustomAssembly) LanguageLoader.assemblyList.get(i);
+               if (language.enabled) {
+                  settings.append(language.getLanguageClassName()).append('\n');
+               }
+            }
+            ArrayList instructionList = Globals.instructionSet.getInstructionList();
+            for (int i=0; i<instructionList.size(); i++) {
+               Instruction instruction = (Instruction) instructionList.get(i);
+               settings.append(instruction.getExampleFormat());
+               if (instruction instanceof BasicInstruction) {
+                  settings.append('|').append(((BasicInstruction) instruction).getOperationMask());
+               }
+               else {
+                  settings.append('|').append(((ExtendedInstruction) instruction).getBasicIntructionTemplateList());
+                  settings.append('|').append(((ExtendedInstruction) instruction).getCompactBasicIntructionTemplateList());
+               }
+               settings.append('\n');
+            }
+            key.update(settings.toString().getBytes("UTF-8"));
+            for (int i=0; i<filenames.size(); i++) {
+               String filename = (String) filenames.get(i);
+               byte[] contents = readBytes(filename);
+               key.update((filename + '\n' + contents.length + '\n').getBytes("UTF-8"));
+               key.update(contents);
+            }
+            return new File(directory, toHex(key.digest()) + OBJECT_FILE_EXTENSION);
+         }
+             catch (Exception e) {
+               return null;
+            }
+      }
+
+       private static String digest(byte[] contents) throws Exception {
+         return toHex(MessageDigest.getInstance("SHA-256").digest(contents));
+      }
+
+       private static String toHex(byte[] bytes) {
+         StringBuffer hex = new StringBuffer();
+         for (int i=0; i<bytes.length; i++) {
+            hex.append(Integer.toHexString((bytes[i] & 0xFF) | 0x100).substring(1));
+         }
+         return hex.toString();
+      }
+
+       private static byte[] readBytes(String filename) throws IOException {
+         InputStream in = new FileInputStream(filename);
+         try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int length;
+            while ((length = in.read(buffer)) > 0) {
+               bytes.write(buffer, 0, length);
+            }
+            return bytes.toByteArray();
+         }
+            finally {
+               in.close();
+            }
+      }
+
+       private static void close(Closeable stream) {
+         if (stream != null) {
+            try {
+               stream.close();
+            }
+                catch (IOException e) {
+               }
+         }
+      }
+   }
@@ -31,7 +31,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */
 
   /**
-    *  Creats a table of Symbol objects.
+    *  Creats a table of Symbol objects.  Symbols are kept in the order they were
+    *  added, indexed by name and by address so that lookups do not scan the table.
 	*   @author Jason Bumgarner, Jason Shrewsbury
 	*   @version June 2003
 	**/
@@ -39,7 +40,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
     public class SymbolTable {
       private static String startLabel = "main";
       private String filename;
-      private ArrayList table;
+      private LinkedHashMap table;    // label (String) -> Symbol, in order added
+      private HashMap addressIndex;   // address (Integer) -> ArrayList of Symbol, in order added
    	// Note -1 is legal 32 bit address (0xFFFFFFFF) but it is the high address in 
    	// kernel address space so highly unlikely that any symbol will have this as 
    	// its associated address!
@@ -52,7 +54,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 */
        public SymbolTable(String filename) {
          this.filename = filename;
-         this.table = new ArrayList();
+         this.table = new LinkedHashMap();
+         this.addressIndex = new HashMap();
       }    
    	/**
    	  *  Adds a Symbol object into the array of Symbols.
@@ -69,7 +72,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          } 
          else {
             Symbol s= new Symbol(label, address, b);
-            table.add(s);
+            table.put(label, s);
+            addToAddressIndex(s);
             if (Globals.debug) System.out.println("The symbol " + label + " with address " + address + " has been added to the "+this.filename+" symbol table.");
          }
       }
@@ -84,12 +88,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	
        public void removeSymbol(Token token) {
          String label = token.getValue();
-         for (int i=0; i < table.size(); i++) {
-            if (((Symbol)(table.get(i))).getName().equals(label)){
-               table.remove(i);
-               if (Globals.debug) System.out.println("The symbol " + label + " has been removed from the "+this.filename+" symbol table.");
-               break;
-            }
+         Symbol s = (Symbol) table.remove(label);
+         if (s != null) {
+            removeFromAddressIndex(s);
+            if (Globals.debug) System.out.println("The symbol " + label + " has been removed from the "+this.filename+" symbol table.");
          }
          return; 
       }
@@ -101,12 +103,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  *   @return The memory address of the label given, or NOT_FOUND if not found in symbol table.
    	  **/
        public int getAddress(String s){
-         for(int i=0; i < table.size(); i++){
-            if (((Symbol)(table.get(i))).getName().equals(s)){
-               return((Symbol) table.get(i)).getAddress();
-            }
-         }
-         return NOT_FOUND;
+         Symbol sym = (Symbol) table.get(s);
+         return (sym == null) ? NOT_FOUND : sym.getAddress();
       }
       
    	/**
@@ -129,12 +127,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        **/
        
        public Symbol getSymbol(String s){
-         for(int i=0; i < table.size(); i++){
-            if (((Symbol)(table.get(i))).getName().equals(s)){
-               return (Symbol) table.get(i);
-            }
-         }
-         return null;
+         return (Symbol) table.get(s);
       }
    
       /**
@@ -151,12 +144,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
              catch (NumberFormatException e) {
                return null;
             }
-         for(int i=0; i < table.size(); i++){
-            if (((Symbol)(table.get(i))).getAddress() == address){
-               return (Symbol) table.get(i);
-            }
-         }
-         return null;
+         ArrayList symbols = (ArrayList) addressIndex.get(new Integer(address));
+         return (symbols == null) ? null : (Symbol) symbols.get(0);
       }      
    
       /**
@@ -179,9 +168,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       
        public ArrayList getDataSymbols(){
          ArrayList list= new ArrayList();
-         for(int i=0; i<table.size(); i++){
-            if(((Symbol)table.get(i)).getType()){
-               list.add(table.get(i));
+         for (Iterator it = table.values().iterator(); it.hasNext(); ) {
+            Symbol s = (Symbol) it.next();
+            if(s.getType()){
+               list.add(s);
             }	
          }
          return list;
@@ -195,9 +185,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       
        public ArrayList getTextSymbols(){
          ArrayList list= new ArrayList();
-         for(int i=0; i<table.size(); i++){
-            if(!((Symbol)table.get(i)).getType()){
-               list.add(table.get(i));
+         for (Iterator it = table.values().iterator(); it.hasNext(); ) {
+            Symbol s = (Symbol) it.next();
+            if(!s.getType()){
+               list.add(s);
             }	
          }
          return list;
@@ -209,11 +200,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  **/
       
        public ArrayList getAllSymbols(){
-         ArrayList list= new ArrayList();
-         for(int i=0; i<table.size(); i++){
-            list.add(table.get(i));
-         }
-         return list;
+         return new ArrayList(table.values());
       }	
    
    	 /**
@@ -230,7 +217,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    		**/
    	 
        public void clear(){
-         table= new ArrayList();
+         table= new LinkedHashMap();
+         addressIndex= new HashMap();
       }
    	
    /**
@@ -243,14 +231,54 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
     */
    
        public void fixSymbolTableAddress(int originalAddress, int replacementAddress) {
-         Symbol label = getSymbolGivenAddress(Integer.toString(originalAddress));
-         while (label != null) {
-            label.setAddress(replacementAddress);
-            label = getSymbolGivenAddress(Integer.toString(originalAddress));
+         if (originalAddress == replacementAddress) {
+            return;
+         }
+         ArrayList moved = (ArrayList) addressIndex.remove(new Integer(originalAddress));
+         if (moved == null) {
+            return;
+         }
+         for (int i=0; i<moved.size(); i++) {
+            ((Symbol) moved.get(i)).setAddress(replacementAddress);
+         }
+         ArrayList existing = (ArrayList) addressIndex.get(new Integer(replacementAddress));
+         if (existing == null) {
+            addressIndex.put(new Integer(replacementAddress), moved);
+         } 
+         else {
+            // Rare: keep entries for the merged address in the order they were added.
+            existing.clear();
+            for (Iterator it = table.values().iterator(); it.hasNext(); ) {
+               Symbol s = (Symbol) it.next();
+               if (s.getAddress() == replacementAddress) {
+                  existing.add(s);
+               }
+            }
          }
          return;
       }
    
+       private void addToAddressIndex(Symbol s) {
+         Integer key = new Integer(s.getAddress());
+         ArrayList symbols = (ArrayList) addressIndex.get(key);
+         if (symbols == null) {
+            symbols = new ArrayList(1);
+            addressIndex.put(key, symbols);
+         }
+         symbols.add(s);
+      }
+   
+       private void removeFromAddressIndex(Symbol s) {
+         Integer key = new Integer(s.getAddress());
+         ArrayList symbols = (ArrayList) addressIndex.get(key);
+         if (symbols != null) {
+            symbols.remove(s);
+            if (symbols.isEmpty()) {
+               addressIndex.remove(key);
+            }
+         }
+      }
+   
      /**
       *  Fetches the text segment label (symbol) which, if declared global, indicates
    	*  the starting address for execution.
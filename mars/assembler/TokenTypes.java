@@ -150,6 +150,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        // Classify based on # bits needed to represent in binary
        // This is needed because most immediate operands limited to 16 bits
        // others limited to 5 bits unsigned (shift amounts) others 32 bits.
+       // Most tokens plainly are not numbers, so don't make those fail the number parsing.
+         if (!couldBeNumber(value))
+            return matchNonNumericTokenType(value);
          try {
 
             int i = Binary.stringToInt(value);   // KENV 1/6/05
@@ -220,7 +223,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             {
             // NO ACTION -- exception suppressed
             }
-      	 
+         return matchNonNumericTokenType(value);
+      }
+   
+       // Remainder of matchTokenType(), for a token known not to be a number.
+       private static TokenTypes matchNonNumericTokenType(String value) {
        // See if it is an instruction operator
          if (Globals.instructionSet.matchOperator(value) != null)
             return TokenTypes.OPERATOR;
@@ -270,6 +277,20 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       }	
    
    
+       // Quick test of whether the token might be an integer or real literal.  False only if
+       // it cannot be: it starts with a letter, _, $ or " and is not NaN or Infinity (both
+       // accepted by parseDouble), or it starts with . and no digit follows.
+       private static boolean couldBeNumber(String value) {
+         char first = value.charAt(0);
+         if (first == '.') {
+            return value.length() > 1 && Character.isDigit(value.charAt(1));
+         }
+         if (Character.isLetter(first) || first == '_' || first == '$' || first == '"') {
+            return value.equals("NaN") || value.equals("Infinity");
+         }
+         return true;
+      }
+   
        // COD2, A-51:  "Identifiers are a sequence of alphanumeric characters,
        //               underbars (_), and dots (.) that do not begin with a number."
    	 // Ideally this would be in a separate Identifier class but I did not see an immediate
@@ -0,0 +1,177 @@
+   package mars.assembler;
+   import mars.*;
+   import java.util.*;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Cache of tokenized source files, so that re-assembling a project only
+ * re-tokenizes the files that have been edited since it was last assembled.
+ * An entry is keyed by file name and is reused only if the file's source, and
+ * the source of every file it .include's, is exactly what was tokenized before.
+ * The tokens and source lines are then copied for the new MIPSprogram along
+ * with the .eqv definitions, just as if the file had been tokenized again.
+ * Files that had tokenizing errors are not cached.
+ * <br><br>
+ * The cache is emptied whenever the instruction set is populated, since the
+ * set of operator names decides how tokens are typed.
+ *
+ * @see Tokenizer#tokenize(MIPSprogram)
+ */
+
+    public class TokenizedFileCache {
+      private static final int MAXIMUM_FILES = 64;
+      private static final LinkedHashMap cache =
+             new LinkedHashMap(16, 0.75f, true) {
+                protected boolean removeEldestEntry(Map.Entry eldest) {
+                  return size() > MAXIMUM_FILES;
+               }
+            };
+
+   /**
+    * Remove all cached files.  The next assemble re-tokenizes every file.
+    */
+       public static void clear() {
+         synchronized (cache) {
+            cache.clear();
+         }
+      }
+
+   /**
+    * Record the tokenized form of a program for later reuse.  The tokens are copied,
+    * so changes the assembler makes to them do not reach the cache.
+    * @param program the program just tokenized; its source line list must be set
+    * @param tokenList ArrayList of TokenList, one per source line
+    * @param includedPrograms ArrayList of MIPSprogram, one per file read by .include
+    * @param equivalents the .eqv definitions collected while tokenizing
+    */
+       static void store(MIPSprogram program, ArrayList tokenList, ArrayList includedPrograms,
+                         HashMap<String,String> equivalents) {
+         if (program.getFilename() == null) {
+            return;
+         }
+         CachedFile file = new CachedFile();
+         file.source = new ArrayList(program.getSourceList());
+         file.includedFilenames = new String[includedPrograms.size()];
+         file.includedSources = new ArrayList[includedPrograms.size()];
+         for (int i=0; i<includedPrograms.size(); i++) {
+            MIPSprogram included = (MIPSprogram) includedPrograms.get(i);
+            file.includedFilenames[i] = included.getFilename();
+            file.includedSources[i] = new ArrayList(included.getSourceList());
+         }
+         ArrayList<SourceLine> sourceLines = program.getSourceLineList();
+         file.lines = new SourceLine[sourceLines.size()];
+         for (int i=0; i<sourceLines.size(); i++) {
+            SourceLine line = sourceLines.get(i);
+            // lines of the program itself are bound to whichever MIPSprogram reuses them
+            file.lines[i] = (line.getMIPSprogram() == program)
+                            ? new SourceLine(line.getSource(), null, line.getLineNumber())
+                            : line;
+         }
+         file.tokens = copyTokens(tokenList, null);
+         file.equivalents = new HashMap<String,String>(equivalents);
+         synchronized (cache) {
+            cache.put(program.getFilename(), file);
+         }
+      }
+
+   /**
+    * Set up a program from the cache, if its source is unchanged since it was stored.
+    * On success the program's source line list is set, the .eqv definitions are
+    * added to the given map and the included files to the given list.
+    * @param program the program to be tokenized; its source must already be read
+    * @param equivalents map to receive the cached .eqv definitions
+    * @param includedPrograms list to receive a MIPSprogram for each file read by .include
+    * @return ArrayList of TokenList, one per source line, or null if the program
+    * must be tokenized
+    */
+       static ArrayList restore(MIPSprogram program, HashMap<String,String> equivalents,
+                                ArrayList includedPrograms) {
+         if (program.getFilename() == null) {
+            return null;
+         }
+         CachedFile file;
+         synchronized (cache) {
+            file = (CachedFile) cache.get(program.getFilename());
+         }
+         if (file == null || !file.source.equals(program.getSourceList())) {
+            return null;
+         }
+         MIPSprogram[] included = new MIPSprogram[file.includedFilenames.length];
+         for (int i=0; i<file.includedFilenames.length; i++) {
+            included[i] = new MIPSprogram();
+            try {
+               included[i].readSource(file.includedFilenames[i]);
+            }
+                catch (ProcessingException e) {
+                  return null;
+               }
+            if (!file.includedSources[i].equals(included[i].getSourceList())) {
+               return null;
+            }
+         }
+         ArrayList<SourceLine> sourceLines = new ArrayList<SourceLine>(file.lines.length);
+         for (int i=0; i<file.lines.length; i++) {
+            SourceLine line = file.lines[i];
+            sourceLines.add((line.getMIPSprogram() == null)
+                            ? new SourceLine(line.getSource(), program, line.getLineNumber())
+                            : line);
+         }
+         program.setSourceLineList(sourceLines);
+         equivalents.putAll(file.equivalents);
+         includedPrograms.addAll(Arrays.asList(included));
+         return copyTokens(file.tokens, program);
+      }
+
+   // Copy of each TokenList and each of its Tokens, with the tokens bound to given program.
+       private static ArrayList copyTokens(ArrayList tokenList, MIPSprogram program) {
+         ArrayList result = new ArrayList(tokenList.size());
+         for (int i=0; i<tokenList.size(); i++) {
+            TokenList tokens = (TokenList) tokenList.get(i);
+            TokenList copy = new TokenList();
+            for (int j=0; j<tokens.size(); j++) {
+               Token token = tokens.get(j);
+               copy.add(new Token(token.getType(), token.getValue(), program,
+                                  token.getSourceLine(), token.getStartPos()));
+            }
+            copy.setProcessedLine(tokens.getProcessedLine());
+            result.add(copy);
+         }
+         return result;
+      }
+
+       private static class CachedFile {
+         ArrayList source;
+         String[] includedFilenames;
+         ArrayList[] includedSources;
+         SourceLine[] lines;
+         ArrayList tokens;
+         HashMap<String,String> equivalents;
+      }
+   }
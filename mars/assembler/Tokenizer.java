@@ -52,6 +52,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       private ErrorList errors;
       private MIPSprogram sourceMIPSprogram;
       private HashMap<String,String> equivalents; // DPS 11-July-2012
+      private ArrayList includedPrograms; // files read by .include, for TokenizedFileCache
+      // Working buffers for tokenizeLine(), reused from line to line and grown as needed.
+      private char[] lineBuffer = new char[128];
+      private char[] tokenBuffer = new char[128];
    	// The 8 escaped characters are: single quote, double quote, backslash, newline (linefeed),
    	// tab, backspace, return, form feed.  The characters and their corresponding decimal codes:
       private static final String escapedCharacters = "'\"\\ntbrf0";
@@ -86,7 +90,12 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        public ArrayList tokenize(MIPSprogram p) throws ProcessingException {
          sourceMIPSprogram = p;
          equivalents = new HashMap<String,String>(); // DPS 11-July-2012
-         ArrayList tokenList = new ArrayList();
+         includedPrograms = new ArrayList();
+         ArrayList tokenList = TokenizedFileCache.restore(p, equivalents, includedPrograms);
+         if (tokenList != null) {
+            return tokenList;
+         }
+         tokenList = new ArrayList();
          //ArrayList source = p.getSourceList();
          ArrayList<SourceLine> source = processIncludes(p, new HashMap<String,String>()); // DPS 9-Jan-2013
          p.setSourceLineList(source);
@@ -108,6 +117,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          if (errors.errorsOccurred()) {
             throw new ProcessingException(errors);
          }
+         TokenizedFileCache.store(p, tokenList, includedPrograms, equivalents);
          return tokenList;
       }
    
@@ -125,6 +135,12 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          ArrayList<SourceLine> result = new ArrayList<SourceLine>(source.size());
          for (int i=0; i<source.size(); i++) {
             String line = (String) source.get(i);
+            // Only a line mentioning the directive can include a file, so there is no
+            // need to tokenize the others here; tokenize() does that anyway.
+            if (!mayContainInclude(line)) {
+               result.add(new SourceLine(line, program, i+1));
+               continue;
+            }
             TokenList tl = tokenizeLine(program, i+1, line, false);
             boolean hasInclude = false;
             for (int ii=0; ii<tl.size(); ii++) {
@@ -155,6 +171,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                            "Error reading include file "+filename));	
                         throw new ProcessingException(errors);
                      }
+                  includedPrograms.add(incl);
                   ArrayList<SourceLine> allLines = processIncludes(incl, inclFiles);
                   result.addAll(allLines);
                   hasInclude = true;
@@ -167,7 +184,29 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          }
          return result;
       }
+   
+   // Cheap test, without tokenizing, of whether the line contains ".include" in any case.
+       private static boolean mayContainInclude(String line) {
+         String directive = Directives.INCLUDE.getName();
+         int last = line.length() - directive.length();
+         for (int i=0; i<=last; i++) {
+            if (line.charAt(i) == '.' && line.regionMatches(true, i, directive, 0, directive.length())) {
+               return true;
+            }
+         }
+         return false;
+      }
    	
+   /**
+    * Produces the files read by .include directives while tokenizing a program, including
+    * those included indirectly.
+    * @return ArrayList of MIPSprogram, one per included file, empty if there were none
+    * or no program has been tokenized.
+    **/
+       public ArrayList getIncludedPrograms() {
+         return (includedPrograms == null) ? new ArrayList() : includedPrograms;
+      }
+   
    /**
     * Used only to create a token list for the example provided with each instruction
     * specification.
@@ -280,18 +319,25 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          TokenList result = new TokenList();
          if (theLine.length() == 0)
             return result;
-      // will be faster to work with char arrays instead of strings
+      // will be faster to work with char arrays instead of strings.  The arrays are
+      // kept from one line to the next rather than allocated for every line.
          char c;
-         char[] line = theLine.toCharArray();
+         int lineLength = theLine.length();
+         if (lineBuffer.length < lineLength) {
+            lineBuffer = new char[Math.max(lineLength, 2*lineBuffer.length)];
+            tokenBuffer = new char[lineBuffer.length];
+         }
+         char[] line = lineBuffer;
+         theLine.getChars(0, lineLength, line, 0);
          int linePos = 0;
-         char[] token = new char[line.length];
+         char[] token = tokenBuffer;
          int tokenPos = 0;
          int tokenStartPos = 1;
          boolean insideQuotedString = false;  
          if (Globals.debug) 
             System.out.println("source line --->"+theLine+"<---");
       // Each iteration of this loop processes one character in the source line.
-         while (linePos < line.length) {
+         while (linePos < lineLength) {
             c = line[linePos];
             if (insideQuotedString) { // everything goes into token
                token[tokenPos++] = c;
@@ -309,10 +355,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                         tokenPos = 0;
                      }
                      tokenStartPos = linePos+1;
-                     tokenPos = line.length-linePos;
+                     tokenPos = lineLength-linePos;
                      System.arraycopy(line, linePos, token, 0, tokenPos);
                      this.processCandidateToken(token, program, lineNum, theLine, tokenPos, tokenStartPos, result);
-                     linePos = line.length;
+                     linePos = lineLength;
                      tokenPos = 0;
                      break;
                   case ' ' :
@@ -331,7 +377,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                   case '-' :
                       // Here's the REAL hack: recognizing signed exponent in E-notation floating point!
                   	 // (e.g. 1.2e-5) Add the + or - to the token and keep going.  DPS 17 Aug 2005
-                     if (tokenPos > 0 && line.length >= linePos+2 && Character.isDigit(line[linePos+1]) &&
+                     if (tokenPos > 0 && lineLength >= linePos+2 && Character.isDigit(line[linePos+1]) &&
                                                        (line[linePos-1]=='e' || line[linePos-1]=='E')) {
                         token[tokenPos++] = c;
                         break;
@@ -344,7 +390,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                      tokenStartPos = linePos+1;
                      token[tokenPos++] = c;
                      if ( !((result.isEmpty() || ((Token)result.get(result.size()-1)).getType() != TokenTypes.IDENTIFIER) &&
-                           (line.length >= linePos+2 && Character.isDigit(line[linePos+1]))) ) {
+                           (lineLength >= linePos+2 && Character.isDigit(line[linePos+1]))) ) {
                            // treat it as binary.....
                         this.processCandidateToken(token, program, lineNum, theLine, tokenPos, tokenStartPos, result);
                         tokenPos = 0;
@@ -380,7 +426,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                   	// Our strategy is to process the whole thing right now...
                      tokenStartPos = linePos+1;
                      token[tokenPos++] = c; // Put the quote in token[0]
-                     int lookaheadChars = line.length - linePos - 1;
+                     int lookaheadChars = lineLength - linePos - 1;
                   	// need minimum 2 more characters, 1 for char and 1 for ending quote
                      if (lookaheadChars < 2) 
                         break;  // gonna be an error
@@ -500,6 +546,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          }
       	// Check if a substitution from defined .eqv is to be made.  If so, make one.
          boolean substitutionMade = false;
+         if (equivalents == null || equivalents.isEmpty()) {
+            tokens.setProcessedLine(theLine);
+            return tokens;
+         }
          for (int i=0; i<tokens.size(); i++) {
             Token token = tokens.get(i);
             if (token.getType() == TokenTypes.IDENTIFIER && equivalents != null && equivalents.containsKey(token.getValue())) {
@@ -538,6 +588,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             errors.add(new ErrorMessage(program, line, tokenStartPos, 
                        theLine+"\nInvalid language element: "+value));
          }
+         // Operators, registers and directives recur on nearly every line, so share one copy of each.
+         if (type == TokenTypes.OPERATOR || type == TokenTypes.DIRECTIVE || type == TokenTypes.REGISTER_NAME
+             || type == TokenTypes.REGISTER_NUMBER || type == TokenTypes.FP_REGISTER_NAME) {
+            value = value.intern();
+         }
          Token toke = new Token(type, value, program, line, tokenStartPos);
          tokenList.add(toke);
          return;
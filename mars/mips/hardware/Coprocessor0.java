@@ -147,6 +147,31 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        public static Register[] getRegisters(){
          return registers;
       }
+   
+   	/**
+   	  *  Returns the values of the registers, in the order of getRegisters().
+   	  *  Used by machine snapshots.
+   	  *   @return A new array of register values.
+   	  **/
+   	
+       public static int[] getValues(){
+         int[] values = new int[registers.length];
+         for (int i=0; i<registers.length; i++) {
+            values[i] = registers[i].getValueNoNotify();
+         }
+         return values;
+      }
+   
+   	/**
+   	  *  Sets the registers to values returned earlier by getValues().
+   	  *   @param values The register values, in the order of getRegisters().
+   	  **/
+   	
+       public static void setValues(int[] values){
+         for (int i=0; i<registers.length; i++) {
+            registers[i].setValue(values[i]);
+         }
+      }
 
       
    	/**
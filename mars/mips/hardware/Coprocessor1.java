@@ -48,27 +48,35 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 // storing into registers, and reassembled upon retrieval.
 
     public  class Coprocessor1 {
+      // $f0-$f31 keep their values in slots 0-31 of one primitive block, the
+      // condition flags in slot 32.
+      private static final RegisterBlock block = new RegisterBlock(33);
+   
       private static Register [] registers = 
-          { new Register("$f0", 0, 0),  new Register("$f1", 1, 0),
-         	new Register("$f2", 2, 0),  new Register("$f3", 3, 0),
-         	new Register("$f4", 4, 0),  new Register("$f5", 5, 0),
-         	new Register("$f6", 6, 0),  new Register("$f7", 7, 0),
-         	new Register("$f8", 8, 0),  new Register("$f9", 9, 0),
-         	new Register("$f10", 10, 0),new Register("$f11", 11, 0), 
-         	new Register("$f12", 12, 0),new Register("$f13", 13, 0),
-         	new Register("$f14", 14, 0),new Register("$f15", 15, 0),
-         	new Register("$f16", 16, 0),new Register("$f17", 17, 0),
-         	new Register("$f18", 18, 0),new Register("$f19", 19, 0),
-         	new Register("$f20", 20, 0),new Register("$f21", 21, 0),
-         	new Register("$f22", 22, 0),new Register("$f23", 23, 0),
-         	new Register("$f24", 24, 0),new Register("$f25", 25, 0),
-         	new Register("$f26", 26, 0),new Register("$f27", 27, 0),
-         	new Register("$f28", 28, 0),new Register("$f29", 29, 0),
-         	new Register("$f30", 30, 0),new Register("$f31", 31, 0)
+          { register("$f0", 0, 0),  register("$f1", 1, 0),
+         	register("$f2", 2, 0),  register("$f3", 3, 0),
+         	register("$f4", 4, 0),  register("$f5", 5, 0),
+         	register("$f6", 6, 0),  register("$f7", 7, 0),
+         	register("$f8", 8, 0),  register("$f9", 9, 0),
+         	register("$f10", 10, 0),register("$f11", 11, 0), 
+         	register("$f12", 12, 0),register("$f13", 13, 0),
+         	register("$f14", 14, 0),register("$f15", 15, 0),
+         	register("$f16", 16, 0),register("$f17", 17, 0),
+         	register("$f18", 18, 0),register("$f19", 19, 0),
+         	register("$f20", 20, 0),register("$f21", 21, 0),
+         	register("$f22", 22, 0),register("$f23", 23, 0),
+         	register("$f24", 24, 0),register("$f25", 25, 0),
+         	register("$f26", 26, 0),register("$f27", 27, 0),
+         	register("$f28", 28, 0),register("$f29", 29, 0),
+         	register("$f30", 30, 0),register("$f31", 31, 0)
            };
    	// The 8 condition flags will be stored in bits 0-7 for flags 0-7.
-      private static Register condition = new Register("cf",32, 0);	 
+      private static Register condition = register("cf",32, 0);	 
       private static int numConditionFlags = 8;
+   
+       private static Register register(String name, int number, int value) {
+         return new Register(name, number, value, block, number);
+      }
    	
    	/**
    	  *  Method for displaying the register values for debugging.
@@ -326,16 +334,13 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  **/
    	  
        public static int updateRegister(int num, int val){
-         int old = 0;
-         for (int i=0; i< registers.length; i++){
-            if(registers[i].getNumber()== num) {
-               old = (Globals.getSettings().getBackSteppingEnabled())
-                        ? Globals.program.getBackStepper().addCoprocessor1Restore(num,registers[i].setValue(val))
-                  		: registers[i].setValue(val);
-               break;
-            }
+         if (num < 0 || num >= registers.length) {
+            return 0;
          }
-         return old;
+         int old = registers[num].setValue(val);
+         return (Globals.getSettings().getBackSteppingEnabled())
+               ? Globals.program.getBackStepper().addCoprocessor1Restore(num,old)
+               : old;
       }
       
       /**
@@ -375,6 +380,26 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        public static Register[] getRegisters(){
          return registers;
       }
+   
+   	/**
+   	  *  Returns the values of all registers, indexed by register number, with the
+   	  *  condition flags at 32.  Used by machine snapshots.
+   	  *   @return A new array of register values.
+   	  **/
+   	
+       public static int[] getValues(){
+         return (int[]) block.values.clone();
+      }
+   
+   	/**
+   	  *  Sets all registers and the condition flags to values returned earlier by
+   	  *  getValues().  Observers are not notified.
+   	  *   @param values The register values, indexed by register number.
+   	  **/
+   	
+       public static void setValues(int[] values){
+         System.arraycopy(values, 0, block.values, 0, block.values.length);
+      }
       
    	/**
    	  *  Get register object corresponding to given name.  If no match, return null.
@@ -384,7 +409,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	
        public static Register getRegister(String rName) {
          Register reg = null;
-         if (rName.charAt(0) == '$' && rName.length() > 1 && rName.charAt(1) == 'f') {
+         if (rName.charAt(0) == '$' && rName.length() > 1 && rName.charAt(1) == 'f'
+             && (rName.length() == 2 || Binary.couldStartInteger(rName.charAt(2)))) {
             try {
                    // check for register number 0-31.
                reg = registers[Binary.stringToInt(rName.substring(2))];    // KENV 1/6/05
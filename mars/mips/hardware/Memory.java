@@ -105,6 +105,20 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       
       Collection observables = getNewMemoryObserversCollection();
    
+    // Index over the observables, rebuilt whenever one is added or removed, so that
+    // an access only looks at the observables whose range covers its 4K page.  Two
+    // levels keyed on address bits 31-22 and 21-12: an access to a page nobody
+    // observes costs one or two array lookups.  Ranges wider than OBSERVER_INDEX_MAX_PAGES
+    // (such as the whole-address-space addObserver(Observer)) go in a separate list
+    // checked on every access, rather than being copied into every page they cover.
+    // The index is replaced, never modified, so the simulator thread can read it
+    // without locking while the GUI thread registers observers.
+      private static final int OBSERVER_PAGE_BITS = 12;
+      private static final int OBSERVER_REGION_BITS = 10;
+      private static final int OBSERVER_INDEX_MAX_PAGES = 4096;
+      private volatile MemoryObservable[][][] observerPages = null;
+      private volatile MemoryObservable[] wideObservables = null;
+   
     // The data segment is allocated in blocks of 1024 ints (4096 bytes).  Each block is
     // referenced by a "block table" entry, and the table has 1024 entries.  The capacity
     // is thus 1024 entries * 4096 bytes = 4 MB.  Should be enough to cover most
@@ -174,6 +188,22 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       private static final int TEXT_BLOCK_TABLE_LENGTH = 1024; // Each entry of table points to a block.
       private ProgramStatement[][] textBlockTable;
       private ProgramStatement[][] kernelTextBlockTable;
+   
+    // Blocks captured by captureContents() are shared with the captured Contents, which
+    // must never see them change.  Each table has a flag per block telling whether the
+    // block is shared; a shared block is copied the first time it is stored into, and
+    // the copy replaces it in the table.  Blocks never stored into after a capture or
+    // restore are never copied, so both are cheap however much memory is in use.
+    // sharingBlocks is false until the first capture, keeping stores on the usual path.
+   
+      private boolean[] dataBlockShared;
+      private boolean[] kernelDataBlockShared;
+      private boolean[] stackBlockShared;
+      private boolean[] memoryMapBlockShared;
+      private boolean[] textBlockShared;
+      private boolean[] kernelTextBlockShared;
+      private boolean sharingBlocks;
+      private int blocksCreated;
     
     // Set "top" address boundary to go with each "base" address.  This determines permissable
     // address range for user program.  Currently limit is 4MB, or 1024 * 1024 * 4 bytes based
@@ -292,9 +322,157 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          kernelDataBlockTable  = new int[BLOCK_TABLE_LENGTH][];      
          stackBlockTable = new int[BLOCK_TABLE_LENGTH][];
          memoryMapBlockTable = new int[MMIO_TABLE_LENGTH][];
+         dataBlockShared = new boolean[BLOCK_TABLE_LENGTH];
+         kernelDataBlockShared = new boolean[BLOCK_TABLE_LENGTH];
+         stackBlockShared = new boolean[BLOCK_TABLE_LENGTH];
+         memoryMapBlockShared = new boolean[MMIO_TABLE_LENGTH];
+         textBlockShared = new boolean[TEXT_BLOCK_TABLE_LENGTH];
+         kernelTextBlockShared = new boolean[TEXT_BLOCK_TABLE_LENGTH];
+         sharingBlocks = false;
+         blocksCreated = 0;
          System.gc(); // call garbage collector on any Table memory just deallocated. 	  
       }  
      
+   /**
+    * The contents of MIPS memory at one moment: every segment's blocks and the heap
+    * pointer, as returned by captureContents().  A Contents never changes, and may be
+    * restored any number of times.
+    */
+       public static class Contents {
+         private int[][] dataBlockTable;
+         private int[][] kernelDataBlockTable;
+         private int[][] stackBlockTable;
+         private int[][] memoryMapBlockTable;
+         private ProgramStatement[][] textBlockTable;
+         private ProgramStatement[][] kernelTextBlockTable;
+         private int heapAddress;
+      
+      /**
+       * Add every memory block held by these contents to the map, as a key.  Blocks
+       * shared with other Contents are the same objects, so an IdentityHashMap
+       * filled from several Contents ends up with one entry per distinct block.
+       * @param blocks map to add the blocks to
+       */
+          public void addBlocksTo(Map blocks) {
+            Object[][] tables = { dataBlockTable, kernelDataBlockTable, stackBlockTable,
+                                  memoryMapBlockTable, textBlockTable, kernelTextBlockTable };
+            for (int t=0; t<tables.length; t++) {
+               for (int i=0; i<tables[t].length; i++) {
+                  if (tables[t][i] != null) {
+                     blocks.put(tables[t][i], tables[t]);
+                  }
+               }
+            }
+         }
+      }
+   
+   /**
+    * Get the number of data blocks allocated or copied so far.  Since each block
+    * created after a capture is a block not shared with it, the growth of this
+    * count between captures bounds the memory held by the captured Contents.
+    *
+    * @return number of 4K data blocks created since memory was initialized
+    */
+       public int getBlocksCreated() {
+         return blocksCreated;
+      }
+   
+   /**
+    * Capture the current contents of memory.  No block is copied: the blocks become
+    * shared by memory and the returned Contents, and memory copies a shared block
+    * before it next stores into it.  Observers are not notified.
+    *
+    * @return the contents of memory
+    * @see #restoreContents(Memory.Contents)
+    */
+       public synchronized Contents captureContents() {
+         Contents contents = new Contents();
+         contents.dataBlockTable = (int[][]) share(dataBlockTable, dataBlockShared);
+         contents.kernelDataBlockTable = (int[][]) share(kernelDataBlockTable, kernelDataBlockShared);
+         contents.stackBlockTable = (int[][]) share(stackBlockTable, stackBlockShared);
+         contents.memoryMapBlockTable = (int[][]) share(memoryMapBlockTable, memoryMapBlockShared);
+         contents.textBlockTable = (ProgramStatement[][]) share(textBlockTable, textBlockShared);
+         contents.kernelTextBlockTable = (ProgramStatement[][]) share(kernelTextBlockTable, kernelTextBlockShared);
+         contents.heapAddress = heapAddress;
+         sharingBlocks = true;
+         return contents;
+      }
+   
+   /**
+    * Replace the contents of memory with ones captured earlier by captureContents().
+    * As with capture, no block is copied until it is stored into.  Observers are not
+    * notified, but text segment statements that differ from the current ones are
+    * reported to the simulator as if stored by setStatement().  The memory
+    * configuration must be the one in effect when the contents were captured.
+    *
+    * @param contents the contents to restore
+    */
+       public synchronized void restoreContents(Contents contents) {
+         ProgramStatement[][] oldText = textBlockTable;
+         ProgramStatement[][] oldKernelText = kernelTextBlockTable;
+         dataBlockTable = (int[][]) share(contents.dataBlockTable, dataBlockShared);
+         kernelDataBlockTable = (int[][]) share(contents.kernelDataBlockTable, kernelDataBlockShared);
+         stackBlockTable = (int[][]) share(contents.stackBlockTable, stackBlockShared);
+         memoryMapBlockTable = (int[][]) share(contents.memoryMapBlockTable, memoryMapBlockShared);
+         textBlockTable = (ProgramStatement[][]) share(contents.textBlockTable, textBlockShared);
+         kernelTextBlockTable = (ProgramStatement[][]) share(contents.kernelTextBlockTable, kernelTextBlockShared);
+         heapAddress = contents.heapAddress;
+         sharingBlocks = true;
+         reportChangedStatements(oldText, textBlockTable, textBaseAddress);
+         reportChangedStatements(oldKernelText, kernelTextBlockTable, kernelTextBaseAddress);
+      }
+   
+    // Mark every allocated block of the table shared, and return a copy of the table
+    // (which refers to the same blocks).
+       private static Object[] share(Object[] blockTable, boolean[] shared) {
+         for (int i=0; i<blockTable.length; i++) {
+            shared[i] = blockTable[i] != null;
+         }
+         return (Object[]) blockTable.clone();
+      }
+   
+    // Tell the simulator about each statement of newTable that is not the one in oldTable.
+       private static void reportChangedStatements(ProgramStatement[][] oldTable, ProgramStatement[][] newTable,
+                                                   int baseAddress) {
+         for (int block=0; block<newTable.length; block++) {
+            if (oldTable[block] == newTable[block]) {
+               continue;
+            }
+            for (int offset=0; offset<TEXT_BLOCK_LENGTH_WORDS; offset++) {
+               ProgramStatement oldStatement = (oldTable[block] == null) ? null : oldTable[block][offset];
+               ProgramStatement newStatement = (newTable[block] == null) ? null : newTable[block][offset];
+               if (oldStatement != newStatement) {
+                  Simulator.textStatementChanged(
+                     baseAddress + ((block * TEXT_BLOCK_LENGTH_WORDS + offset) << 2), newStatement);
+               }
+            }
+         }
+      }
+   
+    // Return the block to store into, allocating it if there is none yet and copying it
+    // if it is shared with a captured Contents.
+       private int[] writableBlock(int[][] blockTable, int block) {
+         int[] words = blockTable[block];
+         if (words == null) {
+            words = new int[BLOCK_LENGTH_WORDS];
+            blockTable[block] = words;
+            blocksCreated++;
+         } 
+         else if (sharingBlocks) {
+            boolean[] shared = (blockTable == dataBlockTable) ? dataBlockShared
+                             : (blockTable == stackBlockTable) ? stackBlockShared
+                             : (blockTable == kernelDataBlockTable) ? kernelDataBlockShared
+                             : memoryMapBlockShared;
+            if (shared[block]) {
+               words = (int[]) words.clone();
+               blockTable[block] = words;
+               shared[block] = false;
+               blocksCreated++;
+            }
+         }
+         return words;
+      }
+     
    	/**
    	 * Returns the next available word-aligned heap address.  There is no recycling and
    	 * no heap management!  There is however nearly 4MB of heap space available in Mars.
@@ -560,6 +738,275 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       }
    	 
    
+   ///////////////////////////////////////////////////////////////////////////////////////
+   //  Bulk access.  These move a run of whole words at a time straight between the block
+   //  tables and an int array, rather than word by word through setWord() and getWord().
+   //  A MemoryRangeObserver of the range gets a single notice for the whole operation,
+   //  whose address and length (in bytes) cover the part of the range it observes and
+   //  whose value is the first word of that part; other observers get one notice per
+   //  word.  When backstepping, a store is undone as one step.
+   //  The range must be word-aligned and lie within one of the data segment, heap,
+   //  stack, kernel data segment or memory-mapped I/O; the text segments are excluded.
+   
+    ///////////////////////////////////////////////////////////////////////////////////////
+    /**
+     *  Store the same value into each of a run of words.
+     *
+     * @param address Address of the first word.  Must be word-aligned.
+     * @param words Number of words to store.  Nothing is done if not positive.
+     * @param value Value to be stored in every word.
+     * @throws AddressErrorException If the range is not aligned, or not within one segment as above.
+     **/
+       public void fillWords(int address, int words, int value) throws AddressErrorException {
+         storeWords(address, null, 0, words, value);
+      }
+   
+    ///////////////////////////////////////////////////////////////////////////////////////
+    /**
+     *  Store an array of values into consecutive words.
+     *
+     * @param address Address of the word to receive values[0].  Must be word-aligned.
+     * @param values Values to be stored.
+     * @throws AddressErrorException If the range is not aligned, or not within one segment as above.
+     **/
+       public void setWords(int address, int[] values) throws AddressErrorException {
+         storeWords(address, values, 0, values.length, 0);
+      }
+   
+    ///////////////////////////////////////////////////////////////////////////////////////
+    /**
+     *  Read consecutive words into a new array.  Observers get READ notices.
+     *
+     * @param address Address of the first word.  Must be word-aligned.
+     * @param words Number of words to read.
+     * @return The words, in order of increasing address.
+     * @throws AddressErrorException If the range is not aligned, or not within one segment as above.
+     **/
+       public int[] getWords(int address, int words) throws AddressErrorException {
+         int[] values = new int[Math.max(words, 0)];
+         if (words > 0) {
+            transferWords(bulkTable(address, words, Exceptions.ADDRESS_EXCEPTION_LOAD), address, values, 0, words, 0, false);
+            notifyAnyObservers(AccessNotice.READ, address, words * WORD_LENGTH_BYTES);
+         }
+         return values;
+      }
+   
+    ///////////////////////////////////////////////////////////////////////////////////////
+    /**
+     *  Read consecutive words into an existing array, one per element, without notifying
+     *  observers.  Intended for devices that sample memory, such as a frame buffer.
+     *
+     * @param address Address of the first word.  Must be word-aligned.
+     * @param values Array to receive the words, in order of increasing address.
+     * @throws AddressErrorException If the range is not aligned, or not within one segment as above.
+     **/
+       public void getWordsNoNotify(int address, int[] values) throws AddressErrorException {
+         if (values.length > 0) {
+            transferWords(bulkTable(address, values.length, Exceptions.ADDRESS_EXCEPTION_LOAD), address, values, 0, values.length, 0, false);
+         }
+      }
+   
+    ///////////////////////////////////////////////////////////////////////////////////////
+    /**
+     *  Copy a run of words from one place to another, as if through a temporary array,
+     *  so the source and destination may overlap.  Observers of the source get READ
+     *  notices and observers of the destination WRITE notices.
+     *
+     * @param destination Address of the first word to store into.  Must be word-aligned.
+     * @param source Address of the first word to copy.  Must be word-aligned.
+     * @param words Number of words to copy.  Nothing is done if not positive.
+     * @throws AddressErrorException If either range is not aligned, or not within one segment as above.
+     **/
+       public void copyRange(int destination, int source, int words) throws AddressErrorException {
+         if (words > 0) {
+            int[] values = getWords(source, words);
+            storeWords(destination, values, 0, words, 0);
+         }
+      }
+   
+    ///////////////////////////////////////////////////////////////////////////////////////
+    /**
+     *  Addresses of the blocks of data memory that have been allocated, that is, written
+     *  at least once: in the data segment (which includes the heap), the stack, the kernel
+     *  data segment and memory-mapped I/O, in that order.  Each is the lowest address of
+     *  its block, which holds getBlockLengthWords() words.  Unallocated blocks read as zero.
+     *
+     * @return the block addresses
+     **/
+       public int[] getAllocatedBlockAddresses() {
+         int[][][] tables = {dataBlockTable, stackBlockTable, kernelDataBlockTable, memoryMapBlockTable};
+         int count = 0;
+         for (int t=0; t<tables.length; t++) {
+            for (int block=0; block<tables[t].length; block++) {
+               if (tables[t][block] != null) {
+                  count++;
+               }
+            }
+         }
+         int[] addresses = new int[count];
+         count = 0;
+         for (int t=0; t<tables.length; t++) {
+            for (int block=0; block<tables[t].length; block++) {
+               if (tables[t][block] != null) {
+                  addresses[count++] = blockAddress(tables[t], block);
+               }
+            }
+         }
+         return addresses;
+      }
+   
+    /**
+     *  Number of words in a block of memory, as returned by getAllocatedBlockAddresses().
+     *  @return words per block
+     **/
+       public static int getBlockLengthWords() {
+         return BLOCK_LENGTH_WORDS;
+      }
+   
+    ///////////////////////////////////////////////////////////////////////////////////////
+    /**
+     *  Read a whole block of data memory without notifying observers.
+     *
+     * @param address Lowest address of the block, as returned by getAllocatedBlockAddresses().
+     * @param values Array of getBlockLengthWords() elements to receive the words, in order of increasing address.
+     * @throws AddressErrorException If the address is not that of a block.
+     **/
+       public void getBlock(int address, int[] values) throws AddressErrorException {
+         transferWords(blockTableFor(address), address, values, 0, BLOCK_LENGTH_WORDS, 0, false);
+      }
+   
+    ///////////////////////////////////////////////////////////////////////////////////////
+    /**
+     *  Write a whole block of data memory without notifying observers or recording a
+     *  backstep.  Intended for restoring memory saved with getBlock().
+     *
+     * @param address Lowest address of the block, as returned by getAllocatedBlockAddresses().
+     * @param values The getBlockLengthWords() words to store, in order of increasing address.
+     * @throws AddressErrorException If the address is not that of a block.
+     **/
+       public void setBlock(int address, int[] values) throws AddressErrorException {
+         transferWords(blockTableFor(address), address, values, 0, BLOCK_LENGTH_WORDS, 0, true);
+      }
+   
+    // Lowest address of the given block of a table.  Stack blocks run downward from the stack base.
+       private int blockAddress(int[][] blockTable, int block) {
+         if (blockTable == stackBlockTable) {
+            return stackBaseAddress - ((block + 1) * BLOCK_LENGTH_WORDS - 1) * WORD_LENGTH_BYTES;
+         }
+         int base = (blockTable == dataBlockTable) ? dataSegmentBaseAddress
+                  : (blockTable == kernelDataBlockTable) ? kernelDataBaseAddress
+                  : memoryMapBaseAddress;
+         return base + block * BLOCK_LENGTH_WORDS * WORD_LENGTH_BYTES;
+      }
+   
+    // The block table with a block whose lowest address is the one given.
+       private int[][] blockTableFor(int address) throws AddressErrorException {
+         int[][][] tables = {dataBlockTable, stackBlockTable, kernelDataBlockTable, memoryMapBlockTable};
+         for (int t=0; t<tables.length; t++) {
+            int first = blockAddress(tables[t], 0);
+            int last = blockAddress(tables[t], tables[t].length - 1);
+            int step = (tables[t] == stackBlockTable) ? -BLOCK_LENGTH_WORDS * WORD_LENGTH_BYTES
+                                                      : BLOCK_LENGTH_WORDS * WORD_LENGTH_BYTES;
+            long distance = (long) address - first;
+            if (distance % step == 0 && distance / step >= 0 && distance / step <= (long) (last - first) / step) {
+               return tables[t];
+            }
+         }
+         throw new AddressErrorException("address is not that of a memory block ",
+            Exceptions.ADDRESS_EXCEPTION_LOAD, address);
+      }
+   
+    // Store values[from..from+words-1] into consecutive words, or fillValue into every
+    // one if values is null, then notify observers and record the backstep.
+       private void storeWords(int address, int[] values, int from, int words, int fillValue) throws AddressErrorException {
+         if (words <= 0) {
+            return;
+         }
+         int[][] blockTable = bulkTable(address, words, Exceptions.ADDRESS_EXCEPTION_STORE);
+         boolean backStepping = Globals.getSettings().getBackSteppingEnabled();
+         int[] oldValues = (backStepping) ? new int[words] : null;
+         if (oldValues != null) {
+            transferWords(blockTable, address, oldValues, 0, words, 0, false);
+         }
+         transferWords(blockTable, address, values, from, words, fillValue, true);
+         notifyAnyObservers(AccessNotice.WRITE, address, words * WORD_LENGTH_BYTES);
+         if (backStepping) {
+            Globals.program.getBackStepper().addMemoryRestoreWords(address, oldValues);
+         }
+      }
+   
+    // The block table holding all the words of the range, checking that there is one.
+       private int[][] bulkTable(int address, int words, int exceptionCause) throws AddressErrorException {
+         int last = address + (words - 1) * WORD_LENGTH_BYTES;
+         if (address % WORD_LENGTH_BYTES != 0) {
+            throw new AddressErrorException("address not aligned on word boundary ",
+               exceptionCause, address);
+         }
+         if (inDataSegment(address) && inDataSegment(last) && last >= address) {
+            return dataBlockTable;
+         }
+         if (address > stackLimitAddress && address <= stackBaseAddress &&
+             last > stackLimitAddress && last <= stackBaseAddress && last >= address) {
+            return stackBlockTable;
+         }
+         if (address >= memoryMapBaseAddress && address < memoryMapLimitAddress &&
+             last >= memoryMapBaseAddress && last < memoryMapLimitAddress && last >= address) {
+            return memoryMapBlockTable;
+         }
+         if (inKernelDataSegment(address) && inKernelDataSegment(last) && last >= address) {
+            return kernelDataBlockTable;
+         }
+         throw new AddressErrorException("range out of bounds or not within one data segment ",
+            exceptionCause, address);
+      }
+   
+    // Move words between the block table and values[from..from+words-1]: into the table
+    // if store is true (fillValue into every word if values is null), else out of it.
+    // Whole runs within a block are moved at once, except in the stack whose table
+    // runs backward.
+       private void transferWords(int[][] blockTable, int address, int[] values, int from, int words,
+                                  int fillValue, boolean store) {
+         if (blockTable == stackBlockTable) {
+            for (int i=0; i<words; i++) {
+               int relative = (stackBaseAddress - (address + i * WORD_LENGTH_BYTES)) >> 2;
+               if (store) {
+                  storeWordInTable(blockTable, relative, (values == null) ? fillValue : values[from + i]);
+               } 
+               else {
+                  values[from + i] = fetchWordFromTable(blockTable, relative);
+               }
+            }
+            return;
+         }
+         int base = (blockTable == dataBlockTable) ? dataSegmentBaseAddress
+                  : (blockTable == kernelDataBlockTable) ? kernelDataBaseAddress
+                  : memoryMapBaseAddress;
+         int relative = (address - base) >> 2;
+         int done = 0;
+         while (done < words) {
+            int block = relative / BLOCK_LENGTH_WORDS;
+            int offset = relative % BLOCK_LENGTH_WORDS;
+            int length = Math.min(words - done, BLOCK_LENGTH_WORDS - offset);
+            if (store) {
+               int[] blockWords = writableBlock(blockTable, block);
+               if (values == null) {
+                  Arrays.fill(blockWords, offset, offset + length, fillValue);
+               } 
+               else {
+                  System.arraycopy(values, from + done, blockWords, offset, length);
+               }
+            } 
+            else if (blockTable[block] == null) {
+               Arrays.fill(values, from + done, from + done + length, 0);
+            } 
+            else {
+               System.arraycopy(blockTable[block], offset, values, from + done, length);
+            }
+            relative += length;
+            done += length;
+         }
+      }
+   
    ////////////////////////////////////////////////////////////////////////////////
    /**
     * Stores ProgramStatement in Text Segment.  
@@ -583,6 +1030,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          else {
             storeProgramStatement(address, statement, kernelTextBaseAddress, kernelTextBlockTable);
          }
+         Simulator.textStatementChanged(address, statement);
       }
    	
    
@@ -1119,6 +1567,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                Exceptions.ADDRESS_EXCEPTION_LOAD, startAddr);
          }
          observables.add(new MemoryObservable(obs, startAddr, endAddr));
+         rebuildObserverIndex();
       }
    
       /**
@@ -1135,8 +1584,13 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        public void deleteObserver(Observer obs) {
          Iterator it = observables.iterator();
          while (it.hasNext()) {
-            ((MemoryObservable)it.next()).deleteObserver(obs);
+            MemoryObservable mo = (MemoryObservable)it.next();
+            mo.deleteObserver(obs);
+            if (mo.countObservers() == 0) {
+               it.remove();
+            }
          }	
+         rebuildObserverIndex();
       }
    	
    	/**
@@ -1145,6 +1599,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        public void deleteObservers() {
          // just drop the collection
          observables = getNewMemoryObserversCollection();
+         rebuildObserverIndex();
       }
    	
    	/**
@@ -1171,16 +1626,56 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        private Collection getNewMemoryObserversCollection() {
          return new Vector();  // Vectors are thread-safe
       }
+   
+       /////////////////////////////////////////////////////////////////////////
+       // Rebuild observerPages and wideObservables from the observables collection.
+       // Each page list keeps registration order.
+       private synchronized void rebuildObserverIndex() {
+         Object[] all = observables.toArray();
+         if (all.length == 0) {
+            observerPages = null;
+            wideObservables = null;
+            return;
+         }
+         MemoryObservable[][][] pages = new MemoryObservable[1 << (32 - OBSERVER_PAGE_BITS - OBSERVER_REGION_BITS)][][];
+         ArrayList wide = new ArrayList();
+         for (int i=0; i<all.length; i++) {
+            MemoryObservable mo = (MemoryObservable) all[i];
+            int firstPage = mo.lowAddress >>> OBSERVER_PAGE_BITS;
+            int lastPage = (mo.highAddress-1+WORD_LENGTH_BYTES) >>> OBSERVER_PAGE_BITS;
+            if (lastPage - firstPage >= OBSERVER_INDEX_MAX_PAGES) {
+               wide.add(mo);
+               continue;
+            }
+            for (int page = firstPage; page <= lastPage; page++) {
+               int region = page >>> OBSERVER_REGION_BITS;
+               if (pages[region] == null) {
+                  pages[region] = new MemoryObservable[1 << OBSERVER_REGION_BITS][];
+               }
+               MemoryObservable[] list = pages[region][page & ((1 << OBSERVER_REGION_BITS) - 1)];
+               MemoryObservable[] newList = new MemoryObservable[(list == null) ? 1 : list.length + 1];
+               if (list != null) {
+                  System.arraycopy(list, 0, newList, 0, list.length);
+               }
+               newList[newList.length - 1] = mo;
+               pages[region][page & ((1 << OBSERVER_REGION_BITS) - 1)] = newList;
+            }
+         }
+         wideObservables = (wide.size() == 0) ? null : (MemoryObservable[]) wide.toArray(new MemoryObservable[wide.size()]);
+         observerPages = pages;
+      }
    		
        /////////////////////////////////////////////////////////////////////////
        // Private class whose objects will represent an observable-observer pair 
    	 // for a given memory address or range.
        private class MemoryObservable extends Observable implements Comparable {
          private int lowAddress, highAddress; 
+         private boolean acceptsRanges;
       	
           public MemoryObservable(Observer obs, int startAddr, int endAddr) {
             lowAddress = startAddr;
             highAddress = endAddr;
+            acceptsRanges = obs instanceof MemoryRangeObserver;
             this.addObserver(obs);
          }
       	
@@ -1220,17 +1715,81 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    //
    // The "|| Globals.getGui()==null" is a hack added 19 July 2012 DPS.  IF MIPS simulation
    // is from command mode, Globals.program is null but still want ability to observe.
+   //
+   // Only observables indexed under the address's page, plus any wide-range ones, are
+   // examined.  One notice is created, on the first match, and shared by every
+   // observable that matches; notices are immutable.
        private void notifyAnyObservers(int type, int address, int length, int value) {
-         if ((Globals.program != null || Globals.getGui()==null) && this.observables.size() > 0) {
-            Iterator it = this.observables.iterator();
-            MemoryObservable mo;
-            while (it.hasNext()) {
-               mo = (MemoryObservable)it.next();
-               if (mo.match(address)) {
-                  mo.notifyObserver(new MemoryAccessNotice(type, address, length, value));
+         MemoryObservable[][][] pages = observerPages;
+         MemoryObservable[] wide = wideObservables;
+         if ((pages == null && wide == null) || (Globals.program == null && Globals.getGui()!=null)) {
+            return;
+         }
+         MemoryAccessNotice notice = null;
+         MemoryObservable[][] region = (pages == null) ? null : pages[address >>> (OBSERVER_PAGE_BITS + OBSERVER_REGION_BITS)];
+         MemoryObservable[] list = (region == null) ? null : region[(address >>> OBSERVER_PAGE_BITS) & ((1 << OBSERVER_REGION_BITS) - 1)];
+         if (list != null) {
+            for (int i=0; i<list.length; i++) {
+               if (list[i].match(address)) {
+                  if (notice == null) {
+                     notice = new MemoryAccessNotice(type, address, length, value);
+                  }
+                  list[i].notifyObserver(notice);
+               }
+            }
+         }
+         if (wide != null) {
+            for (int i=0; i<wide.length; i++) {
+               if (wide[i].match(address)) {
+                  if (notice == null) {
+                     notice = new MemoryAccessNotice(type, address, length, value);
+                  }
+                  wide[i].notifyObserver(notice);
                }
             }
-         } 		
+         }
+      }
+   
+   ////////////////////////////////////////////////////////////////////////////////
+   //
+   // Notify observers of a bulk access to the byteCount bytes starting at address.
+   // Each observable whose range overlaps gets one notice, covering just the overlap,
+   // with the value of the first word there, if its observer is a MemoryRangeObserver.
+   // Any other observer gets one notice per word of the overlap, as if the words had
+   // been accessed one at a time.
+       private void notifyAnyObservers(int type, int address, int byteCount) {
+         if ((observerPages == null && wideObservables == null) || (Globals.program == null && Globals.getGui()!=null)) {
+            return;
+         }
+         long end = (address & 0xffffffffL) + byteCount;
+         Object[] all = observables.toArray();
+         for (int i=0; i<all.length; i++) {
+            MemoryObservable mo = (MemoryObservable) all[i];
+            long low = Math.max(address & 0xffffffffL, mo.lowAddress & 0xffffffffL);
+            long high = Math.min(end, (mo.highAddress & 0xffffffffL) + WORD_LENGTH_BYTES);
+            if (low < high) {
+               int first = (int) low;
+               if (mo.acceptsRanges) {
+                  mo.notifyObserver(new MemoryAccessNotice(type, first, (int) (high - low), wordNoNotify(first)));
+               } 
+               else {
+                  for (long word = low; word < high; word += WORD_LENGTH_BYTES) {
+                     mo.notifyObserver(new MemoryAccessNotice(type, (int) word, WORD_LENGTH_BYTES, wordNoNotify((int) word)));
+                  }
+               }
+            }
+         }
+      }
+   
+   // Value of the word holding the given address, for a range notice.  The range was
+   // checked by the caller.
+       private int wordNoNotify(int address) {
+         try {
+            return getWordNoNotify(address - (address % WORD_LENGTH_BYTES));
+         } 
+             catch (AddressErrorException e) {
+               return 0;
+            }
       }
    
    ////////////////////////////////////////////////////////////////////////////////
@@ -1246,6 +1805,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 
        private int storeBytesInTable(int [][] blockTable, 
                                    int relativeByteAddress, int length, int value) {
+         if (isAligned(relativeByteAddress, length)) {
+            return storeAlignedInTable(blockTable, relativeByteAddress, length, value);
+         }
          return storeOrFetchBytesInTable(blockTable, relativeByteAddress, length, value, STORE);
       }
    	
@@ -1258,9 +1820,83 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    //	
    
        private int fetchBytesFromTable(int[][] blockTable, int relativeByteAddress, int length) {
+         if (isAligned(relativeByteAddress, length)) {
+            return fetchAlignedFromTable(blockTable, relativeByteAddress, length);
+         }
          return storeOrFetchBytesInTable(blockTable, relativeByteAddress, length, 0, FETCH);
       }
    
+   ////////////////////////////////////////////////////////////////////////////////
+   //
+   // Fast paths for naturally aligned byte, halfword and word access, which is
+   // every access made by lb/lh/lw/sb/sh/sw.  The bytes all fall within one table
+   // word, so each access is one array index plus a mask and shift instead of a
+   // loop over the bytes.  They produce exactly the table contents and results
+   // of storeOrFetchBytesInTable() for either byte order: byte i of the value
+   // (least significant first) goes to byte (offset + i) of the word, where byte
+   // k of a word is bits 8k..8k+7 for little-endian and bits 24-8k..31-8k for
+   // big-endian.  They are not synchronized; aligned access touches a single int
+   // and the simulator thread is the only writer while a program runs.
+   //
+       private static boolean isAligned(int relativeByteAddress, int length) {
+         return (length == 4 || length == 2 || length == 1) && (relativeByteAddress & (length - 1)) == 0;
+      }
+   
+       private int storeAlignedInTable(int[][] blockTable, int relativeByteAddress, int length, int value) {
+         int offset, relativeWordAddress;
+         if (blockTable == stackBlockTable) {
+           // relative address counts down from the stack base, so the byte offset
+           // within the word is its negation.  Same fix-up as storeOrFetchBytesInTable.
+            offset = -relativeByteAddress & 3;
+            relativeWordAddress = (relativeByteAddress + offset) >> 2;
+         } 
+         else {
+            offset = relativeByteAddress & 3;
+            relativeWordAddress = relativeByteAddress >> 2;
+         }
+         int[] block = writableBlock(blockTable, relativeWordAddress / BLOCK_LENGTH_WORDS);
+         int index = relativeWordAddress % BLOCK_LENGTH_WORDS;
+         int word = block[index];
+         int bits = length << 3;
+         int mask = (length == 4) ? -1 : (1 << bits) - 1;
+         if (byteOrder == LITTLE_ENDIAN) {
+            int shift = offset << 3;
+            block[index] = (word & ~(mask << shift)) | ((value & mask) << shift);
+            return (word >>> shift) & mask;
+         } 
+         else {
+            int shift = (4 - length - offset) << 3;
+            int field = Integer.reverseBytes(value) >>> (32 - bits);
+            block[index] = (word & ~(mask << shift)) | (field << shift);
+            return Integer.reverseBytes((word >>> shift) & mask) >>> (32 - bits);
+         }
+      }
+   
+       private int fetchAlignedFromTable(int[][] blockTable, int relativeByteAddress, int length) {
+         int offset, relativeWordAddress;
+         if (blockTable == stackBlockTable) {
+            offset = -relativeByteAddress & 3;
+            relativeWordAddress = (relativeByteAddress + offset) >> 2;
+         } 
+         else {
+            offset = relativeByteAddress & 3;
+            relativeWordAddress = relativeByteAddress >> 2;
+         }
+         int[] block = blockTable[relativeWordAddress / BLOCK_LENGTH_WORDS];
+         if (block == null) {
+            return 0;
+         }
+         int word = block[relativeWordAddress % BLOCK_LENGTH_WORDS];
+         int bits = length << 3;
+         int mask = (length == 4) ? -1 : (1 << bits) - 1;
+         if (byteOrder == LITTLE_ENDIAN) {
+            return (word >>> (offset << 3)) & mask;
+         } 
+         else {
+            return Integer.reverseBytes((word >>> ((4 - length - offset) << 3)) & mask) >>> (32 - bits);
+         }
+      }
+   
    ////////////////////////////////////////////////////////////////////////////////		
    //
    // The helper's helper.  Works for either storing or fetching, little or big endian. 
@@ -1292,11 +1928,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             relativeWordAddress = relativeByteAddress >> 2;
             block = relativeWordAddress / BLOCK_LENGTH_WORDS;  // Block number
             offset = relativeWordAddress % BLOCK_LENGTH_WORDS; // Word within that block
-            if (blockTable[block] == null) {
-               if (op==STORE) 
-                  blockTable[block] = new int[BLOCK_LENGTH_WORDS];
-               else 
-                  return 0;
+            if (op == STORE) {
+               writableBlock(blockTable, block);
+            } 
+            else if (blockTable[block] == null) {
+               return 0;
             }
             if (byteOrder == LITTLE_ENDIAN) bytePositionInMemory = 3 - bytePositionInMemory;
             if (op == STORE) {
@@ -1322,14 +1958,12 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    // and block size.  Assumes address is word aligned, no endian processing.
    // Modified 29 Dec 2005 to return overwritten value.
          
-       private synchronized int storeWordInTable(int[][] blockTable, int relative, int value) {
+       private int storeWordInTable(int[][] blockTable, int relative, int value) {
          int  block, offset, oldValue;
          block = relative / BLOCK_LENGTH_WORDS;
          offset = relative % BLOCK_LENGTH_WORDS; 
-         if (blockTable[block] == null) {
-               // First time writing to this block, so allocate the space.
-            blockTable[block] = new int[BLOCK_LENGTH_WORDS];
-         }
+         // Allocates the block the first time it is written, copies it if shared.
+         writableBlock(blockTable, block);
          oldValue = blockTable[block][offset];
          blockTable[block][offset] = value;
          return oldValue;
@@ -1343,7 +1977,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    // and block size.  Assumes word alignment, no endian processing.
    //
    
-       private synchronized int fetchWordFromTable(int[][] blockTable, int relative) {
+       private int fetchWordFromTable(int[][] blockTable, int relative) {
          int value = 0;
          int block, offset;
          block = relative / BLOCK_LENGTH_WORDS;
@@ -1422,6 +2056,13 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             if (blockTable[block] == null) {
                // No instructions are stored in this block, so allocate the block.
                blockTable[block] = new ProgramStatement[BLOCK_LENGTH_WORDS];
+            } 
+            else if (sharingBlocks) {
+               boolean[] shared = (blockTable == textBlockTable) ? textBlockShared : kernelTextBlockShared;
+               if (shared[block]) {
+                  blockTable[block] = (ProgramStatement[]) blockTable[block].clone();
+                  shared[block] = false;
+               }
             }
             blockTable[block][offset] = statement;
          }
@@ -39,11 +39,14 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
     public class Register extends Observable {
       private String name;
       private int number, resetValue;
-   	// volatile should be enough to allow safe multi-threaded access  
-   	// w/o the use of synchronized methods.  getValue and setValue
-   	// are the only methods here used by the register collection
-   	// (RegisterFile, Coprocessor0, Coprocessor1) methods. 
-      private volatile int value;
+   	// The value lives in one slot of a RegisterBlock, which may be shared with
+   	// other registers of the same collection (RegisterFile, Coprocessor1) so they
+   	// can read and write the primitive array directly.  Observers are only
+   	// notified when this register's bit is set in the block's observed mask,
+   	// so unobserved access takes no monitor.
+      private RegisterBlock block;
+      private int slot;
+      private long bit;
       
    	 /**
         *  Creates a new register with specified name, number, and value.
@@ -53,9 +56,25 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
         */
    	  
        public Register(String n, int num, int val){
+         this(n, num, val, new RegisterBlock(1), 0);
+      }
+   
+   	 /**
+        *  Creates a new register whose value is kept in given slot of a shared block.
+        *   @param n The name of the register.
+        *   @param num The number of the register.
+        *   @param val The inital (and reset) value of the register.
+        *   @param block storage shared with the other registers of the collection.
+        *   @param slot index of this register's value within the block.
+        */
+   	  
+       Register(String n, int num, int val, RegisterBlock block, int slot){
          name= n;
          number=num;
-         value= val;
+         this.block = block;
+         this.slot = slot;
+         this.bit = 1L << slot;
+         block.values[slot] = val;
          resetValue = val;
       }
       
@@ -74,9 +93,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  *   @return value The value of the Register.
    	  */
    	  
-       public synchronized int getValue(){
-         notifyAnyObservers(AccessNotice.READ);
-         return value;
+       public int getValue(){
+         if ((block.observed & bit) != 0) {
+            notifyAnyObservers(AccessNotice.READ);
+         }
+         return block.values[slot];
       }
 
       
@@ -86,8 +107,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  *   @return value The value of the Register.
    	  */
    	  
-       public synchronized int getValueNoNotify(){
-         return value;
+       public int getValueNoNotify(){
+         return block.values[slot];
       }
 		
    
@@ -115,10 +136,12 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  *   @return previous value of register
    	  */
    	  
-       public synchronized int setValue(int val){
-         int old = value;
-         value = val;
-         notifyAnyObservers(AccessNotice.WRITE);
+       public int setValue(int val){
+         int old = block.values[slot];
+         block.values[slot] = val;
+         if ((block.observed & bit) != 0) {
+            notifyAnyObservers(AccessNotice.WRITE);
+         }
          return old;
       }
    	
@@ -127,8 +150,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  *  Observers are not notified.  
    	  */
    	  
-       public synchronized void resetValue(){
-         value = resetValue;
+       public void resetValue(){
+         block.values[slot] = resetValue;
       }
    	
    	/**
@@ -136,14 +159,45 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 *  set when <tt>resetValue()</tt> is called.
    	 */
    	 
-       public synchronized void changeResetValue(int reset) {
+       public void changeResetValue(int reset) {
          resetValue = reset;
       }
    
+   	/**
+   	  *  Adds an observer, and marks this register as observed so that reads
+   	  *  and writes start notifying.
+   	  *   @param o the observer to add.
+   	  */
+   	  
+       public synchronized void addObserver(Observer o) {
+         super.addObserver(o);
+         block.setObserved(bit, countObservers() > 0);
+      }
+   
+   	/**
+   	  *  Deletes an observer.  Once the last one is gone, reads and writes
+   	  *  no longer notify.
+   	  *   @param o the observer to delete.
+   	  */
+   	  
+       public synchronized void deleteObserver(Observer o) {
+         super.deleteObserver(o);
+         block.setObserved(bit, countObservers() > 0);
+      }
+   
+   	/**
+   	  *  Deletes all observers.  Reads and writes no longer notify.
+   	  */
+   	  
+       public synchronized void deleteObservers() {
+         super.deleteObservers();
+         block.setObserved(bit, false);
+      }
+   
    //
    // Method to notify any observers of register operation that has just occurred.
    //
-       private void notifyAnyObservers(int type) {
+       void notifyAnyObservers(int type) {
          if (this.countObservers() > 0){// && Globals.program != null) && Globals.program.inSteppedExecution()) {
             this.setChanged();
             this.notifyObservers(new RegisterAccessNotice(type, this.name));
@@ -0,0 +1,62 @@
+   package mars.mips.hardware;
+
+/*
+Copyright (c) 2003-2006,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+  *  Primitive storage shared by a group of Register objects, such as the general
+  *  purpose registers of RegisterFile or the FPU registers of Coprocessor1.
+  *  Each register owns one slot of the <tt>values</tt> array, and one bit of the
+  *  <tt>observed</tt> mask.  The bit is set while the register has at least one
+  *  Observer, so reads and writes of unobserved registers need neither a monitor
+  *  nor a trip through Observable.  At most 64 registers may share a block.
+  **/
+
+    class RegisterBlock {
+      final int[] values;
+      volatile long observed;
+   
+   	/**
+   	  *  Create storage for given number of registers, all initially zero and unobserved.
+   	  *   @param size number of slots, at most 64.
+   	  **/
+       RegisterBlock(int size) {
+         values = new int[size];
+         observed = 0L;
+      }
+   
+   	/**
+   	  *  Set or clear the observed bit of a slot.  Called by Register whenever its
+   	  *  list of observers changes.
+   	  *   @param bit the slot's bit, 1L << slot
+   	  *   @param on true if the register now has at least one observer
+   	  **/
+       synchronized void setObserved(long bit, boolean on) {
+         observed = on ? (observed | bit) : (observed & ~bit);
+      }
+   }
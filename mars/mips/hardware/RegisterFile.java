@@ -46,29 +46,46 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       public static final int GLOBAL_POINTER_REGISTER = 28;
       public static final int STACK_POINTER_REGISTER = 29;
    
+      // All registers, including pc (32), hi (33) and lo (34), keep their values
+      // in one primitive block indexed by register number.
+      private static final RegisterBlock block = new RegisterBlock(35);
+   
       private static Register [] regFile = 
-          { new Register("$zero", 0, 0), new Register("$at", 1, 0),
-         	new Register("$v0", 2, 0),new Register("$v1", 3, 0),
-         	new Register("$a0", 4, 0),new Register("$a1", 5, 0),
-         	new Register("$a2", 6, 0),new Register("$a3", 7, 0),
-         	new Register("$t0", 8, 0),new Register("$t1", 9, 0),
-         	new Register("$t2", 10, 0),new Register("$t3", 11, 0), 
-         	new Register("$t4", 12, 0),new Register("$t5", 13, 0),
-         	new Register("$t6", 14, 0),new Register("$t7", 15, 0),
-         	new Register("$s0", 16, 0),new Register("$s1", 17, 0),
-         	new Register("$s2", 18, 0),new Register("$s3", 19, 0),
-         	new Register("$s4", 20, 0),new Register("$s5", 21, 0),
-         	new Register("$s6", 22, 0),new Register("$s7", 23, 0),
-         	new Register("$t8", 24, 0),new Register("$t9", 25, 0),
-         	new Register("$k0", 26, 0),new Register("$k1", 27, 0),
-         	new Register("$gp", GLOBAL_POINTER_REGISTER, Memory.globalPointer),
-         	new Register("$sp", STACK_POINTER_REGISTER, Memory.stackPointer),
-         	new Register("$fp", 30, 0),new Register("$ra", 31, 0)
+          { register("$zero", 0, 0), register("$at", 1, 0),
+         	register("$v0", 2, 0),register("$v1", 3, 0),
+         	register("$a0", 4, 0),register("$a1", 5, 0),
+         	register("$a2", 6, 0),register("$a3", 7, 0),
+         	register("$t0", 8, 0),register("$t1", 9, 0),
+         	register("$t2", 10, 0),register("$t3", 11, 0), 
+         	register("$t4", 12, 0),register("$t5", 13, 0),
+         	register("$t6", 14, 0),register("$t7", 15, 0),
+         	register("$s0", 16, 0),register("$s1", 17, 0),
+         	register("$s2", 18, 0),register("$s3", 19, 0),
+         	register("$s4", 20, 0),register("$s5", 21, 0),
+         	register("$s6", 22, 0),register("$s7", 23, 0),
+         	register("$t8", 24, 0),register("$t9", 25, 0),
+         	register("$k0", 26, 0),register("$k1", 27, 0),
+         	register("$gp", GLOBAL_POINTER_REGISTER, Memory.globalPointer),
+         	register("$sp", STACK_POINTER_REGISTER, Memory.stackPointer),
+         	register("$fp", 30, 0),register("$ra", 31, 0)
            };
          												  
-      private static Register programCounter= new Register("pc", 32, Memory.textBaseAddress); 
-      private static Register hi= new Register("hi", 33, 0);//this is an internal register with arbitrary number
-      private static Register lo= new Register("lo", 34, 0);// this is an internal register with arbitrary number
+      private static Register programCounter= register("pc", 32, Memory.textBaseAddress); 
+      private static Register hi= register("hi", 33, 0);//this is an internal register with arbitrary number
+      private static Register lo= register("lo", 34, 0);// this is an internal register with arbitrary number
+      private static Register [] byNumber = new Register[block.values.length];
+      static {
+         for (int i=0; i< regFile.length; i++) {
+            byNumber[regFile[i].getNumber()] = regFile[i];
+         }
+         byNumber[32] = programCounter;
+         byNumber[33] = hi;
+         byNumber[34] = lo;
+      }
+   
+       private static Register register(String name, int number, int value) {
+         return new Register(name, number, value, block, number);
+      }
    		 
    
    	/**
@@ -93,31 +110,14 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  **/
    	  
        public static int updateRegister(int num, int val){
-         int old = 0;
-         if(num == 0){
+         if(num <= 0 || num == 32 || num >= byNumber.length){
             //System.out.println("You can not change the value of the zero register.");
+            return 0;
          }
-         else {
-            for (int i=0; i< regFile.length; i++){
-               if(regFile[i].getNumber()== num) {
-                  old = (Globals.getSettings().getBackSteppingEnabled())
-                        ? Globals.program.getBackStepper().addRegisterFileRestore(num,regFile[i].setValue(val))
-                     	: regFile[i].setValue(val);
-                  break;
-               }
-            }
-         }
-         if(num== 33){//updates the hi register
-            old = (Globals.getSettings().getBackSteppingEnabled())
-               	      ? Globals.program.getBackStepper().addRegisterFileRestore(num,hi.setValue(val))
-               			: hi.setValue(val);
-         }
-         else if(num== 34){// updates the low register
-            old = (Globals.getSettings().getBackSteppingEnabled())
-               	      ? Globals.program.getBackStepper().addRegisterFileRestore(num,lo.setValue(val))
-               			: lo.setValue(val);
-         }
-         return old;
+         int old = byNumber[num].setValue(val);
+         return (Globals.getSettings().getBackSteppingEnabled())
+               ? Globals.program.getBackStepper().addRegisterFileRestore(num,old)
+               : old;
       }
    	
    	/**
@@ -146,15 +146,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  **/
    	
        public static int getValue(int num){
-         if(num==33){
-            return hi.getValue();
-         }
-         else if(num==34){
-            return lo.getValue();
-         }
-         else  
-            return regFile[num].getValue();
-            
+         return byNumber[num].getValue();
       }
       		
       	/**
@@ -183,6 +175,26 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        public static Register[] getRegisters(){
          return regFile;
       }
+   
+   	/**
+   	  *  Returns the values of all registers, indexed by register number, with the
+   	  *  program counter, hi and lo at 32, 33 and 34.  Used by machine snapshots.
+   	  *   @return A new array of register values.
+   	  **/
+   	
+       public static int[] getValues(){
+         return (int[]) block.values.clone();
+      }
+   
+   	/**
+   	  *  Sets all registers, including the program counter, hi and lo, to values
+   	  *  returned earlier by getValues().  Observers are not notified.
+   	  *   @param values The register values, indexed by register number.
+   	  **/
+   	
+       public static void setValues(int[] values){
+         System.arraycopy(values, 0, block.values, 0, block.values.length);
+      }
       
    	/**
    	  *  Get register object corresponding to given name.  If no match, return null.
@@ -193,22 +205,28 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        public static Register getUserRegister(String Rname) {
          Register reg = null;
          if (Rname.charAt(0) == '$') {
-            try {
-                   // check for register number 0-31.
-               reg = regFile[Binary.stringToInt(Rname.substring(1))];    // KENV 1/6/05
+            // check for register number 0-31.  Only try to parse one if it could be a
+            // number; a failed parse is costly and most names are mnemonics like $t0.
+            // (An empty number converts to 0.)
+            if (Rname.length() == 1 || Binary.couldStartInteger(Rname.charAt(1))) {
+               try {
+                  reg = regFile[Binary.stringToInt(Rname.substring(1))];    // KENV 1/6/05
+               }
+                   catch (Exception e) {
+                      // handles both NumberFormat and ArrayIndexOutOfBounds
+                     reg = null; // just to be sure
+                  }
             }
-                catch (Exception e) {
-                   // handles both NumberFormat and ArrayIndexOutOfBounds
-                   // check for register mnemonic $zero thru $ra
-                  reg = null; // just to be sure
-                   // just do linear search; there aren't that many registers
-                  for (int i=0; i < regFile.length; i++) {
-                     if (Rname.equals(regFile[i].getName())) {
-                        reg = regFile[i];
-                        break;
-                     }
+            if (reg == null) {
+                // check for register mnemonic $zero thru $ra
+                // just do linear search; there aren't that many registers
+               for (int i=0; i < regFile.length; i++) {
+                  if (Rname.equals(regFile[i].getName())) {
+                     reg = regFile[i];
+                     break;
                   }
                }
+            }
          }
          return reg;
       }
@@ -19,18 +19,32 @@ public abstract class CustomAssembly{
     */
    public abstract String getDescription();
 
+   /**
+    * @return The fully qualified name of the class implementing the language.  Use this rather than
+    * getClass() to identify a language, since a language registered from a jar is listed through a
+    * stand-in until its class is loaded.
+    */
+   public String getLanguageClassName(){
+      return getClass().getName();
+   }
+
    public boolean enabled = false;
    protected ArrayList<BasicInstruction> instructionList = new ArrayList<BasicInstruction>();
+   private boolean populated = false;
    
    /**
     * Merges the custom instructions defined in populate() into a larger ArrayList, and ultimately into the global instruction list.
+    * populate() is only called the first time; after that the same instructions are merged again.
     * @param instrList The larger ArrayList. Should be the finalInstructionList of LanguageLoader.
     * @see populate
     * @see LanguageLoader
     */
    public void addCustomInstructions(ArrayList<BasicInstruction> instrList){
-      instructionList.clear();
-      this.populate();
+      if (!populated){
+         instructionList.clear();
+         this.populate();
+         populated = true;
+      }
       instrList.addAll(instructionList);
    }
 
@@ -0,0 +1,204 @@
+   package mars.mips.instructions;
+   import java.util.*;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Two-level table for decoding a binary machine word into its BasicInstruction.
+ * The first level is indexed by the 6-bit primary opcode.  Each primary opcode
+ * then selects its own secondary field -- funct, rt, rs, or a pair of them --
+ * chosen when the table is built to split its instructions most finely.  The
+ * secondary slot holds the few instructions whose constant bits agree with that
+ * opcode and field value, most specific mask first, and decoding checks only those.
+ *
+ * Masks come from the instructions themselves, so the table works for any mix
+ * of loaded CustomAssembly languages.  Where one instruction's constant bits
+ * are a subset of another's (e.g. nop within sll) the more specific one wins.
+ * Any other overlap is an ambiguity: it is reported when the table is built
+ * and resolved as before, by number of constant bits then by mask value, with a
+ * later duplicate encoding replacing an earlier one.
+ *
+ * @see InstructionSet#findByBinaryCode(int)
+ */
+
+    class DecodeTable {
+      private static final int PRIMARY_SHIFT = 26;
+      private static final int PRIMARY_SIZE = 64;
+      // Candidate secondary fields, as {shift, width} of a high and a low field.
+      private static final int[][] FIELDS = {
+            {0, 0, 0, 0},     // none
+            {0, 0, 0, 6},     // funct
+            {0, 0, 16, 5},    // rt
+            {0, 0, 21, 5},    // rs
+            {21, 5, 0, 6},    // rs and funct
+            {16, 5, 0, 6},    // rt and funct
+            {21, 5, 16, 5},   // rs and rt
+            };
+      private static final BasicInstruction[] NONE = new BasicInstruction[0];
+
+      private int[] highShift = new int[PRIMARY_SIZE];
+      private int[] highMask = new int[PRIMARY_SIZE];
+      private int[] lowShift = new int[PRIMARY_SIZE];
+      private int[] lowWidth = new int[PRIMARY_SIZE];
+      private int[] lowMask = new int[PRIMARY_SIZE];
+      private BasicInstruction[][][] slots = new BasicInstruction[PRIMARY_SIZE][][];
+      private ArrayList ambiguities = new ArrayList();
+
+   /**
+    * Build the table for the BasicInstructions in given list.  Other elements are ignored.
+    * @param instructionList the merged instruction list, in the order instructions were added
+    */
+       DecodeTable(ArrayList instructionList) {
+         ArrayList basics = new ArrayList();
+         HashMap byEncoding = new HashMap(); // mask and match -> index in basics
+         for (int i = 0; i < instructionList.size(); i++) {
+            if (!(instructionList.get(i) instanceof BasicInstruction)) {
+               continue;
+            }
+            BasicInstruction basic = (BasicInstruction) instructionList.get(i);
+            Long encoding = new Long(((long) basic.getOpcodeMask() << 32) | (basic.getOpcodeMatch() & 0xFFFFFFFFL));
+            Integer previous = (Integer) byEncoding.get(encoding);
+            if (previous == null) {
+               byEncoding.put(encoding, new Integer(basics.size()));
+               basics.add(basic);
+            }
+            else {
+               BasicInstruction replaced = (BasicInstruction) basics.get(previous.intValue());
+               ambiguities.add("\"" + basic.getExampleFormat() + "\" has the same binary encoding as \""
+                  + replaced.getExampleFormat() + "\" and replaces it");
+               basics.set(previous.intValue(), basic);
+            }
+         }
+         Collections.sort(basics,
+                new Comparator() {
+                   public int compare(Object a, Object b) {
+                     int maskA = ((BasicInstruction) a).getOpcodeMask();
+                     int maskB = ((BasicInstruction) b).getOpcodeMask();
+                     int d = Integer.bitCount(maskB) - Integer.bitCount(maskA);
+                     return (d == 0) ? maskA - maskB : d;
+                  }
+               });
+         findOverlaps(basics);
+         for (int op = 0; op < PRIMARY_SIZE; op++) {
+            ArrayList candidates = matching(basics, op << PRIMARY_SHIFT, 0xFFFFFFFF << PRIMARY_SHIFT);
+            int best = 0;
+            int bestLongest = Integer.MAX_VALUE;
+            BasicInstruction[][] bestSlots = null;
+            for (int f = 0; f < FIELDS.length && bestLongest > 1; f++) {
+               BasicInstruction[][] fieldSlots = split(candidates, op, FIELDS[f]);
+               int longest = 0;
+               for (int s = 0; s < fieldSlots.length; s++) {
+                  longest = Math.max(longest, fieldSlots[s].length);
+               }
+               if (longest < bestLongest) {
+                  best = f;
+                  bestLongest = longest;
+                  bestSlots = fieldSlots;
+               }
+            }
+            highShift[op] = FIELDS[best][0];
+            highMask[op] = (1 << FIELDS[best][1]) - 1;
+            lowShift[op] = FIELDS[best][2];
+            lowWidth[op] = FIELDS[best][3];
+            lowMask[op] = (1 << FIELDS[best][3]) - 1;
+            slots[op] = bestSlots;
+         }
+      }
+
+   /**
+    * Find the instruction for given binary machine word.
+    * @param binaryInstr the 32 bit machine word
+    * @return the matching BasicInstruction, or null if none matches
+    */
+       BasicInstruction find(int binaryInstr) {
+         int op = binaryInstr >>> PRIMARY_SHIFT;
+         int slot = (((binaryInstr >>> highShift[op]) & highMask[op]) << lowWidth[op])
+                     | ((binaryInstr >>> lowShift[op]) & lowMask[op]);
+         BasicInstruction[] candidates = slots[op][slot];
+         for (int i = 0; i < candidates.length; i++) {
+            BasicInstruction candidate = candidates[i];
+            if ((binaryInstr & candidate.getOpcodeMask()) == candidate.getOpcodeMatch()) {
+               return candidate;
+            }
+         }
+         return null;
+      }
+
+   /**
+    * Descriptions of the encoding ambiguities found when the table was built.
+    * @return ArrayList of String, empty if every machine word decodes unambiguously
+    */
+       ArrayList getAmbiguities() {
+         return ambiguities;
+      }
+
+   // Two instructions overlap if some machine word matches both.  That is only
+   // intended when one's constant bits include all of the other's.
+       private void findOverlaps(ArrayList basics) {
+         for (int i = 0; i < basics.size(); i++) {
+            BasicInstruction a = (BasicInstruction) basics.get(i);
+            for (int j = i + 1; j < basics.size(); j++) {
+               BasicInstruction b = (BasicInstruction) basics.get(j);
+               int common = a.getOpcodeMask() & b.getOpcodeMask();
+               if ((common & (a.getOpcodeMatch() ^ b.getOpcodeMatch())) == 0
+                     && common != a.getOpcodeMask() && common != b.getOpcodeMask()) {
+                  ambiguities.add("\"" + a.getExampleFormat() + "\" and \"" + b.getExampleFormat()
+                     + "\" have overlapping binary encodings; \"" + a.getExampleFormat() + "\" takes precedence");
+               }
+            }
+         }
+      }
+
+   // Instructions, in precedence order, whose constant bits agree with
+   // given bits wherever both are constant.
+       private static ArrayList matching(ArrayList basics, int bits, int bitsMask) {
+         ArrayList result = new ArrayList();
+         for (int i = 0; i < basics.size(); i++) {
+            BasicInstruction basic = (BasicInstruction) basics.get(i);
+            if (((basic.getOpcodeMatch() ^ bits) & basic.getOpcodeMask() & bitsMask) == 0) {
+               result.add(basic);
+            }
+         }
+         return result;
+      }
+
+       private static BasicInstruction[][] split(ArrayList candidates, int op, int[] field) {
+         int highWidth = field[1];
+         int lowWidth = field[3];
+         int fieldMask = (((1 << highWidth) - 1) << field[0]) | (((1 << lowWidth) - 1) << field[2]);
+         BasicInstruction[][] fieldSlots = new BasicInstruction[1 << (highWidth + lowWidth)][];
+         for (int s = 0; s < fieldSlots.length; s++) {
+            int bits = ((s >>> lowWidth) << field[0]) | ((s & ((1 << lowWidth) - 1)) << field[2]);
+            ArrayList inSlot = matching(candidates, bits, fieldMask);
+            fieldSlots[s] = inSlot.isEmpty() ? NONE
+                              : (BasicInstruction[]) inSlot.toArray(new BasicInstruction[inSlot.size()]);
+         }
+         return fieldSlots;
+      }
+   }
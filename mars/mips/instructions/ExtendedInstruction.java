@@ -46,6 +46,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
     public class ExtendedInstruction extends Instruction {
    
       private ArrayList translationStrings, compactTranslationStrings;
+      private TranslationTemplate[] translationTemplates, compactTranslationTemplates;
     /**
      * Constructor for ExtendedInstruction.
      * 
@@ -160,6 +161,47 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        public ArrayList getCompactBasicIntructionTemplateList() {
          return compactTranslationStrings;
       }
+   
+    /**
+     * Compile the basic instruction templates, so that expanding this instruction
+     * need not substitute into and re-tokenize them.  Called by InstructionSet
+     * once the instruction set is populated.
+     * @see TranslationTemplate
+     */
+       public void compileTranslations() {
+         translationTemplates = compileTranslationList(translationStrings);
+         compactTranslationTemplates = compileTranslationList(compactTranslationStrings);
+      }
+   
+    /**
+     * Get the compiled forms of the templates in getBasicIntructionTemplateList().
+     * @return array in the same order as the template list, with null for any template
+     * that has to be expanded with makeTemplateSubstitutions().  Null if not compiled.
+     */
+       public TranslationTemplate[] getBasicInstructionTranslationTemplates() {
+         return translationTemplates;
+      }
+   
+    /**
+     * Get the compiled forms of the templates in getCompactBasicIntructionTemplateList().
+     * @return array in the same order as the template list, with null for any template
+     * that has to be expanded with makeTemplateSubstitutions().  Null if not compiled or
+     * if the instruction does not have a compact alternative.
+     */
+       public TranslationTemplate[] getCompactBasicInstructionTranslationTemplates() {
+         return compactTranslationTemplates;
+      }
+   
+       private static TranslationTemplate[] compileTranslationList(ArrayList translationList) {
+         if (translationList == null) {
+            return null;
+         }
+         TranslationTemplate[] templates = new TranslationTemplate[translationList.size()];
+         for (int i = 0; i < templates.length; i++) {
+            templates[i] = TranslationTemplate.compile((String) translationList.get(i));
+         }
+         return templates;
+      }
 		   
       /**
    	 * Given a basic instruction template and the list of tokens from an extended
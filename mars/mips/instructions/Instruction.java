@@ -57,6 +57,8 @@ public abstract class Instruction {
 	protected String description;
 	/** List of tokens generated by tokenizing example usage (see <tt>exampleFormat</tt>). **/
 	protected TokenList tokenList;
+	/** The instruction tables that <tt>tokenList</tt> was made against (see InstructionSet). **/
+	Object preparedFor;
 
 
     /**
@@ -2,6 +2,7 @@
    import mars.simulator.*;
    import mars.mips.hardware.*;
    import mars.mips.instructions.syscalls.*;
+   import mars.assembler.TokenizedFileCache;
    import mars.*;
    import java.util.*;
    import java.io.*;
@@ -46,8 +47,12 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
     public class InstructionSet
    {
       private ArrayList instructionList;
-	  private ArrayList opcodeMatchMaps;
+      private HashMap mnemonicIndex;    // lower case mnemonic -> ArrayList of Instruction, null while populating
+      private String[] sortedMnemonics; // keys of mnemonicIndex in sorted order, for prefix search
+      private DecodeTable decodeTable;
       private SyscallLoader syscallLoader;
+      private HashMap tablesByLanguages = new HashMap(); // list of enabled languages -> InstructionTables
+      private ArrayList pseudoInstructions;              // as read from PseudoOps.txt, null until read
     /**
      * Creates a new InstructionSet object.
      */
@@ -89,6 +94,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 
       // String before = Integer.toString(instructionList.size());
       instructionList.clear();
+      mnemonicIndex = null;
+      sortedMnemonics = null;
+      // token types depend on the operator names, so earlier tokenizing is stale
+      TokenizedFileCache.clear();
       /* // Yet more debug
       JLabel debugLabel = new JLabel();
       debugLabel.setPreferredSize(new Dimension(175, 100));
@@ -97,58 +106,124 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       frame.pack();
       */
 
-      // 2025 RESEARCH: INSTRUCTIONS MOVED TO MipsAssembly.java
-      // LanguageLoader now handles instructions, both for MIPS and custom-defined languages
-      LanguageLoader.mergeCustomInstructions(instructionList);
+      // The tables for each combination of enabled languages are built the first time it
+      // is selected and kept, so switching languages back and forth is only a lookup.
+      ArrayList enabledLanguages = new ArrayList();
+      for (int i = 0; i < LanguageLoader.assemblyList.size(); i++) {
+         CustomAssembly language = (CustomAssembly) LanguageLoader.assemblyList.get(i);
+         if (language.enabled) {
+            enabledLanguages.add(language);
+         }
+      }
+      InstructionTables tables = (InstructionTables) tablesByLanguages.get(enabledLanguages);
+      if (tables == null) {
+         // 2025 RESEARCH: INSTRUCTIONS MOVED TO MipsAssembly.java
+         // LanguageLoader now handles instructions, both for MIPS and custom-defined languages
+         LanguageLoader.mergeCustomInstructions(instructionList);
+         buildMnemonicIndex();
+         tables = new InstructionTables();
+         tables.instructions = new ArrayList(instructionList);
+         tables.mnemonicIndex = mnemonicIndex;
+         tables.sortedMnemonics = sortedMnemonics;
+      } 
+      else {
+         instructionList.addAll(tables.instructions);
+         mnemonicIndex = tables.mnemonicIndex;
+         sortedMnemonics = tables.sortedMnemonics;
+      }
 
         ////////////// GET AND CREATE LIST OF SYSCALL FUNCTION OBJECTS ////////////////////
-         syscallLoader = new SyscallLoader();
-         syscallLoader.loadSyscalls();
+         if (syscallLoader == null) {
+            syscallLoader = new SyscallLoader();
+            syscallLoader.loadSyscalls();
+         }
       	
         // Initialization step.  Create token list for each instruction example.  This is
-        // used by parser to determine user program correct syntax.
+        // used by parser to determine user program correct syntax.  Token types depend on
+        // the operators known, so this is redone if the instruction was last prepared for
+        // another set of tables, which is only possible if it is in more than one.
          for (int i = 0; i < instructionList.size(); i++)
          {
             Instruction inst = (Instruction) instructionList.get(i);
-            inst.createExampleTokenList();
+            if (inst.preparedFor != tables) {
+               inst.createExampleTokenList();
+            }
+         }
+      
+        // Compile pseudo-instruction templates now that all operators are known.
+         for (int i = 0; i < instructionList.size(); i++)
+         {
+            Instruction inst = (Instruction) instructionList.get(i);
+            if (inst.preparedFor != tables && inst instanceof ExtendedInstruction) {
+               ((ExtendedInstruction) inst).compileTranslations();
+            }
+            inst.preparedFor = tables;
          }
 
-		 HashMap maskMap = new HashMap();
-		 ArrayList matchMaps = new ArrayList();
-		 for (int i = 0; i < instructionList.size(); i++) {
-		 	Object rawInstr = instructionList.get(i);
-			if (rawInstr instanceof BasicInstruction) {
-				BasicInstruction basic = (BasicInstruction) rawInstr;
-				Integer mask = Integer.valueOf(basic.getOpcodeMask());
-				Integer match = Integer.valueOf(basic.getOpcodeMatch());
-				HashMap matchMap = (HashMap) maskMap.get(mask);
-				if (matchMap == null) {
-					matchMap = new HashMap();
-					maskMap.put(mask, matchMap);
-					matchMaps.add(new MatchMap(mask, matchMap));
-				}
-				matchMap.put(match, basic);
-			}
-		 }
-		 Collections.sort(matchMaps);
-		 this.opcodeMatchMaps = matchMaps;
+         if (tables.decodeTable == null) {
+            DecodeTable table = new DecodeTable(instructionList);
+            // Only for debugging: languages that override an encoding are normal, and
+            // anything printed here would mix into program output on the command line.
+            if (Globals.debug) {
+               ArrayList ambiguities = table.getAmbiguities();
+               for (int i = 0; i < ambiguities.size(); i++) {
+                  System.out.println("Warning: " + ambiguities.get(i));
+               }
+            }
+            tables.decodeTable = table;
+            tablesByLanguages.put(enabledLanguages, tables);
+         }
+         this.decodeTable = tables.decodeTable;
+      }
+
+   // Group instructions by case-folded mnemonic, keeping instruction list order
+   // within each group, so operator lookups need not scan the whole list.
+       private void buildMnemonicIndex() {
+         HashMap index = new HashMap();
+         for (int i = 0; i < instructionList.size(); i++) {
+            Instruction inst = (Instruction) instructionList.get(i);
+            String key = inst.getName().toLowerCase();
+            ArrayList matches = (ArrayList) index.get(key);
+            if (matches == null) {
+               matches = new ArrayList(1);
+               index.put(key, matches);
+            }
+            matches.add(inst);
+         }
+         String[] mnemonics = (String[]) index.keySet().toArray(new String[index.size()]);
+         Arrays.sort(mnemonics);
+         sortedMnemonics = mnemonics;
+         mnemonicIndex = index;
+      }
+
+   // The instructions and lookup tables for one combination of enabled languages.
+       private static class InstructionTables {
+         private ArrayList instructions;
+         private HashMap mnemonicIndex;
+         private String[] sortedMnemonics;
+         private DecodeTable decodeTable;
       }
 
-	public BasicInstruction findByBinaryCode(int binaryInstr) {
-		ArrayList matchMaps = this.opcodeMatchMaps;
-		for (int i = 0; i < matchMaps.size(); i++) {
-			MatchMap map = (MatchMap) matchMaps.get(i);
-			BasicInstruction ret = map.find(binaryInstr);
-			if (ret != null) return ret;
-		}
-		return null;
-	}
+    /**
+     *  Given a binary machine word, return the basic instruction it encodes.
+     *  Uses the decode table built by populate().
+     *  @param binaryInstr 32 bit machine word
+     *  @return the matching BasicInstruction, or null if none matches.
+     */
+       public BasicInstruction findByBinaryCode(int binaryInstr) {
+         return decodeTable.find(binaryInstr);
+      }
    	
     /*  METHOD TO ADD PSEUDO-INSTRUCTIONS
     */
    
        public void addPseudoInstructions()
       {
+         if (pseudoInstructions != null) {
+            instructionList.addAll(pseudoInstructions);
+            return;
+         }
+         int first = instructionList.size();
          InputStream is = null;
          BufferedReader in = null;
          try
@@ -203,6 +278,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                }
             }
             in.close();
+            pseudoInstructions = new ArrayList(instructionList.subList(first, instructionList.size()));
          } 
              catch (IOException ioe)
             {
@@ -221,14 +297,19 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	
     /**
      *  Given an operator mnemonic, will return the corresponding Instruction object(s)
-     *  from the instruction set.  Uses straight linear search technique.
+     *  from the instruction set.  Case-insensitive.  Once populate() has finished this
+     *  is a hash lookup and the returned list is shared, so it must not be modified.
      *  @param name operator mnemonic (e.g. addi, sw,...)
      *  @return list of corresponding Instruction object(s), or null if not found.
      */
        public ArrayList matchOperator(String name)
       {
+         HashMap index = mnemonicIndex;
+         if (index != null) {
+            return (name == null) ? null : (ArrayList) index.get(name.toLowerCase());
+         }
          ArrayList matchingInstructions = null;
-        // Linear search for now....
+        // Linear search while the instruction set is being populated.
          for (int i = 0; i < instructionList.size(); i++)
          {
             if (((Instruction) instructionList.get(i)).getName().equalsIgnoreCase(name))
@@ -245,15 +326,29 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
     /**
      *  Given a string, will return the Instruction object(s) from the instruction
      *  set whose operator mnemonic prefix matches it.  Case-insensitive.  For example
-     *  "s" will match "sw", "sh", "sb", etc.  Uses straight linear search technique.
+     *  "s" will match "sw", "sh", "sb", etc.  Matches are grouped by mnemonic in
+     *  sorted order.
      *  @param name a string
      *  @return list of matching Instruction object(s), or null if none match.
      */
        public ArrayList prefixMatchOperator(String name)
       {
          ArrayList matchingInstructions = null;
-        // Linear search for now....
-         if (name != null) {
+         HashMap index = mnemonicIndex;
+         String[] mnemonics = sortedMnemonics;
+         if (name != null && index != null && mnemonics != null) {
+            String prefix = name.toLowerCase();
+            int first = Arrays.binarySearch(mnemonics, prefix);
+            if (first < 0) {
+               first = -first - 1;
+            }
+            for (int i = first; i < mnemonics.length && mnemonics[i].startsWith(prefix); i++) {
+               if (matchingInstructions == null) 
+                  matchingInstructions = new ArrayList();
+               matchingInstructions.addAll((ArrayList) index.get(mnemonics[i]));
+            }
+         } 
+         else if (name != null) {
             for (int i = 0; i < instructionList.size(); i++)
             {
                if (((Instruction) instructionList.get(i)).getName().toLowerCase().startsWith(name.toLowerCase()))
@@ -277,6 +372,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                                                         throws ProcessingException {
          Syscall service = syscallLoader.findSyscall(number);
          if (service != null) {
+            if (ExecutionHistory.isReplaying() && isOutputOnly(service)) {
+               return; // output already shown when first executed
+            }
             service.simulate(statement);
             return;
          }
@@ -285,6 +383,13 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
               number + " ", Exceptions.SYSCALL_EXCEPTION);
       }
    	
+    // Syscalls whose only effect is output to the user, which reverse execution does not
+    // repeat.  Printing syscalls need not be listed; SystemIO drops their output itself.
+       private static boolean isOutputOnly(Syscall service) {
+         String name = service.getName();
+         return name.startsWith("MessageDialog") || name.startsWith("MidiOut") || name.equals("Sleep");
+      }
+   
    	/*
    	 * Method to process a successful branch condition.  DO NOT USE WITH JUMP
    	 * INSTRUCTIONS!  The branch operand is a relative displacement in words
@@ -350,40 +455,4 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                  ((Globals.getSettings().getDelayedBranchingEnabled()) ? 
             	  Instruction.INSTRUCTION_LENGTH : 0) );	 
       }
-
-	  private static class MatchMap implements Comparable {
-	  	private int mask;
-		private int maskLength; // number of 1 bits in mask
-		private HashMap matchMap;
-
-		public MatchMap(int mask, HashMap matchMap) {
-			this.mask = mask;
-			this.matchMap = matchMap;
-
-			int k = 0;
-			int n = mask;
-			while (n != 0) {
-				k++;
-				n &= n - 1;
-			}
-			this.maskLength = k;
-		}
-
-		public boolean equals(Object o) {
-			return o instanceof MatchMap && mask == ((MatchMap) o).mask;
-		}
-
-		public int compareTo(Object other) {
-			MatchMap o = (MatchMap) other;
-			int d = o.maskLength - this.maskLength;
-			if (d == 0) d = this.mask - o.mask;
-			return d;
-		}
-
-		public BasicInstruction find(int instr) {
-			int match = Integer.valueOf(instr & mask);
-			return (BasicInstruction) matchMap.get(match);
-		}
-	}
    }
-
@@ -8,6 +8,9 @@
     import java.lang.reflect.Constructor;
     import java.net.URLClassLoader;
     import java.net.URL;
+    import java.security.MessageDigest;
+    import java.security.NoSuchAlgorithmException;
+    import java.util.prefs.Preferences;
     
 /**
  * Handles all user-defined instruction sets. Loads JAR files containing classes which extend CustomAssembly from the mars/mips/instructions/customlangs directory
@@ -20,11 +23,24 @@ public class LanguageLoader{
     private static final String JAR_EXTENSION = "jar";
     private static final String EXAMPLE_FILE = "ExampleCustomLanguage";
 
+    // Preferences node holding, for each jar, its hash and the languages found in it.
+    private static final String REGISTRY_NODE = "languageRegistry";
+
     private static ArrayList<BasicInstruction> finalInstructionList = new ArrayList<BasicInstruction>();
-    public static ArrayList<CustomAssembly> assemblyList = new ArrayList<CustomAssembly>(){{
+    public static ArrayList<CustomAssembly> assemblyList = loadLanguages();
+
+    /**
+    * Lists MIPS itself, then the languages in the jars of the customlangs directory.  A jar is only
+    * opened and searched if it has changed since it was last searched, according to the registry,
+    * which records each jar's hash along with the class name, name and description of each language in it.
+    * Languages known from the registry are loaded from their jar when they are first enabled.
+    */
+    private static ArrayList<CustomAssembly> loadLanguages(){
+        ArrayList<CustomAssembly> list = new ArrayList<CustomAssembly>();
         MipsAssembly m = new MipsAssembly();
-        add(m);
+        list.add(m);
 
+        Preferences registry = getRegistry();
         ArrayList<String> langCandidates = FilenameFinder.getFilenameList(m.getClass().getClassLoader(), CUSTOM_LANG_DIRECTORY, JAR_EXTENSION);
         HashSet<String> languages = new HashSet<String>();
 
@@ -35,14 +51,27 @@ public class LanguageLoader{
             } else{
                 languages.add(file);
             }
-            // Add an instance of the class to assemblyList if it extends CustomAssembly
+            // Add an instance of the class to the list if it extends CustomAssembly
             try {
                 String jarPath = CUSTOM_LANG_DIRECTORY + "/" + file;
                 File f = new File(jarPath);
+                String hash = hashFile(f);
 
-                // Create a class loader that can load classes from our JAR files
-                URL[] urls = {f.toURI().toURL()};
-                URLClassLoader cl = URLClassLoader.newInstance(urls);
+                String entry = (registry == null) ? null : registry.get(file, null);
+                if (entry != null && entry.startsWith(hash + "\n")){
+                    String[] fields = entry.split("\n", -1);
+                    for (int i = 1; i + 2 < fields.length; i += 3){
+                        list.add(new RegisteredAssembly(f, fields[i], fields[i + 1], fields[i + 2]));
+                    }
+                    continue;
+                }
+                StringBuilder record = new StringBuilder(hash);
+                boolean recordable = true;
+
+                // Create a class loader that can load classes from our JAR files.  Its parent
+                // is the loader of MARS itself, so the language binds to this copy of MARS
+                // even when it was not loaded by the system class loader (SimulationContext).
+                URLClassLoader cl = newClassLoader(f);
 
                 JarFile jarFile = new JarFile(f);
                 Enumeration<JarEntry> e = jarFile.entries();
@@ -64,14 +93,74 @@ public class LanguageLoader{
                     }
 
                     Constructor<CustomAssembly> c = langClass.getConstructor();
-                    add(c.newInstance());
+                    CustomAssembly language = c.newInstance();
+                    list.add(language);
+                    String name = language.getName();
+                    String description = language.getDescription();
+                    recordable = recordable && name != null && description != null
+                        && name.indexOf('\n') < 0 && description.indexOf('\n') < 0;
+                    record.append('\n').append(className).append('\n').append(name).append('\n').append(description);
                 }
                 jarFile.close();
+                if (registry != null && recordable && record.length() <= Preferences.MAX_VALUE_LENGTH){
+                    registry.put(file, record.toString());
+                }
             } catch(Exception e){
                 System.out.println("Error instantiating CustomAssembly from file " + file + ": " + e);
             }
         }
-    }};
+
+        // Forget jars that are gone
+        if (registry != null){
+            try {
+                String[] keys = registry.keys();
+                for (int i = 0; i < keys.length; i++){
+                    if (!languages.contains(keys[i])){
+                        registry.remove(keys[i]);
+                    }
+                }
+                registry.flush();
+            } catch(Exception e){
+                // the registry only saves time, so carry on without it
+            }
+        }
+        return list;
+    }
+
+    // The registry, or null if preferences are not available.
+    private static Preferences getRegistry(){
+        try {
+            return Preferences.userNodeForPackage(LanguageLoader.class).node(REGISTRY_NODE);
+        } catch(Exception e){
+            return null;
+        }
+    }
+
+    // Hex SHA-256 of the file's contents.
+    private static String hashFile(File f) throws IOException, NoSuchAlgorithmException{
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        InputStream in = new FileInputStream(f);
+        try {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0){
+                digest.update(buffer, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        byte[] bytes = digest.digest();
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (int i = 0; i < bytes.length; i++){
+            hex.append(Character.forDigit((bytes[i] >> 4) & 0xF, 16)).append(Character.forDigit(bytes[i] & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static URLClassLoader newClassLoader(File jar) throws IOException{
+        URL[] urls = {jar.toURI().toURL()};
+        return URLClassLoader.newInstance(urls, LanguageLoader.class.getClassLoader());
+    }
 
     /**
     * Merges all enabled custom instruction sets into the main instruction set that the simulator reads from.
@@ -94,4 +183,52 @@ public class LanguageLoader{
             Globals.instructionSet.addPseudoInstructions();
         }
     }
+
+    /**
+    * A language known from the registry.  It is listed under the recorded name and description,
+    * and its class is loaded from the jar the first time its instructions are needed.
+    */
+    private static class RegisteredAssembly extends CustomAssembly{
+        private File jar;
+        private String className;
+        private String name;
+        private String description;
+        private CustomAssembly language;
+
+        private RegisteredAssembly(File jar, String className, String name, String description){
+            this.jar = jar;
+            this.className = className;
+            this.name = name;
+            this.description = description;
+        }
+
+        public String getName(){
+            return name;
+        }
+
+        public String getDescription(){
+            return description;
+        }
+
+        public String getLanguageClassName(){
+            return className;
+        }
+
+        public void addCustomInstructions(ArrayList<BasicInstruction> instrList){
+            if (language == null){
+                try {
+                    Class langClass = newClassLoader(jar).loadClass(className);
+                    language = (CustomAssembly) langClass.getConstructor().newInstance();
+                } catch(Exception e){
+                    System.out.println("Error instantiating CustomAssembly " + className + " from file " + jar.getName() + ": " + e);
+                    return;
+                }
+            }
+            language.addCustomInstructions(instrList);
+        }
+
+        // The loaded language populates its own list
+        protected void populate(){
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,381 @@
+   package mars.mips.instructions;
+   import mars.*;
+   import mars.util.*;
+   import mars.assembler.*;
+   import mars.mips.hardware.*;
+   import java.util.*;
+   import java.util.regex.*;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * One basic instruction template of an ExtendedInstruction, compiled once so that
+ * expanding a pseudo-instruction does not have to substitute into the template
+ * text and tokenize the result.  The template is tokenized when it is compiled;
+ * each token is either fixed text, whose token type is worked out then, or one
+ * of the markers described at ExtendedInstruction.makeTemplateSubstitutions(),
+ * which is computed from the source statement's tokens at expansion time.  The
+ * candidate instructions for the template's operator are also looked up once.
+ *
+ * expand() gives the same tokens that substituting and tokenizing would.
+ * Templates it cannot be sure of are not compiled (see compile()), and for the
+ * odd operand value that would tokenize differently in context expand() returns
+ * null; either way the assembler falls back to makeTemplateSubstitutions().
+ */
+
+    public class TranslationTemplate {
+      private static final int LITERAL = 0;
+      private static final int REGISTER = 1;        // RGn
+      private static final int OPERAND = 2;         // OPn
+      private static final int NEXT_REGISTER = 3;   // NRn
+      private static final int LABEL_HIGH = 4;      // LHn, LHnPm
+      private static final int LABEL_LOW = 5;       // LLn, LLnU, LLnPm
+      private static final int VALUE_HIGH = 6;      // VHn, VHnPm
+      private static final int VALUE_HIGH_LOGICAL = 7; // VHLn, VHLnPm
+      private static final int VALUE_LOW = 8;       // VLn, VLnU, VLnPm, VLnPmU
+      private static final int LA_HIGH = 9;         // LHL
+      private static final int OFFSET_HIGH = 10;    // LHPA, LHPAPm
+      private static final int OFFSET_HIGH_ORI = 11; // LHPN
+      private static final int OFFSET_LOW = 12;     // LLP, LLPU, LLPPm
+      private static final int SHIFT_32 = 13;       // S32
+      private static final int BRANCH_LABEL = 14;   // LAB
+      private static final int BRANCH_OFFSET = 15;  // BROFFnm
+
+      private static final Pattern REGISTER_MARKER = Pattern.compile("(RG|OP|NR)([1-9])");
+      private static final Pattern HIGH_MARKER = Pattern.compile("(LH|VHL|VH)([1-9])(?:P([0-9]))?");
+      private static final Pattern LOW_MARKER = Pattern.compile("(LL|VL)([1-9])(?:P([0-9]))?(U)?");
+      private static final Pattern OFFSET_MARKER = Pattern.compile("(LHPA|LLP)(?:P([0-9]))?(U)?");
+      private static final Pattern BRANCH_OFFSET_MARKER = Pattern.compile("BROFF(.)(.)");
+      // Any of these in what is left over means the template uses a marker in a way not compiled here.
+      private static final String[] MARKER_TEXT = { "RG", "OP", "NR", "LH", "LL", "VH", "VL", "S32", "LAB", "BROFF", "DBNOP" };
+
+      private String template;
+      private ArrayList instructionMatches;
+      private String[] gaps;       // template text before each token
+      private int[] kinds;
+      private String[] texts;      // template text of each token
+      private TokenTypes[] types;  // token type of LITERAL tokens
+      private int[] operands;      // source token position the marker refers to
+      private int[] addends;       // the m of ...Pm markers
+      private boolean[] unsigned;  // ...U markers
+      private TranslationTemplate delayedNop; // for DBNOP: the "nop" generated if delayed branching is enabled
+
+       private TranslationTemplate(String template) {
+         this.template = template;
+      }
+
+   /**
+    * Compile a basic instruction template.  Must be called after the instruction
+    * set has been populated, since operators are looked up in it.
+    * @param template the template, as given in PseudoOps.txt
+    * @return the compiled template, or null if it has to be expanded by
+    * ExtendedInstruction.makeTemplateSubstitutions()
+    */
+       public static TranslationTemplate compile(String template) {
+         if (template.indexOf("DBNOP") >= 0) {
+            TranslationTemplate nop = compile("nop");
+            if (nop == null) {
+               return null;
+            }
+            TranslationTemplate compiled = new TranslationTemplate(template);
+            compiled.delayedNop = nop;
+            return compiled;
+         }
+         ErrorList errors = new ErrorList();
+         TokenList tokens = new Tokenizer().tokenizeLine(0, template, errors, false);
+         if (errors.errorsOccurred() || tokens.isEmpty() || tokens.get(0).getType() != TokenTypes.OPERATOR) {
+            return null;
+         }
+         TranslationTemplate compiled = new TranslationTemplate(template);
+         int size = tokens.size();
+         compiled.instructionMatches = Globals.instructionSet.matchOperator(tokens.get(0).getValue());
+         compiled.gaps = new String[size];
+         compiled.kinds = new int[size];
+         compiled.texts = new String[size];
+         compiled.types = new TokenTypes[size];
+         compiled.operands = new int[size];
+         compiled.addends = new int[size];
+         compiled.unsigned = new boolean[size];
+         HashMap markers = new HashMap(); // marker family -> full marker text
+         int end = 0;
+         for (int i = 0; i < size; i++) {
+            Token token = tokens.get(i);
+            String text = token.getValue();
+            int start = token.getStartPos() - 1;
+            if (start < end || !template.startsWith(text, start)) {
+               return null; // e.g. a character literal, whose value is not its text
+            }
+            compiled.gaps[i] = template.substring(end, start);
+            compiled.texts[i] = text;
+            end = start + text.length();
+            String family = compiled.parseMarker(i, text);
+            if (family == null) {
+               for (int m = 0; m < MARKER_TEXT.length; m++) {
+                  if (text.indexOf(MARKER_TEXT[m]) >= 0) {
+                     return null;
+                  }
+               }
+               compiled.kinds[i] = LITERAL;
+               compiled.types[i] = token.getType();
+               if (token.getType() == TokenTypes.ERROR) {
+                  return null;
+               }
+               // Whether a sign joins the number after it depends on the token before it.
+               if ((text.charAt(0) == '-' || text.charAt(0) == '+') &&
+                     (text.length() == 1 || (i > 0 && compiled.kinds[i - 1] != LITERAL))) {
+                  return null;
+               }
+            }
+            else {
+               // makeTemplateSubstitutions() handles one variant of each marker per template.
+               String previous = (String) markers.put(family, text);
+               if (previous != null && !previous.equals(text)) {
+                  return null;
+               }
+            }
+         }
+         if (compiled.instructionMatches == null || template.substring(end).trim().length() > 0) {
+            return null;
+         }
+         return compiled;
+      }
+
+   // Classify token i of the template.  Returns the marker family (the part that
+   // makeTemplateSubstitutions() searches for) or null if the token is not a marker.
+       private String parseMarker(int i, String text) {
+         Matcher m;
+         if ((m = REGISTER_MARKER.matcher(text)).matches()) {
+            String kind = m.group(1);
+            kinds[i] = kind.equals("RG") ? REGISTER : kind.equals("OP") ? OPERAND : NEXT_REGISTER;
+            operands[i] = Integer.parseInt(m.group(2));
+            return text;
+         }
+         if ((m = HIGH_MARKER.matcher(text)).matches()) {
+            String kind = m.group(1);
+            kinds[i] = kind.equals("LH") ? LABEL_HIGH : kind.equals("VH") ? VALUE_HIGH : VALUE_HIGH_LOGICAL;
+            operands[i] = Integer.parseInt(m.group(2));
+            addends[i] = (m.group(3) == null) ? 0 : Integer.parseInt(m.group(3));
+            return kind + m.group(2);
+         }
+         if ((m = LOW_MARKER.matcher(text)).matches()) {
+            if (m.group(1).equals("LL") && m.group(3) != null && m.group(4) != null) {
+               return null; // no LLnPmU marker
+            }
+            kinds[i] = m.group(1).equals("LL") ? LABEL_LOW : VALUE_LOW;
+            operands[i] = Integer.parseInt(m.group(2));
+            addends[i] = (m.group(3) == null) ? 0 : Integer.parseInt(m.group(3));
+            unsigned[i] = m.group(4) != null;
+            return m.group(1) + m.group(2);
+         }
+         if ((m = OFFSET_MARKER.matcher(text)).matches()) {
+            if (m.group(1).equals("LHPA") && m.group(3) != null) {
+               return null; // no LHPAU marker
+            }
+            kinds[i] = m.group(1).equals("LHPA") ? OFFSET_HIGH : OFFSET_LOW;
+            addends[i] = (m.group(2) == null) ? 0 : Integer.parseInt(m.group(2));
+            unsigned[i] = m.group(3) != null;
+            return m.group(1);
+         }
+         if ((m = BRANCH_OFFSET_MARKER.matcher(text)).matches()) {
+            kinds[i] = BRANCH_OFFSET;
+            return "BROFF";
+         }
+         if (text.equals("LHL")) {
+            kinds[i] = LA_HIGH;
+            return text;
+         }
+         if (text.equals("LHPN")) {
+            kinds[i] = OFFSET_HIGH_ORI;
+            return text;
+         }
+         if (text.equals("S32")) {
+            kinds[i] = SHIFT_32;
+            return text;
+         }
+         if (text.equals("LAB")) {
+            kinds[i] = BRANCH_LABEL;
+            return text;
+         }
+         return null;
+      }
+
+   /**
+    * Get the instructions that the generated statement's operator may stand for,
+    * as Assembler.matchInstruction() would give them.
+    * @return ArrayList of Instruction
+    */
+       public ArrayList getInstructionMatches() {
+         return (delayedNop == null) ? instructionMatches : delayedNop.instructionMatches;
+      }
+
+   /**
+    * Generate the tokens of the basic statement for one pseudo-instruction statement.
+    * @param program the program being assembled, for label lookup
+    * @param sourceLine source line number of the pseudo-instruction
+    * @param sourceTokens tokens of the pseudo-instruction statement in basic assembly form
+    * @return the generated statement's tokens, an empty list if the template generates
+    * no instruction, or null if it must be expanded with makeTemplateSubstitutions() instead.
+    */
+       public TokenList expand(MIPSprogram program, int sourceLine, TokenList sourceTokens) {
+         if (delayedNop != null) {
+            return Globals.getSettings().getDelayedBranchingEnabled()
+               ? delayedNop.expand(program, sourceLine, sourceTokens)
+               : new TokenList();
+         }
+         TokenList result = new TokenList();
+         int position = 1;
+         for (int i = 0; i < kinds.length; i++) {
+            position += gaps[i].length();
+            String value = (kinds[i] == LITERAL) ? texts[i] : substitute(i, program, sourceTokens);
+            if (value == null) {
+               return null;
+            }
+            TokenTypes type;
+            if (kinds[i] == LITERAL) {
+               type = types[i];
+            }
+            else {
+               // The tokenizer would split the value, or attach a sign to the previous token.
+               if (value.length() == 0 || !isSingleToken(value) ||
+                     ((value.charAt(0) == '-' || value.charAt(0) == '+') && !result.isEmpty()
+                        && result.get(result.size() - 1).getType() == TokenTypes.IDENTIFIER)) {
+                  return null;
+               }
+               type = TokenTypes.matchTokenType(value);
+               if (type == TokenTypes.ERROR) {
+                  return null;
+               }
+            }
+            result.add(new Token(type, value, null, sourceLine, position));
+            position += value.length();
+         }
+         return result;
+      }
+
+       private static boolean isSingleToken(String value) {
+         for (int i = 0; i < value.length(); i++) {
+            switch (value.charAt(i)) {
+               case ' ': case '\t': case ',': case '#': case ':': case '(': case ')': case '"': case '\'':
+                  return false;
+               case '+': case '-':
+                  if (i > 0) return false;
+            }
+         }
+         return true;
+      }
+
+   // Value to substitute for marker token i, or null if makeTemplateSubstitutions()
+   // would leave the marker as it is.
+       private String substitute(int i, MIPSprogram program, TokenList sourceTokens) {
+         int op = operands[i];
+         int add = addends[i];
+         switch (kinds[i]) {
+            case REGISTER:
+            case OPERAND:
+               return (op < sourceTokens.size()) ? sourceTokens.get(op).getValue() : null;
+            case NEXT_REGISTER:
+               if (op >= sourceTokens.size()) {
+                  return null;
+               }
+               String token = sourceTokens.get(op).getValue();
+               Register register = RegisterFile.getUserRegister(token);
+               if (register != null) {
+                  return (register.getNumber() >= 0) ? "$" + (register.getNumber() + 1) : null;
+               }
+               int regNumber = Coprocessor1.getRegisterNumber(token);
+               return (regNumber >= 0) ? "$f" + (regNumber + 1) : null;
+            case LABEL_HIGH:
+            case VALUE_HIGH:
+               if (op >= sourceTokens.size()) {
+                  return null;
+               }
+               int high = intValue(sourceTokens.get(op), add);
+               return String.valueOf((high >> 16) + Binary.bitValue(high, 15));
+            case VALUE_HIGH_LOGICAL:
+               return (op < sourceTokens.size()) ? String.valueOf(intValue(sourceTokens.get(op), add) >> 16) : null;
+            case LABEL_LOW:
+            case VALUE_LOW:
+               if (op >= sourceTokens.size()) {
+                  return null;
+               }
+               int low = intValue(sourceTokens.get(op), add);
+               return String.valueOf(unsigned[i] ? low & 0xffff : low << 16 >> 16);
+            case LA_HIGH:
+               return (sourceTokens.size() > 2) ? String.valueOf(intValue(sourceTokens.get(2), 0) >> 16) : null;
+            case OFFSET_HIGH:
+            case OFFSET_HIGH_ORI:
+            case OFFSET_LOW:
+               if (sourceTokens.size() <= 4) {
+                  return null;
+               }
+               int addr = 0;
+               try {
+                  addr = Binary.stringToInt(sourceTokens.get(2).getValue()) +
+                         Binary.stringToInt(sourceTokens.get(4).getValue()) + add;
+               }
+                   catch (NumberFormatException e) {
+                  }
+               if (kinds[i] == OFFSET_HIGH) {
+                  return String.valueOf((addr >> 16) + Binary.bitValue(addr, 15));
+               }
+               if (kinds[i] == OFFSET_HIGH_ORI) {
+                  return String.valueOf(addr >> 16);
+               }
+               return String.valueOf(unsigned[i] ? addr & 0xffff : addr << 16 >> 16);
+            case SHIFT_32:
+               return Integer.toString(32 - intValue(sourceTokens.get(sourceTokens.size() - 1), 0));
+            case BRANCH_LABEL:
+               String label = sourceTokens.get(sourceTokens.size() - 1).getValue();
+               Symbol sym = program.getLocalSymbolTable().getSymbolGivenAddressLocalOrGlobal(label);
+               return (sym == null) ? null : sym.getName();
+            case BRANCH_OFFSET:
+               return texts[i].substring(Globals.getSettings().getDelayedBranchingEnabled() ? 6 : 5,
+                                         Globals.getSettings().getDelayedBranchingEnabled() ? 7 : 6);
+         }
+         return null;
+      }
+
+   // Integer value of token plus addend, or 0 if the token is not an integer,
+   // as makeTemplateSubstitutions() computes it.
+       private static int intValue(Token token, int add) {
+         try {
+            return Binary.stringToInt(token.getValue()) + add;
+         }
+             catch (NumberFormatException e) {
+               return 0;
+            }
+      }
+
+   /**
+    * @return the template text this was compiled from
+    */
+       public String toString() {
+         return template;
+      }
+   }
@@ -589,16 +589,10 @@ public class SeerLanguage extends CustomAssembly {
 
                         try {
                             
-                            for (int x = 0; x < 5; x++) {
-                                drawPixel(statement, xOffset + x, baseY, hat);
-                            }
-                            for (int x = 1; x < 4; x++) {
-                                drawPixel(statement, xOffset + x, baseY + 1, skin);
-                            }
+                            drawRow(statement, xOffset, baseY, 5, hat);
+                            drawRow(statement, xOffset + 1, baseY + 1, 3, skin);
                             for (int y = 2; y < 7; y++) {
-                                for (int x = 1; x < 4; x++) {
-                                    drawPixel(statement, xOffset + x, baseY + y, robe);
-                                }
+                                drawRow(statement, xOffset + 1, baseY + y, 3, robe);
                             }
                         } catch (ProcessingException e) {
                             throw e;
@@ -622,13 +616,9 @@ public class SeerLanguage extends CustomAssembly {
                         int col = RegisterFile.getValue(operands[0]);
 
                         try {
-                            for (int y = 0; y < BITMAP_HEIGHT; y++) {
-                                for (int x = 0; x < BITMAP_WIDTH; x++) {
-                                    drawPixel(statement, x, y, col);
-                                }
-                            }
-                        } catch (ProcessingException e) {
-                            throw e;
+                            Globals.memory.fillWords(BITMAP_BASE, BITMAP_WIDTH * BITMAP_HEIGHT, col);
+                        } catch (AddressErrorException e) {
+                            throw new ProcessingException(statement, e);
                         }
                     }
                 }
@@ -650,9 +640,7 @@ public class SeerLanguage extends CustomAssembly {
                         int col = RegisterFile.getValue(operands[1]);
 
                         try {
-                            for (int x = 0; x < BITMAP_WIDTH; x++) {
-                                drawPixel(statement, x, y, col);
-                            }
+                            drawRow(statement, 0, y, BITMAP_WIDTH, col);
                         } catch (ProcessingException e) {
                             throw e;
                         }
@@ -705,4 +693,24 @@ public class SeerLanguage extends CustomAssembly {
             throw new ProcessingException(stmt, e);
         }
     }
+
+    // Draw width pixels from (x, y) rightward with one bulk store, clipped to the bitmap.
+    private static void drawRow(ProgramStatement stmt, int x, int y, int width, int colour)
+            throws ProcessingException {
+        if (y < 0 || y >= BITMAP_HEIGHT) {
+            return;
+        }
+        int first = Math.max(x, 0);
+        int last = Math.min(x + width, BITMAP_WIDTH);
+        if (first >= last) {
+            return;
+        }
+        int addr = BITMAP_BASE + (y * BITMAP_WIDTH + first) * 4;
+
+        try {
+            Globals.memory.fillWords(addr, last - first, colour);
+        } catch (AddressErrorException e) {
+            throw new ProcessingException(stmt, e);
+        }
+    }
 }
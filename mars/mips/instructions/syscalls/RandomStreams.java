@@ -1,5 +1,8 @@
    package mars.mips.instructions.syscalls;
 	import java.util.HashMap;
+	import java.util.Random;
+	import java.io.*;
+	import mars.simulator.ExecutionHistory;
 
 /*
 Copyright (c) 2003-2008,  Pete Sanderson and Kenneth Vollmar
@@ -40,4 +43,55 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       /** Collection of pseudorandom number streams available for use in Rand-type syscalls.
        * The streams are by default not seeded. */
 		 static final HashMap randomStreams = new HashMap();
+   
+   /**
+    * Create a stream that is not seeded by the program.  Its seed is recorded as
+    * input, so a replay during reverse execution creates the same stream.
+    * @return the new stream
+    */
+       static Random newStream() {
+         Long seed;
+         if (ExecutionHistory.hasReplayInput()) {
+            seed = (Long) ExecutionHistory.replayInput();
+         } 
+         else {
+            seed = new Long(new Random().nextLong());
+         }
+         ExecutionHistory.recordInput(seed);
+         return new Random(seed.longValue());
+      }
+   
+   /**
+    * Copy the state of all the streams, for a machine snapshot.
+    * @return a copy of the streams, which the program's use of them does not change
+    */
+       public static Object captureStreams() {
+         return copy(randomStreams);
+      }
+   
+   /**
+    * Put all the streams back in the state they had when captured.
+    * @param streams value returned by captureStreams()
+    */
+       public static void restoreStreams(Object streams) {
+         randomStreams.clear();
+         randomStreams.putAll(copy((HashMap) streams));
+      }
+   
+    // Deep copy, Random having no other way to copy its state.
+       private static HashMap copy(HashMap streams) {
+         if (streams.isEmpty()) {
+            return new HashMap();
+         }
+         try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(streams);
+            out.close();
+            return (HashMap) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+         } 
+             catch (Exception e) { // Integer, HashMap and Random are all serializable
+               throw new RuntimeException("Internal MARS error copying random number generators: " + e);
+            }
+      }
    }
\ No newline at end of file
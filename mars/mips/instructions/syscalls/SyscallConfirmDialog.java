@@ -79,7 +79,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             //    0 ---> meaning Yes
             //    1 ---> meaning No
             //    2 ---> meaning Cancel
-            RegisterFile.updateRegister(4, JOptionPane.showConfirmDialog(null, message) );
+            Integer choice = (ExecutionHistory.hasReplayInput())
+               ? (Integer) ExecutionHistory.replayInput() : new Integer(JOptionPane.showConfirmDialog(null, message));
+            ExecutionHistory.recordInput(choice);
+            RegisterFile.updateRegister(4, choice.intValue() );
 
        }
 
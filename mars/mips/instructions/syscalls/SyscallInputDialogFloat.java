@@ -83,7 +83,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             // An empty string returned (that is, inputValue.length() of zero)
             // means that OK was chosen but no string was input.
             String inputValue = null;
-            inputValue = JOptionPane.showInputDialog(message);
+            inputValue = (ExecutionHistory.hasReplayInput())
+               ? (String) ExecutionHistory.replayInput() : JOptionPane.showInputDialog(message);
+            ExecutionHistory.recordInput(inputValue);
 
             try
             {
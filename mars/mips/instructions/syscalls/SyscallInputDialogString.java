@@ -85,7 +85,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             // An empty string returned (that is, inputString.length() of zero)
             // means that OK was chosen but no string was input.
          String inputString = null;
-         inputString = JOptionPane.showInputDialog(message);
+         inputString = (ExecutionHistory.hasReplayInput())
+            ? (String) ExecutionHistory.replayInput() : JOptionPane.showInputDialog(message);
+         ExecutionHistory.recordInput(inputString);
          byteAddress = RegisterFile.getValue(5); // byteAddress of string is in $a1
          int maxLength = RegisterFile.getValue(6); // input buffer size for input string is in $a2
       
@@ -0,0 +1,64 @@
+   package mars.mips.instructions.syscalls;
+   import mars.util.*;
+   import mars.mips.hardware.*;
+   import mars.tools.*;
+   import mars.*;
+
+/*
+Copyright (c) 2003-2011,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+
+/**
+ * Service to present a frame to the Frame Buffer Display tool.  The whole frame is copied
+ * from memory at once, so the display need not observe each store into it.
+ *
+ */
+
+    public class SyscallPresentFrame extends AbstractSyscall {
+   /**
+    * Build an instance of the syscall with its default service number and name.
+    */
+       public SyscallPresentFrame() {
+         super(60, "PresentFrame");
+      }
+
+   /**
+   * System call to present a frame to each connected frame buffer display.  Does nothing if
+   * there is none.
+   */
+       public void simulate(ProgramStatement statement) throws ProcessingException {
+          // Input arguments: $a0 is the address of the frame's first (upper left) word.
+         try {
+            FrameBufferDisplay.presentFrame(RegisterFile.getValue(4));
+         } 
+             catch (AddressErrorException e) {
+               throw new ProcessingException(statement, e);
+            }
+      }
+
+   }
@@ -50,6 +50,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    */
        public void simulate(ProgramStatement statement) throws ProcessingException {
          int byteAddress = RegisterFile.getValue(4);
+         StringBuffer string = new StringBuffer();
          char ch = 0;
          try
          {
@@ -57,13 +58,15 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                               // won't stop until NULL byte reached!
             while (ch != 0)
             {
-               SystemIO.printString(new Character(ch).toString());
+               string.append(ch);
                byteAddress++;
                ch = (char) Globals.memory.getByte(byteAddress);
             }
+            SystemIO.printString(string.toString());
          } 
              catch (AddressErrorException e)
             {
+               SystemIO.printString(string.toString()); // whatever was readable
                throw new ProcessingException(statement, e);
             }
       }
@@ -57,7 +57,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
           Integer index = new Integer(RegisterFile.getValue(4));
 			 Random stream = (Random) RandomStreams.randomStreams.get(index);
           if (stream == null) {
-			    stream = new Random(); // create a non-seeded stream
+			    stream = RandomStreams.newStream(); // create a non-seeded stream
 			    RandomStreams.randomStreams.put(index, stream);
 			 } 
 			 RegisterFile.updateRegister(4, stream.nextInt() );
@@ -53,8 +53,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       private static final int COPROC1_CONDITION_CLEAR = 8;
       private static final int COPROC1_CONDITION_SET = 9;
       private static final int DO_NOTHING = 10;  // instruction does not write anything.
+      private static final int MEMORY_RESTORE_WORDS = 11;
+      // Added to the action of a step recorded for an instruction in the "delay slot".
+      private static final int IN_DELAY_SLOT = 0x40;
    
-      // Flag to mark BackStep object as prepresenting specific situation: user manipulates
+      // Flag to mark a back step as representing specific situation: user manipulates
    	// memory/register value via GUI after assembling program but before running it.
       private static final int NOT_PC_VALUE = -1;
    	
@@ -94,6 +97,14 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          engaged = state;
       }
    
+      /**
+   	 * Discard all recorded steps, for instance when machine state has been replaced
+   	 * by a snapshot and the steps no longer undo to anything.
+   	 */
+       public void clear() {
+         backSteps = new BackstepStack(Globals.maximumBacksteps);
+      }
+   
       /**
    	 * Test whether there are steps that can be undone.
    	 * @return true if there are no steps to be undone, false otherwise.
@@ -110,7 +121,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 */
    	// Added 25 June 2007
        public boolean inDelaySlot() {
-         return !empty() && backSteps.peek().inDelaySlot;
+         return !empty() && (backSteps.peekAction() & IN_DELAY_SLOT) != 0;
       }
    	
       /**
@@ -123,53 +134,60 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 // all store their result in register pairs which results in two store operations.  
    	 // Both must be undone transparently, so we need to detect that multiple steps happen
    	 // together and carry out all of them here.  
-   	 // Use a do-while loop based on the backstep's program statement reference.
+   	 // Use a do-while loop based on the backstep's program counter value, which
+   	 // stands for the statement executed there.
    	 
        public void backStep() {
          if (engaged && !backSteps.empty()) {
-            ProgramStatement statement = ((BackStep)backSteps.peek()).ps;
+            int statementPC = backSteps.peekPC();
             engaged = false; // GOTTA DO THIS SO METHOD CALL IN SWITCH WILL NOT RESULT IN NEW ACTION ON STACK!
             do {
-               BackStep step = (BackStep) backSteps.pop();
+               int pc = backSteps.peekPC();
+               int param1 = backSteps.peekParam1();
+               int param2 = backSteps.peekParam2();
+               int[] saved = backSteps.peekSaved();
+               int action = backSteps.pop() & ~IN_DELAY_SLOT;
             /*
-            	System.out.println("backstep POP: action "+step.action+" pc "+mars.util.Binary.intToHexString(step.pc)+
-            	                   " source "+((step.ps==null)? "none":step.ps.getSource())+
-            							 " parm1 "+step.param1+" parm2 "+step.param2);
+            	System.out.println("backstep POP: action "+action+" pc "+mars.util.Binary.intToHexString(pc)+
+            							 " parm1 "+param1+" parm2 "+param2);
             */
-               if (step.pc != NOT_PC_VALUE) {
-                  RegisterFile.setProgramCounter(step.pc);
+               if (pc != NOT_PC_VALUE) {
+                  RegisterFile.setProgramCounter(pc);
                }
                try {
-                  switch (step.action) {
+                  switch (action) {
                      case MEMORY_RESTORE_RAW_WORD : 
-                        Globals.memory.setRawWord(step.param1, step.param2);
+                        Globals.memory.setRawWord(param1, param2);
                         break;
                      case MEMORY_RESTORE_WORD : 
-                        Globals.memory.setWord(step.param1, step.param2);
+                        Globals.memory.setWord(param1, param2);
                         break;
                      case MEMORY_RESTORE_HALF :
-                        Globals.memory.setHalf(step.param1, step.param2);
+                        Globals.memory.setHalf(param1, param2);
                         break;
                      case MEMORY_RESTORE_BYTE :
-                        Globals.memory.setByte(step.param1, step.param2);
+                        Globals.memory.setByte(param1, param2);
                         break;
                      case REGISTER_RESTORE :
-                        RegisterFile.updateRegister(step.param1, step.param2);
+                        RegisterFile.updateRegister(param1, param2);
                         break;
                      case PC_RESTORE : 
-                        RegisterFile.setProgramCounter(step.param1);
+                        RegisterFile.setProgramCounter(param1);
                         break;
                      case COPROC0_REGISTER_RESTORE :
-                        Coprocessor0.updateRegister(step.param1, step.param2);
+                        Coprocessor0.updateRegister(param1, param2);
                         break;
                      case COPROC1_REGISTER_RESTORE :
-                        Coprocessor1.updateRegister(step.param1, step.param2);
+                        Coprocessor1.updateRegister(param1, param2);
                         break;
                      case COPROC1_CONDITION_CLEAR :
-                        Coprocessor1.clearConditionFlag(step.param1);
+                        Coprocessor1.clearConditionFlag(param1);
                         break;
                      case COPROC1_CONDITION_SET :
-                        Coprocessor1.setConditionFlag(step.param1);
+                        Coprocessor1.setConditionFlag(param1);
+                        break;
+                     case MEMORY_RESTORE_WORDS :
+                        Globals.memory.setWords(param1, saved);
                         break;
                      case DO_NOTHING :
                         break;
@@ -180,8 +198,12 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                      System.out.println("Internal MARS error: address exception while back-stepping.");
                      System.exit(0);
                   }
-            } while (!backSteps.empty() && statement == ((BackStep)backSteps.peek()).ps);
+            } while (!backSteps.empty() && statementPC == backSteps.peekPC());
             engaged = true;  // RESET IT (was disabled at top of loop -- see comment)
+            ExecutionHistory history = ExecutionHistory.getCurrent();
+            if (history != null) {
+               history.steppedBack();
+            }
          }
       }
   
@@ -243,6 +265,23 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          return value;
       }   
    
+       /**
+   	  * Add a new "back step" (the undo action) to the stack.  The action here
+   	  * is to restore a run of memory words, as stored by Memory.setWords().
+   	  * Each saved word counts against the backstep limit like one step, and the
+   	  * oldest steps are dropped to make room.  A run that alone would exceed the
+   	  * limit cannot be undone, so all recorded steps are discarded instead.
+   	  * @param address The address of the first word.
+   	  * @param values The "restore" values to be stored there.
+   	  */
+       public void addMemoryRestoreWords(int address, int[] values) {
+         if (values.length >= Globals.maximumBacksteps) {
+            clear();
+            return;
+         }
+         backSteps.pushWords(MEMORY_RESTORE_WORDS, pc(), address, values);
+      }   
+   
        /**
    	  * Add a new "back step" (the undo action) to the stack.  The action here
    	  * is to restore a register file register value.
@@ -324,121 +363,158 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  * @return 0
    	  */
        public int addDoNothing(int pc) {
-         if (backSteps.empty() || backSteps.peek().pc != pc) { 
-            backSteps.push(DO_NOTHING, pc);
-         }
+         backSteps.pushUnlessTop(DO_NOTHING, pc);
          return 0;
       }
    	
    		   	 	
-   	// Represents a "back step" (undo action) on the stack.
-       private class BackStep {
-         private int action;  // what do do MEMORY_RESTORE_WORD, etc
-         private int pc;      // program counter value when original step occurred
-         private ProgramStatement ps;   // statement whose action is being "undone" here
-         private int param1;  // first parameter required by that action
-         private int param2;  // optional second parameter required by that action
-         private boolean inDelaySlot; // true if instruction executed in "delay slot" (delayed branching enabled)
-      
-         // it is critical that BackStep object get its values by calling this method
-      	// rather than assigning to individual members, because of the technique used
-      	// to set its ps member (and possibly pc).
-          private void assign(int act, int programCounter, int parm1, int parm2) {
-            action = act;
-            pc     = programCounter;
-            try {
-            // Client does not have direct access to program statement, and rather than making all
-            // of them go through the methods below to obtain it, we will do it here.  
-            // Want the program statement but do not want observers notified.
-               ps = Globals.memory.getStatementNoNotify(programCounter);
-            } 
-                catch (Exception e) {
-                // The only situation causing this so far: user modifies memory or register
-                // contents through direct manipulation on the GUI, after assembling the program but
-                // before starting to run it (or after backstepping all the way to the start).
-                // The action will not be associated with any instruction, but will be carried out
-                // when popped.
-                  ps = null;
-                  pc = NOT_PC_VALUE; // Backstep method above will see this as flag to not set PC
-               } 
-            param1 = parm1;
-            param2 = parm2;
-            inDelaySlot = Simulator.inDelaySlot(); // ADDED 25 June 2007
-         /*				
-            System.out.println("backstep PUSH: action "+action+" pc "+mars.util.Binary.intToHexString(pc)+
-         		                   " source "+((ps==null)? "none":ps.getSource())+
-         								 " parm1 "+param1+" parm2 "+param2);
-         */
-         }
-      }
-   	
    	// *****************************************************************************
    	// special purpose stack class for backstepping.  You've heard of circular queues
    	// implemented with an array, right?  This is a circular stack!  When full, the
    	// newly-pushed item overwrites the oldest item, with circular top!  All operations 
-   	// are constant time.  It's synchronized too, to be safe (is used by both the 
-   	// simulation thread and the GUI thread for the back-step button).
-   	// Upon construction, it is filled with newly-created empty BackStep objects which
-   	// will exist for the life of the stack.  Push does not create a BackStep object 
-   	// but instead overwrites the contents of the existing one.  Thus during MIPS
-   	// program (simulated) execution, BackStep objects are never created or junked
-   	// regardless of how many steps are executed.  This will speed things up a bit
-   	// and make life easier for the garbage collector.
+   	// are constant time.  It is not synchronized itself, since it is used for every 
+   	// instruction executed: steps are pushed only while memory or registers are being
+   	// changed, which the simulation thread and the GUI both do while holding
+   	// Globals.memoryAndRegistersLock, and the back-step button holds it while popping.
+   	// Each "back step" (undo action) is one position in a set of parallel arrays:
+   	// the action (what to do: MEMORY_RESTORE_WORD, etc, plus the IN_DELAY_SLOT flag),
+   	// the program counter value when the original step occurred, and the first and
+   	// optional second parameter required by that action.  Push just stores into the
+   	// arrays, so during MIPS program (simulated) execution nothing is ever created or
+   	// junked regardless of how many steps are executed.  The statement being undone is
+   	// not stored; it can be fetched from memory at the program counter when needed.
+   	// The arrays start small and grow as needed up to the capacity, so a capacity in
+   	// the millions (see BackstepLimit in Config.properties) costs memory only when used.
+   	// Words saved for MEMORY_RESTORE_WORDS count against the same capacity, one per
+   	// word, so the stack never holds more than about capacity words of saved data.
    	
        private class BackstepStack {
+         private static final int INITIAL_SIZE = 1024;
          private int capacity;
          private int size;
          private int top;
-         private BackStep[] stack;
+         private byte[] actions;
+         private int[] pcs;
+         private int[] params1;
+         private int[] params2;
+         private int[][] saved;  // words saved for MEMORY_RESTORE_WORDS; allocated when first needed
+         private int savedWords;  // total length of the arrays in saved
       
-          // Stack is created upon successful assembly or reset.  The one-time overhead of
-      	 // creating all the BackStep objects will not be noticed by the user, and enhances
-      	 // runtime performance by not having to create or recycle them during MIPS
-      	 // program execution.
+          // Stack is created upon successful assembly or reset.
           private BackstepStack(int capacity) {
-            this.capacity = capacity;
+            this.capacity = Math.max(capacity, 1);
             this.size = 0;
             this.top = -1;
-            this.stack = new BackStep[capacity];
-            for (int i=0; i<capacity; i++) {
-               this.stack[i] = new BackStep();
-            }
+            this.savedWords = 0;
+            int length = Math.min(this.capacity, INITIAL_SIZE);
+            this.actions = new byte[length];
+            this.pcs = new int[length];
+            this.params1 = new int[length];
+            this.params2 = new int[length];
          }
       	
-          private synchronized boolean empty() {
+          private boolean empty() {
             return size==0;
          }
          
-          private synchronized void push(int act, int programCounter, int parm1, int parm2) {
+          private void push(int act, int programCounter, int parm1, int parm2) {
             if (size==0) {
                top=0;
                size++;
             } 
             else if (size < capacity) {
+               // The arrays are shorter than capacity only until top first reaches the
+               // end, so entries do not wrap around until then.
+               if (top + 1 == pcs.length && pcs.length < capacity) {
+                  grow();
+               }
                top = (top + 1) % capacity;
                size++;
             } 
             else { // size == capacity.  The top moves up one, replacing oldest entry (goodbye!)
                top = (top + 1) % capacity;
             }
-         	// We'll re-use existing objects rather than create/discard each time.
-         	// Must use assign() method rather than series of assignment statements!
-            stack[top].assign(act, programCounter, parm1, parm2);
+            // There is no statement to associate the action with if the PC is not a
+            // possible statement address.  The only situation causing this so far: user
+            // modifies memory or register contents through direct manipulation on the GUI,
+            // after assembling the program but before starting to run it (or after 
+            // backstepping all the way to the start).  The action will not be associated
+            // with any instruction, but will be carried out when popped.
+            if (!Memory.wordAligned(programCounter) ||
+                (!Memory.inTextSegment(programCounter) && !Memory.inKernelTextSegment(programCounter) &&
+                 !Globals.getSettings().getBooleanSetting(Settings.SELF_MODIFYING_CODE_ENABLED))) {
+               programCounter = NOT_PC_VALUE; // Backstep method above will see this as flag to not set PC
+            }
+            actions[top] = (byte) (Simulator.inDelaySlot() ? act | IN_DELAY_SLOT : act); // ADDED 25 June 2007
+            pcs[top] = programCounter;
+            params1[top] = parm1;
+            params2[top] = parm2;
+            if (saved != null && saved[top] != null) {
+               savedWords -= saved[top].length; // the entry it was for has been replaced
+               saved[top] = null;
+            }
+         /*				
+            System.out.println("backstep PUSH: action "+act+" pc "+mars.util.Binary.intToHexString(programCounter)+
+         								 " parm1 "+parm1+" parm2 "+parm2);
+         */
          }
       	
-          private synchronized void push(int act, int programCounter, int parm1) {
+         // Push an entry that keeps the given words, then drop the oldest entries until
+         // the entries and saved words together fit in the capacity.  The caller makes
+         // sure the words alone leave room for the entry.
+          private void pushWords(int act, int programCounter, int parm1, int[] words) {
             push(act, programCounter, parm1, 0);
+            if (saved == null) {
+               saved = new int[pcs.length][];
+            }
+            saved[top] = words;
+            savedWords += words.length;
+            while (size + savedWords > capacity) {
+               int oldest = (top - size + 1 + capacity) % capacity;
+               if (saved[oldest] != null) {
+                  savedWords -= saved[oldest].length;
+                  saved[oldest] = null;
+               }
+               size--;
+            }
          }
       	
-          private synchronized void push(int act, int programCounter) {
+          private void push(int act, int programCounter, int parm1) {
+            push(act, programCounter, parm1, 0);
+         }
+      	
+          private void push(int act, int programCounter) {
             push(act, programCounter, 0, 0);
          }
+      
+         // Push unless the top of the stack is already for the given PC.  Used for DO_NOTHING,
+         // which is considered after every instruction, so the test and push take one lock.
+          private void pushUnlessTop(int act, int programCounter) {
+            if (size==0 || pcs[top] != programCounter) {
+               push(act, programCounter, 0, 0);
+            }
+         }
+      
+         // Copy the entries into arrays twice as long (but not beyond capacity).
+          private void grow() {
+            int length = (int) Math.min((long) capacity, 2L * pcs.length);
+            actions = Arrays.copyOf(actions, length);
+            pcs = Arrays.copyOf(pcs, length);
+            params1 = Arrays.copyOf(params1, length);
+            params2 = Arrays.copyOf(params2, length);
+            if (saved != null) {
+               saved = Arrays.copyOf(saved, length);
+            }
+         }
          
       	// NO PROTECTION.  This class is used only within this file so there is no excuse
-      	// for trying to pop from empty stack.
-          private synchronized BackStep pop() {
-            BackStep bs;
-            bs = stack[top];
+      	// for trying to pop from empty stack.  Returns the action of the popped entry.
+          private int pop() {
+            int action = actions[top];
+            if (saved != null && saved[top] != null) {
+               savedWords -= saved[top].length;
+               saved[top] = null; // let the data go
+            }
             if (size==1) {
                top = -1;
             } 
@@ -446,15 +522,30 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                top = (top + capacity - 1) % capacity;
             }
             size--;
-            return bs;
+            return action;
          }
       
       	// NO PROTECTION.  This class is used only within this file so there is no excuse
       	// for trying to peek from empty stack.         
-          private synchronized BackStep peek() {
-            return stack[top];
+          private int peekAction() {
+            return actions[top];
+         }
+      
+          private int peekPC() {
+            return pcs[top];
+         }
+      
+          private int peekParam1() {
+            return params1[top];
+         }
+      
+          private int peekParam2() {
+            return params2[top];
+         }
+      
+          private int[] peekSaved() {
+            return (saved == null) ? null : saved[top];
          }
       			
       }
-   
    }
\ No newline at end of file
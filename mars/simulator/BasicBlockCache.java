@@ -0,0 +1,163 @@
+   package mars.simulator;
+   import mars.*;
+   import mars.mips.instructions.*;
+   import java.util.*;
+
+/*
+Copyright (c) 2003-2006,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Translation cache of straight-line basic blocks, built on top of a DecodedProgram.
+ * A block starts at whatever address execution enters it and extends through the
+ * first branch or jump (BasicInstructionFormat I_BRANCH_FORMAT or J_FORMAT), or up
+ * to the first empty or undefined slot.  The turbo loop runs a block as one unit and
+ * follows the direct links each block keeps to the blocks that last followed it.
+ *
+ * Instructions that change the program counter without being in one of those two
+ * formats (jr, jalr, syscall, traps, eret) are caught at run time: the turbo loop
+ * leaves a block as soon as the program counter is not the next sequential address.
+ *
+ * Any store into the decoded range (self-modifying code) drops every block, since
+ * the changed word may sit in the middle of any of them.  Blocks built before the
+ * drop carry an older generation number, so stale links are ignored rather than
+ * followed.
+ */
+
+    public class BasicBlockCache {
+      private DecodedProgram decoded;
+      private BasicBlock[] blocks;
+      private int generation;
+
+   /**
+    * Create an empty cache over the given decoded program.
+    * @param decoded the decoded text segment image
+    */
+       public BasicBlockCache(DecodedProgram decoded) {
+         this.decoded = decoded;
+         this.blocks = new BasicBlock[decoded.size()];
+         this.generation = 0;
+      }
+
+   /**
+    * Return the block that starts at the given decoded slot, building it if needed.
+    * @param index slot index as returned by DecodedProgram.indexOf()
+    * @return the block, or null if the slot holds no executable statement
+    */
+       public BasicBlock getBlock(int index) {
+         BasicBlock block = blocks[index];
+         if (block == null) {
+            block = build(index);
+            blocks[index] = block;
+         }
+         return block;
+      }
+
+   /**
+    * Return the block that follows the given block when execution continues at
+    * the given address, using and updating the block's links.
+    * @param from the block just executed
+    * @param address the address execution continues at
+    * @return the following block, or null if that address is not in the decoded range
+    * or holds no executable statement
+    */
+       public BasicBlock getSuccessor(BasicBlock from, int address) {
+         if (address == from.fallThroughAddress) {
+            if (from.fallThrough == null || from.fallThrough.generation != generation) {
+               from.fallThrough = lookup(address);
+            }
+            return from.fallThrough;
+         }
+         if (from.taken == null || from.taken.generation != generation || from.taken.startAddress != address) {
+            from.taken = lookup(address);
+         }
+         return from.taken;
+      }
+
+   /**
+    * Determine whether a block is still valid, i.e. no statement in the decoded range
+    * has been replaced since it was built.
+    * @param block a block obtained from this cache
+    * @return true if the block may still be run, false if it must be rebuilt
+    */
+       public boolean isCurrent(BasicBlock block) {
+         return block.generation == generation;
+      }
+
+   /**
+    * Drop all blocks.  Called after a statement in the decoded range is replaced.
+    */
+       public void invalidate() {
+         Arrays.fill(blocks, null);
+         generation++;
+      }
+
+       private BasicBlock lookup(int address) {
+         int index = decoded.indexOf(address);
+         return (index < 0) ? null : getBlock(index);
+      }
+
+       private BasicBlock build(int index) {
+         int end = index;
+         while (end < decoded.size() && decoded.getSimulationCode(end) != null) {
+            BasicInstructionFormat format =
+               ((BasicInstruction) decoded.getStatement(end).getInstruction()).getInstructionFormat();
+            end++;
+            if (format == BasicInstructionFormat.I_BRANCH_FORMAT || format == BasicInstructionFormat.J_FORMAT) {
+               break;
+            }
+         }
+         if (end == index) {
+            return null;
+         }
+         BasicBlock block = new BasicBlock();
+         block.generation = generation;
+         block.startAddress = decoded.getAddress(index);
+         block.fallThroughAddress = decoded.getAddress(end);
+         block.statements = new ProgramStatement[end - index];
+         block.codes = new SimulationCode[end - index];
+         for (int i=index; i<end; i++) {
+            block.statements[i-index] = decoded.getStatement(i);
+            block.codes[i-index] = decoded.getSimulationCode(i);
+         }
+         return block;
+      }
+
+   /**
+    * One straight-line run of statements, plus links to the blocks that followed it.
+    * Fields are read directly by the simulator's turbo loop.
+    */
+       public static class BasicBlock {
+         int generation;
+         int startAddress;
+         int fallThroughAddress;
+         ProgramStatement[] statements;
+         SimulationCode[] codes;
+         BasicBlock fallThrough;
+         BasicBlock taken;
+      }
+   }
@@ -0,0 +1,176 @@
+   package mars.simulator;
+   import mars.*;
+   import mars.mips.hardware.*;
+   import mars.mips.instructions.*;
+   import java.util.*;
+
+/*
+Copyright (c) 2003-2006,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Pre-decoded image of the user text segment, used by the simulator's "turbo"
+ * loop.  Each word of the text segment between the lowest and highest assembled
+ * statement gets one slot in two parallel arrays: the ProgramStatement and the
+ * SimulationCode of its BasicInstruction.  Fetching the next instruction is then
+ * a subtraction, a shift and an array index, with no observer notification and
+ * no trip through Memory.
+ *
+ * The range is taken from the assembler's machine list, but the statements
+ * themselves are read from Memory so that anything already written to the
+ * text segment (self-modifying code) is seen.  Memory.setStatement() keeps the
+ * image current afterwards, through Simulator.textStatementChanged().
+ *
+ * Statements outside the decoded range (e.g. kernel text) are not in the table;
+ * the simulator fetches those through Memory as usual.
+ */
+
+    public class DecodedProgram {
+      private ArrayList machineList;
+      private int baseAddress;
+      private ProgramStatement[] statements;
+      private SimulationCode[] codes;
+
+   /**
+    * Build the decoded image from the machine list produced by the assembler.
+    * @param machineList ArrayList of ProgramStatement, as returned by MIPSprogram.getMachineList().
+    * May be null, in which case the decoded range is empty.
+    */
+       public DecodedProgram(ArrayList machineList) {
+         this.machineList = machineList;
+         int low = Integer.MAX_VALUE;
+         int high = Integer.MIN_VALUE;
+         if (machineList != null) {
+            for (int i=0; i<machineList.size(); i++) {
+               int address = ((ProgramStatement) machineList.get(i)).getAddress();
+               if (Memory.inTextSegment(address)) {
+                  low = Math.min(low, address);
+                  high = Math.max(high, address);
+               }
+            }
+         }
+         if (low > high) {
+            baseAddress = Memory.textBaseAddress;
+            statements = new ProgramStatement[0];
+            codes = new SimulationCode[0];
+            return;
+         }
+         baseAddress = low;
+         int length = ((high - low) >> 2) + 1;
+         statements = new ProgramStatement[length];
+         codes = new SimulationCode[length];
+         for (int index=0; index<length; index++) {
+            ProgramStatement statement = null;
+            try {
+               statement = Globals.memory.getStatementNoNotify(baseAddress + (index << 2));
+            } 
+                catch (AddressErrorException aee) { } // cannot happen, range is within text segment
+            decode(index, statement);
+         }
+      }
+   
+   /**
+    * Replace the statement at given address, if it falls within the decoded range.
+    * Called when a statement is stored into the text segment.
+    * @param address text segment address of the statement
+    * @param statement the statement now stored at that address
+    * @return true if the address is within the decoded range (and was updated), false otherwise
+    */
+       public boolean update(int address, ProgramStatement statement) {
+         int index = indexOf(address);
+         if (index < 0) {
+            return false;
+         }
+         decode(index, statement);
+         return true;
+      }
+   
+       private void decode(int index, ProgramStatement statement) {
+         statements[index] = statement;
+         Instruction instruction = (statement == null) ? null : statement.getInstruction();
+         codes[index] = (instruction instanceof BasicInstruction)
+            ? ((BasicInstruction) instruction).getSimulationCode()
+            : null;
+      }
+
+   /**
+    * Return the machine list this image was decoded from.  Used by the simulator
+    * to decide whether a cached image is still current.
+    * @return the ArrayList given to the constructor
+    */
+       public ArrayList getMachineList() {
+         return machineList;
+      }
+
+   /**
+    * Return the index of the slot holding the statement at given address.
+    * @param address a text segment address
+    * @return slot index, or -1 if the address is unaligned or outside the decoded range
+    */
+       public int indexOf(int address) {
+         int index = (address - baseAddress) >> 2;
+         if ((address & 3) != 0 || address < baseAddress || index >= statements.length) {
+            return -1;
+         }
+         return index;
+      }
+
+   /**
+    * Return the statement decoded into given slot.
+    * @param index slot index as returned by indexOf()
+    * @return the ProgramStatement, or null if there is no instruction at that address
+    */
+       public ProgramStatement getStatement(int index) {
+         return statements[index];
+      }
+
+   /**
+    * Return the simulation code decoded into given slot.
+    * @param index slot index as returned by indexOf()
+    * @return the SimulationCode, or null if the slot is empty or holds an undefined instruction
+    */
+       public SimulationCode getSimulationCode(int index) {
+         return codes[index];
+      }
+   
+   /**
+    * Return the text segment address of given slot.
+    * @param index slot index as returned by indexOf()
+    * @return address of the statement in that slot
+    */
+       public int getAddress(int index) {
+         return baseAddress + (index << 2);
+      }
+   
+   /**
+    * Return the number of slots in the decoded range.
+    * @return number of text segment words covered
+    */
+       public int size() {
+         return statements.length;
+      }
+   }
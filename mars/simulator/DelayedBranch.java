@@ -155,5 +155,24 @@ public class DelayedBranch {
 	 static int getBranchTargetAddress() {
 	    return branchTargetAddress;
 	}
+
+  /**
+   *  Return the complete state, for MachineSnapshot.  This method has package visibility.
+	*
+	*  @return Array of two elements: registration status and branch target address.
+	*/
+	 static int[] getState() {
+	    return new int[] { state, branchTargetAddress };
+	}
+
+  /**
+   *  Restore a state returned earlier by getState().  This method has package visibility.
+	*
+	*  @param saved Array returned by getState().
+	*/
+	 static void setState(int[] saved) {
+	    state = saved[0];
+	    branchTargetAddress = saved[1];
+	}
 	
 }  // DelayedBranch
\ No newline at end of file
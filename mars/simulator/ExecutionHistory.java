@@ -0,0 +1,511 @@
+   package mars.simulator;
+   import mars.*;
+   import mars.mips.hardware.*;
+   import java.util.*;
+
+
+/*
+Copyright (c) 2003-2006,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Reverse execution by checkpoint and replay.  While reverse execution is enabled,
+ * the simulator counts every instruction it executes (the count is the machine's
+ * position) and takes a MachineSnapshot every so many instructions.  To go back to
+ * an earlier position, the nearest checkpoint at or before it is restored and the
+ * program is re-executed forward to it.  Replays run at full speed, do not repeat
+ * console output or output dialogs, and are given the same console input, dialog
+ * input and clock readings the program got the first time, which are recorded
+ * here as they happen.
+ * <br><br>
+ * Memory use is bounded however long the program runs.  There are never more than
+ * MAXIMUM_CHECKPOINTS checkpoints, and the distinct 4K memory blocks they hold are
+ * kept under MAXIMUM_BLOCKS.  When either limit is reached every other checkpoint
+ * is dropped and the interval between checkpoints doubles, so a program that runs
+ * for billions of instructions keeps checkpoints spread over its whole run, and
+ * reaching any position replays at most one interval.  If the blocks still do not
+ * fit, the oldest checkpoints are dropped.  Recorded input is kept under
+ * MAXIMUM_INPUTS values by dropping the oldest checkpoints, with the input read
+ * before the new earliest one, so a program that reads the clock in a loop can only
+ * go back as far as its last MAXIMUM_INPUTS readings.
+ * <br><br>
+ * Going back discards the future: checkpoints and recorded input beyond the new
+ * position are dropped, and running forward again executes afresh (reading new
+ * input), just as after a backstep.  Values changed by hand in the Registers or
+ * Data Segment windows are not recorded, and are lost in a replay that passes them.
+ *
+ * @see MachineSnapshot
+ */
+
+    public class ExecutionHistory {
+      /** Instructions between checkpoints until the first time checkpoints are thinned. */
+      public static final int INITIAL_INTERVAL = 100000;
+      /** Largest number of checkpoints kept. */
+      public static final int MAXIMUM_CHECKPOINTS = 32;
+      /** Largest number of distinct 4K memory blocks (64 MB) held by all checkpoints together. */
+      public static final int MAXIMUM_BLOCKS = 16384;
+      /** Largest number of recorded input values (console, dialog, clock) kept. */
+      public static final int MAXIMUM_INPUTS = 100000;
+   
+      // Instructions executed, counted from when the program was assembled.  Updated
+      // by the simulator; see advance().
+      long position;
+      private long interval;
+      private long nextCheckpoint;
+      private ArrayList checkpoints; // of Checkpoint, oldest first
+      private ArrayList inputs;      // of Input, in the order the program read them
+      private boolean replaying;
+      private int nextInput;         // while replaying, the next of inputs to hand out
+      private int blocksCounted;     // distinct blocks held by checkpoints when last counted
+      private int createdCounted;    // Memory blocks created count at the same time
+      private int[] watchedBreakPoints; // while looking for breakpoints: sorted addresses
+      private long breakPointLimit;  // ignore breakpoints reached at or after this position
+      private long breakPointFound;  // last position at a breakpoint, or -1
+   
+   /**
+    * Create an empty history, for a program that has just been assembled.
+    */
+       public ExecutionHistory() {
+         position = 0;
+         checkpoints = new ArrayList();
+         inputs = new ArrayList();
+         clear();
+      }
+   
+   /**
+    * Get the history kept for the current program, if reverse execution is enabled.
+    * @return the history, or null if reverse execution is disabled or nothing is assembled
+    */
+       public static ExecutionHistory getCurrent() {
+         if (Globals.program == null ||
+             !Globals.getSettings().getBooleanSetting(Settings.REVERSE_EXECUTION_ENABLED)) {
+            return null;
+         }
+         return Globals.program.getExecutionHistory();
+      }
+   
+   /**
+    * Determine whether a replay is under way.  Code that has an effect outside the
+    * simulated machine, such as console output, should skip it during a replay.
+    * @return true if the simulator is re-executing already executed instructions
+    */
+       public static boolean isReplaying() {
+         ExecutionHistory history = (Globals.program == null) ? null : Globals.program.getExecutionHistory();
+         return history != null && history.replaying;
+      }
+   
+   /**
+    * Determine whether the input an instruction is about to read is recorded, so
+    * replayInput() should be used in place of reading it.
+    * @return true if replaying and the recorded input has not all been handed out
+    */
+       public static boolean hasReplayInput() {
+         ExecutionHistory history = (Globals.program == null) ? null : Globals.program.getExecutionHistory();
+         return history != null && history.replaying && history.nextInput < history.inputs.size();
+      }
+   
+   /**
+    * Get the next recorded input, in place of reading it from outside.
+    * Only valid when hasReplayInput() is true.
+    * @return the input value as given to recordInput()
+    */
+       public static Object replayInput() {
+         ExecutionHistory history = Globals.program.getExecutionHistory();
+         return ((Input) history.inputs.get(history.nextInput++)).value;
+      }
+   
+   /**
+    * Record a value read from outside the simulated machine (console, dialog, clock),
+    * so that replays can be given the same value.  Does nothing during a replay or if
+    * reverse execution is not in use.
+    * @param value the value read; the same object is returned by replayInput()
+    */
+       public static void recordInput(Object value) {
+         ExecutionHistory history = getCurrent();
+         if (history != null && !history.replaying && !history.checkpoints.isEmpty()) {
+            history.inputs.add(new Input(history.position, value));
+            if (history.inputs.size() > MAXIMUM_INPUTS) {
+               history.trimInputs();
+            }
+         }
+      }
+   
+   /**
+    * Get the position: the number of instructions executed since the program
+    * was assembled, less any stepped back over.
+    * @return the position
+    */
+       public long getPosition() {
+         return position;
+      }
+   
+   /**
+    * Get the earliest position that can be returned to.
+    * @return position of the oldest checkpoint, or the current position if there is none
+    */
+       public long getEarliestPosition() {
+         return checkpoints.isEmpty() ? position : ((Checkpoint) checkpoints.get(0)).position;
+      }
+   
+   /**
+    * Determine whether there is an earlier position to go back to.
+    * @return true if the position is later than the earliest recorded one
+    */
+       public boolean canReverse() {
+         return position > getEarliestPosition();
+      }
+   
+   /**
+    * Drop all checkpoints and recorded input.  Done whenever the program runs with
+    * reverse execution disabled, since the history no longer describes the run.
+    */
+       public void clear() {
+         checkpoints.clear();
+         inputs.clear();
+         interval = INITIAL_INTERVAL;
+         nextCheckpoint = Long.MAX_VALUE;
+         blocksCounted = 0;
+         createdCounted = 0;
+      }
+   
+    // Called by the simulator as each run starts: the history to keep up to date, or
+    // null if reverse execution is disabled.  The first run takes the first checkpoint.
+       static ExecutionHistory forRun(MIPSprogram program) {
+         ExecutionHistory history = program.getExecutionHistory();
+         if (history == null) {
+            return null;
+         }
+         if (!Globals.getSettings().getBooleanSetting(Settings.REVERSE_EXECUTION_ENABLED)) {
+            history.clear();
+            return null;
+         }
+         if (history.checkpoints.isEmpty()) {
+            history.checkpoint();
+         }
+         return history;
+      }
+   
+    // Called by the simulator after each instruction it executes.
+       void advance() {
+         position++;
+         if (watchedBreakPoints != null && position < breakPointLimit &&
+             Arrays.binarySearch(watchedBreakPoints, RegisterFile.getProgramCounter()) >= 0) {
+            breakPointFound = position;
+         }
+         if (position >= nextCheckpoint) {
+            checkpoint();
+         }
+      }
+   
+    // True while replaying to look for breakpoints, which only advance() notices.
+       boolean isWatchingBreakPoints() {
+         return watchedBreakPoints != null;
+      }
+   
+    // Called by the simulator after a run of instructions that each incremented position.
+       void checkpointIfDue() {
+         if (position >= nextCheckpoint) {
+            checkpoint();
+         }
+      }
+   
+    // Instructions that may be executed before the next checkpoint is due; at least 1.
+       int stepsToCheckpoint() {
+         return (int) Math.max(1, Math.min(nextCheckpoint - position, Integer.MAX_VALUE));
+      }
+   
+   /**
+    * Called by BackStepper after it undoes an instruction, since backstepping also
+    * goes back in the history.
+    */
+       void steppedBack() {
+         if (position > getEarliestPosition()) {
+            position--;
+            discardFuture();
+         } 
+         else {
+            clear(); // undone past the start of the history, which no longer applies
+         }
+      }
+   
+   /**
+    * Go back (or forward, within the recorded past) to the given position.
+    * Must not be called while the program is running.
+    * @param target the position to go to
+    * @return true if done, false if target is outside the recorded past
+    * @throws ProcessingException if the replay runs into an error, which can happen
+    * only if the program or its input files were changed since they were recorded
+    */
+       public boolean goTo(long target) throws ProcessingException {
+         if (checkpoints.isEmpty() || target < getEarliestPosition() || target > position) {
+            return false;
+         }
+         replay(latestCheckpointAt(target), target);
+         discardFuture();
+         return true;
+      }
+   
+   /**
+    * Undo the most recent instruction by going back one position.
+    * @return true if done, false if there is no earlier position to go to
+    * @throws ProcessingException see goTo()
+    */
+       public boolean reverseStep() throws ProcessingException {
+         return goTo(position - 1);
+      }
+   
+   /**
+    * Go back to the most recent earlier position at which the program counter was
+    * at one of the breakpoints, as if the program had just stopped there.  If there is
+    * none, go back to the earliest recorded position.
+    * @param breakPoints the breakpoint addresses, or null if there are none
+    * @return true if a breakpoint was found, false otherwise
+    * @throws ProcessingException see goTo()
+    */
+       public boolean reverseContinue(int[] breakPoints) throws ProcessingException {
+         if (breakPoints == null || breakPoints.length == 0) {
+            goTo(getEarliestPosition());
+            return false;
+         }
+         return reverseTo(breakPoints, null);
+      }
+   
+   /**
+    * Go back to the most recent instruction that wrote to the given register, stopping
+    * just before it executes, so the register still has its earlier value and the
+    * program counter addresses the writing instruction.  If there is none, go back
+    * to the earliest recorded position.
+    * @param register any register of RegisterFile, Coprocessor0 or Coprocessor1
+    * @return true if a write was found, false otherwise
+    * @throws ProcessingException see goTo()
+    */
+       public boolean reverseToWrite(Register register) throws ProcessingException {
+         return reverseTo(null, register);
+      }
+   
+    // Search back one checkpoint interval at a time, replaying each to find the
+    // last event in it, then go to the event found or to the start.
+       private boolean reverseTo(int[] breakPoints, Register register) throws ProcessingException {
+         long start = position;
+         long end = position;
+         for (int i = checkpoints.size() - 1; i >= 0; i--) {
+            Checkpoint from = (Checkpoint) checkpoints.get(i);
+            if (from.position >= end) {
+               continue;
+            }
+            long found = (register == null) ? replayWatching(from, end, breakPoints, start) 
+                                             : replayWatching(from, end, register);
+            if (found >= 0) {
+               replay(latestCheckpointAt(found), found);
+               discardFuture();
+               return true;
+            }
+            end = from.position;
+         }
+         goTo(getEarliestPosition());
+         return false;
+      }
+   
+    // Restore the checkpoint and run forward to target.
+       private void replay(Checkpoint from, long target) throws ProcessingException {
+         from.snapshot.restore();
+         position = from.position;
+         nextInput = firstInputAt(from.position);
+         nextCheckpoint = Long.MAX_VALUE; // replayed stretch is already checkpointed
+         replaying = true;
+         try {
+            while (position < target) {
+               int steps = (int) Math.min(target - position, Integer.MAX_VALUE);
+               if (Globals.program.simulateFromPC(null, steps, null)) {
+                  break; // program ended; can only happen if it changed since recorded
+               }
+            }
+         } 
+         finally {
+            replaying = false;
+            Checkpoint last = (Checkpoint) checkpoints.get(checkpoints.size() - 1);
+            nextCheckpoint = last.position + interval;
+         }
+      }
+   
+    // Replay from the checkpoint to end, noting when the register is written.
+    // Returns the position before the last instruction that wrote it, or -1.
+       private long replayWatching(Checkpoint from, long end, Register register) throws ProcessingException {
+         final long[] found = { -1 };
+         Observer watcher = 
+                new Observer() {
+                   public void update(Observable o, Object notice) {
+                     if (((AccessNotice) notice).getAccessType() == AccessNotice.WRITE) {
+                        found[0] = position;
+                     }
+                  }
+               };
+         register.addObserver(watcher);
+         try {
+            replay(from, end);
+         } 
+         finally {
+            register.deleteObserver(watcher);
+         }
+         return found[0];
+      }
+   
+    // Replay from the checkpoint to end, noting when the program counter arrives at
+    // a breakpoint.  The replay does not stop there, which would cost a simulator run
+    // per stop; advance() does the noting.  Returns the last such position before
+    // limit, or -1.
+       private long replayWatching(Checkpoint from, long end, int[] breakPoints, long limit) throws ProcessingException {
+         watchedBreakPoints = (int[]) breakPoints.clone();
+         Arrays.sort(watchedBreakPoints);
+         breakPointLimit = limit;
+         breakPointFound = -1;
+         try {
+            replay(from, end);
+         } 
+         finally {
+            watchedBreakPoints = null;
+         }
+         return breakPointFound;
+      }
+   
+       private Checkpoint latestCheckpointAt(long target) {
+         for (int i = checkpoints.size() - 1; i > 0; i--) {
+            Checkpoint checkpoint = (Checkpoint) checkpoints.get(i);
+            if (checkpoint.position <= target) {
+               return checkpoint;
+            }
+         }
+         return (Checkpoint) checkpoints.get(0);
+      }
+   
+       private int firstInputAt(long from) {
+         int i = inputs.size();
+         while (i > 0 && ((Input) inputs.get(i - 1)).position >= from) {
+            i--;
+         }
+         return i;
+      }
+   
+    // Forget checkpoints after the current position, and input read at or after it.
+       private void discardFuture() {
+         while (checkpoints.size() > 1 &&
+                ((Checkpoint) checkpoints.get(checkpoints.size() - 1)).position > position) {
+            checkpoints.remove(checkpoints.size() - 1);
+         }
+         inputs.subList(firstInputAt(position), inputs.size()).clear();
+         Checkpoint last = (Checkpoint) checkpoints.get(checkpoints.size() - 1);
+         nextCheckpoint = last.position + interval;
+      }
+   
+    // Capture a checkpoint at the current position, then thin out the checkpoints if
+    // there are too many or they hold too much memory.
+       private void checkpoint() {
+         checkpoints.add(new Checkpoint(position, MachineSnapshot.capture()));
+         if (checkpoints.size() > MAXIMUM_CHECKPOINTS) {
+            thin();
+         }
+         int created = Globals.memory.getBlocksCreated();
+         if (blocksCounted + (created - createdCounted) > MAXIMUM_BLOCKS) {
+            while (countBlocks() > MAXIMUM_BLOCKS && checkpoints.size() > 1) {
+               if (checkpoints.size() > 2) {
+                  thin();
+               } 
+               else {
+                  dropOldestCheckpoint();
+               }
+            }
+         }
+         nextCheckpoint = position + interval;
+      }
+   
+    // Drop every other checkpoint, keeping the first and the latest, and double the interval.
+       private void thin() {
+         Checkpoint latest = (Checkpoint) checkpoints.get(checkpoints.size() - 1);
+         for (int i = checkpoints.size() - 2; i > 0; i--) {
+            if (i % 2 == 1) {
+               checkpoints.remove(i);
+            }
+         }
+         if (checkpoints.get(checkpoints.size() - 1) != latest) {
+            checkpoints.add(latest);
+         }
+         interval *= 2;
+      }
+   
+    // Drop the oldest checkpoint, and the input read before the one that is now oldest,
+    // which no replay can reach.
+       private void dropOldestCheckpoint() {
+         checkpoints.remove(0);
+         long earliest = ((Checkpoint) checkpoints.get(0)).position;
+         inputs.subList(0, firstInputAt(earliest)).clear();
+      }
+   
+    // Bring the recorded input back under MAXIMUM_INPUTS by dropping the oldest
+    // checkpoints.  If even the latest checkpoint is followed by too much input, the
+    // history starts over: the input being read now is not recorded, and advance()
+    // takes a new first checkpoint once the current instruction completes.
+       private void trimInputs() {
+         while (inputs.size() > MAXIMUM_INPUTS && checkpoints.size() > 1) {
+            dropOldestCheckpoint();
+         }
+         if (inputs.size() > MAXIMUM_INPUTS) {
+            checkpoints.clear();
+            inputs.clear();
+            interval = INITIAL_INTERVAL;
+            nextCheckpoint = position + 1;
+         }
+      }
+   
+    // Count the distinct memory blocks held by the checkpoints.
+       private int countBlocks() {
+         IdentityHashMap blocks = new IdentityHashMap();
+         for (int i = 0; i < checkpoints.size(); i++) {
+            ((Checkpoint) checkpoints.get(i)).snapshot.addBlocksTo(blocks);
+         }
+         blocksCounted = blocks.size();
+         createdCounted = Globals.memory.getBlocksCreated();
+         return blocksCounted;
+      }
+   
+       private static class Checkpoint {
+         private long position;
+         private MachineSnapshot snapshot;
+          Checkpoint(long position, MachineSnapshot snapshot) {
+            this.position = position;
+            this.snapshot = snapshot;
+         }
+      }
+   
+       private static class Input {
+         private long position;
+         private Object value;
+          Input(long position, Object value) {
+            this.position = position;
+            this.value = value;
+         }
+      }
+   }
@@ -0,0 +1,128 @@
+   package mars.simulator;
+   import mars.*;
+   import mars.mips.hardware.*;
+   import mars.util.*;
+   import mars.mips.instructions.syscalls.RandomStreams;
+   import java.util.Map;
+
+/*
+Copyright (c) 2003-2006,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * A complete copy of the state of the simulated machine at one moment: memory
+ * (text, data, heap, stack, kernel and memory-mapped I/O), the heap pointer,
+ * the register file including pc, hi and lo, coprocessor 0, coprocessor 1 with
+ * its condition flags, any pending delayed branch, the open file descriptors, and
+ * the random number generators.
+ * Restoring a snapshot puts the machine back in that state, so a program can be
+ * run forward from one point any number of times; for instance, set up once and
+ * then run with each of many inputs.
+ * <br><br>
+ * Capture and restore are cheap however much memory the program uses: memory
+ * blocks are shared by the machine and the snapshot, and Memory copies a 4K block
+ * only when it is first stored into afterwards.  A snapshot never changes, and
+ * may be restored any number of times.  It belongs to the program that was
+ * assembled when it was captured, and to the memory configuration then in effect.
+ * Neither capture nor restore may be done while the program is running.
+ *
+ * @see Memory#captureContents()
+ */
+
+    public class MachineSnapshot {
+      private MemoryConfiguration configuration;
+      private Memory.Contents memory;
+      private int[] registers;
+      private int[] coprocessor0;
+      private int[] coprocessor1;
+      private int[] delayedBranch;
+      private SystemIO.OpenFiles files;
+      private Object randomStreams;
+   
+       private MachineSnapshot() {
+      }
+   
+   /**
+    * Capture the current state of the machine.
+    * @return the snapshot
+    */
+       public static MachineSnapshot capture() {
+         MachineSnapshot snapshot = new MachineSnapshot();
+         synchronized (Globals.memoryAndRegistersLock) {
+            snapshot.configuration = MemoryConfigurations.getCurrentConfiguration();
+            snapshot.memory = Globals.memory.captureContents();
+            snapshot.registers = RegisterFile.getValues();
+            snapshot.coprocessor0 = Coprocessor0.getValues();
+            snapshot.coprocessor1 = Coprocessor1.getValues();
+            snapshot.delayedBranch = DelayedBranch.getState();
+            snapshot.files = SystemIO.captureFiles();
+            snapshot.randomStreams = RandomStreams.captureStreams();
+         }
+         return snapshot;
+      }
+   
+   /**
+    * Put the machine back in the state it was in when this snapshot was captured.
+    * Steps recorded for backstepping are discarded, since they no longer apply.
+    * Register and memory observers are not notified.
+    * @throws IllegalStateException if the memory configuration has changed since capture
+    */
+       public void restore() {
+         if (configuration != MemoryConfigurations.getCurrentConfiguration()) {
+            throw new IllegalStateException("memory configuration has changed since the snapshot was taken");
+         }
+         synchronized (Globals.memoryAndRegistersLock) {
+            Globals.memory.restoreContents(memory);
+            RegisterFile.setValues(registers);
+            Coprocessor0.setValues(coprocessor0);
+            Coprocessor1.setValues(coprocessor1);
+            DelayedBranch.setState(delayedBranch);
+            SystemIO.restoreFiles(files);
+            RandomStreams.restoreStreams(randomStreams);
+            if (Globals.program != null && Globals.program.getBackStepper() != null) {
+               Globals.program.getBackStepper().clear();
+            }
+         }
+      }
+   
+   /**
+    * Get the program counter value recorded in this snapshot.
+    * @return the address of the next instruction to execute after restore
+    */
+       public int getProgramCounter() {
+         return registers[32];
+      }
+   
+   /**
+    * Add every memory block held by this snapshot to the map, as a key.
+    * @param blocks map to add the blocks to
+    * @see Memory.Contents#addBlocksTo(Map)
+    */
+       public void addBlocksTo(Map blocks) {
+         memory.addBlocksTo(blocks);
+      }
+   }
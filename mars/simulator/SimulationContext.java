@@ -0,0 +1,116 @@
+   package mars.simulator;
+   import java.io.*;
+   import java.lang.reflect.*;
+   import java.net.*;
+   import java.util.*;
+
+/*
+Copyright (c) 2003-2006,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * A self-contained MARS machine for running programs headless, several to a JVM.
+ * MARS keeps its memory, register files, coprocessors, symbol table, instruction
+ * set and SystemIO state in static fields, and all instruction simulation code
+ * uses them directly.  A SimulationContext gets its own copy of every one of them
+ * by loading the MARS classes afresh in a private class loader.  Contexts share
+ * nothing, so different threads may run different contexts at the same time.
+ *
+ * A context pays for class loading and instruction set population once, when it
+ * is created, and can then run any number of jobs one after another, each with
+ * freshly reset machine state.  One context must not be used by two threads at
+ * once; SimulationPool keeps one per worker thread.
+ */
+
+    public class SimulationContext {
+      private URLClassLoader loader;
+      private Object worker;
+      private Method runMethod;
+
+   /**
+    * Create a context: load a private copy of MARS and initialize it.
+    * @throws IllegalStateException if the MARS classes cannot be loaded from the class path
+    */
+       public SimulationContext() {
+         try {
+            loader = new URLClassLoader(getClassPath(), ClassLoader.getSystemClassLoader().getParent());
+            Class workerClass = Class.forName("mars.simulator.SimulationWorker", true, loader);
+            worker = workerClass.getConstructor(new Class[0]).newInstance(new Object[0]);
+            runMethod = workerClass.getMethod("run", new Class[] { HashMap.class });
+         } 
+             catch (Exception e) {
+               throw new IllegalStateException("Unable to create simulation context: " + e);
+            }
+      }
+
+   /**
+    * Assemble and run a program in this context.
+    * @param job the program and its settings
+    * @return outcome of the run
+    */
+       public SimulationResult run(SimulationJob job) {
+         long start = System.currentTimeMillis();
+         try {
+            HashMap result = (HashMap) runMethod.invoke(worker, new Object[] { job.toMap() });
+            return new SimulationResult(result, System.currentTimeMillis() - start);
+         } 
+             catch (InvocationTargetException e) {
+               return new SimulationResult(SimulationResult.INTERNAL_ERROR, e.getCause().toString(),
+                  System.currentTimeMillis() - start);
+            } 
+             catch (IllegalAccessException e) {
+               return new SimulationResult(SimulationResult.INTERNAL_ERROR, e.toString(),
+                  System.currentTimeMillis() - start);
+            }
+      }
+
+   /**
+    * Release the context's class loader.  The context cannot be used afterwards.
+    */
+       public void close() {
+         try {
+            loader.close();
+         } 
+             catch (IOException e) { }
+         worker = null;
+      }
+
+   // Locations the private loader reads MARS classes and resources (Config.properties,
+   // PseudoOps.txt, ...) from: the JVM class path, plus wherever this class came from.
+       private static URL[] getClassPath() throws MalformedURLException {
+         ArrayList urls = new ArrayList();
+         StringTokenizer st = new StringTokenizer(System.getProperty("java.class.path", "."), File.pathSeparator);
+         while (st.hasMoreTokens()) {
+            urls.add(new File(st.nextToken()).toURI().toURL());
+         }
+         URL own = SimulationContext.class.getProtectionDomain().getCodeSource().getLocation();
+         if (own != null && !urls.contains(own)) {
+            urls.add(own);
+         }
+         return (URL[]) urls.toArray(new URL[urls.size()]);
+      }
+   }
@@ -0,0 +1,142 @@
+   package mars.simulator;
+   import java.util.*;
+
+/*
+Copyright (c) 2003-2006,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Description of one program to be assembled and run by a SimulationContext:
+ * the source files, console input, program arguments, step limit and the
+ * few settings that MarsLaunch exposes as command switches.  Unset options
+ * take the MarsLaunch defaults (extended assembler on, warnings not errors,
+ * delayed branching and self-modifying code off, start at lowest text address).
+ * The turbo loop is always requested; the simulator falls back to normal
+ * simulation by itself when it does not apply.
+ */
+
+    public class SimulationJob {
+      private ArrayList files;
+      private String input = null;
+      private ArrayList arguments = null;
+      private int maxSteps = -1;
+      private boolean delayedBranching = false;
+      private boolean selfModifyingCode = false;
+      private boolean startAtMain = false;
+
+   /**
+    * Create a job for a program made of one or more source files.
+    * @param files ArrayList of String file names.  The first one is the main file.
+    */
+       public SimulationJob(ArrayList files) {
+         this.files = new ArrayList(files);
+      }
+
+   /**
+    * Create a job for a program in a single source file.
+    * @param file name of the source file
+    */
+       public SimulationJob(String file) {
+         this.files = new ArrayList();
+         this.files.add(file);
+      }
+
+   /**
+    * Set the text the program reads as console input (read syscalls and file descriptor 0).
+    * @param input console input, or null for none
+    */
+       public void setInput(String input) {
+         this.input = input;
+      }
+
+   /**
+    * Set program arguments, as with the MarsLaunch "pa" switch.
+    * @param arguments ArrayList of String arguments, or null for none
+    */
+       public void setArguments(ArrayList arguments) {
+         this.arguments = (arguments == null) ? null : new ArrayList(arguments);
+      }
+
+   /**
+    * Set the maximum number of instructions to simulate.
+    * @param maxSteps step limit; 0 or less means no limit
+    */
+       public void setMaxSteps(int maxSteps) {
+         this.maxSteps = maxSteps;
+      }
+
+   /**
+    * Enable or disable delayed branching, as with the MarsLaunch "db" switch.
+    * @param enabled true to simulate delayed branching
+    */
+       public void setDelayedBranching(boolean enabled) {
+         this.delayedBranching = enabled;
+      }
+
+   /**
+    * Enable or disable self-modifying code, as with the MarsLaunch "smc" switch.
+    * @param enabled true to allow the program to write the text segment
+    */
+       public void setSelfModifyingCode(boolean enabled) {
+         this.selfModifyingCode = enabled;
+      }
+
+   /**
+    * Start at the "main" label if defined, as with the MarsLaunch "sm" switch.
+    * @param enabled true to start at main
+    */
+       public void setStartAtMain(boolean enabled) {
+         this.startAtMain = enabled;
+      }
+
+   /**
+    * @return ArrayList of String source file names, main file first
+    */
+       public ArrayList getFiles() {
+         return new ArrayList(files);
+      }
+
+   /**
+    * @return step limit; 0 or less means no limit
+    */
+       public int getMaxSteps() {
+         return maxSteps;
+      }
+
+   // The job as it crosses into a SimulationContext's class loader: only java.* types.
+       HashMap toMap() {
+         HashMap map = new HashMap();
+         map.put("files", new ArrayList(files));
+         map.put("input", input);
+         map.put("arguments", arguments);
+         map.put("maxSteps", new Integer(maxSteps));
+         map.put("delayedBranching", Boolean.valueOf(delayedBranching));
+         map.put("selfModifyingCode", Boolean.valueOf(selfModifyingCode));
+         map.put("startAtMain", Boolean.valueOf(startAtMain));
+         return map;
+      }
+   }
@@ -0,0 +1,113 @@
+   package mars.simulator;
+   import java.util.*;
+   import java.util.concurrent.*;
+
+/*
+Copyright (c) 2003-2006,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Runs SimulationJobs concurrently on a fixed number of threads, each thread
+ * with its own SimulationContext created on first use and reused for every job
+ * that thread runs.
+ */
+
+    public class SimulationPool {
+      private ExecutorService executor;
+      private ThreadLocal contexts = new ThreadLocal();
+      private Vector allContexts = new Vector();
+
+   /**
+    * Create a pool.
+    * @param threads number of worker threads, hence of SimulationContexts
+    */
+       public SimulationPool(int threads) {
+         executor = Executors.newFixedThreadPool(Math.max(1, threads));
+      }
+
+   /**
+    * Queue a job.
+    * @param job the program to run
+    * @return Future whose value is the job's SimulationResult
+    */
+       public Future submit(final SimulationJob job) {
+         return executor.submit(
+               new Callable() {
+                   public Object call() {
+                     return getContext().run(job);
+                  }
+               });
+      }
+
+   /**
+    * Run a list of jobs and wait for all of them.
+    * @param jobs List of SimulationJob
+    * @return ArrayList of SimulationResult, in the same order as the jobs
+    * @throws InterruptedException if interrupted while waiting
+    */
+       public ArrayList runAll(List jobs) throws InterruptedException {
+         ArrayList futures = new ArrayList();
+         for (int i=0; i<jobs.size(); i++) {
+            futures.add(submit((SimulationJob) jobs.get(i)));
+         }
+         ArrayList results = new ArrayList();
+         for (int i=0; i<futures.size(); i++) {
+            try {
+               results.add(((Future) futures.get(i)).get());
+            } 
+                catch (ExecutionException e) {
+                  results.add(new SimulationResult(SimulationResult.INTERNAL_ERROR, e.getCause().toString(), 0));
+               }
+         }
+         return results;
+      }
+
+   /**
+    * Stop accepting jobs, wait for queued ones to finish, and release all contexts.
+    */
+       public void shutdown() {
+         executor.shutdown();
+         try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+         } 
+             catch (InterruptedException e) { }
+         for (int i=0; i<allContexts.size(); i++) {
+            ((SimulationContext) allContexts.get(i)).close();
+         }
+         allContexts.clear();
+      }
+
+       private SimulationContext getContext() {
+         SimulationContext context = (SimulationContext) contexts.get();
+         if (context == null) {
+            context = new SimulationContext();
+            contexts.set(context);
+            allContexts.add(context);
+         }
+         return context;
+      }
+   }
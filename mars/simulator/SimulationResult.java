@@ -0,0 +1,124 @@
+   package mars.simulator;
+   import java.util.*;
+
+/*
+Copyright (c) 2003-2006,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Outcome of running a SimulationJob in a SimulationContext.
+ */
+
+    public class SimulationResult {
+      /** Program ran to completion: exit syscall, or fell off the end of the program. */
+      public static final int COMPLETED = 0;
+      /** Program could not be assembled; it was not run. */
+      public static final int ASSEMBLY_ERROR = 1;
+      /** Program terminated by an exception it did not handle. */
+      public static final int RUNTIME_ERROR = 2;
+      /** Program was stopped at the job's step limit. */
+      public static final int STEP_LIMIT = 3;
+      /** MARS itself failed while handling the job. */
+      public static final int INTERNAL_ERROR = 4;
+
+      private int status;
+      private int exitCode;
+      private int instructionCount;
+      private String output;
+      private String errorOutput;
+      private String messages;
+      private long wallTime;
+
+       SimulationResult(HashMap map, long wallTime) {
+         this.status = ((Integer) map.get("status")).intValue();
+         this.exitCode = ((Integer) map.get("exitCode")).intValue();
+         this.instructionCount = ((Integer) map.get("instructionCount")).intValue();
+         this.output = (String) map.get("output");
+         this.errorOutput = (String) map.get("errorOutput");
+         this.messages = (String) map.get("messages");
+         this.wallTime = wallTime;
+      }
+
+       SimulationResult(int status, String messages, long wallTime) {
+         this.status = status;
+         this.exitCode = 0;
+         this.instructionCount = 0;
+         this.output = "";
+         this.errorOutput = "";
+         this.messages = messages;
+         this.wallTime = wallTime;
+      }
+
+   /**
+    * @return one of COMPLETED, ASSEMBLY_ERROR, RUNTIME_ERROR, STEP_LIMIT, INTERNAL_ERROR
+    */
+       public int getStatus() {
+         return status;
+      }
+
+   /**
+    * @return exit code set by the exit2 syscall (17), otherwise 0
+    */
+       public int getExitCode() {
+         return exitCode;
+      }
+
+   /**
+    * @return number of instructions completed, see Simulator.getInstructionCount()
+    */
+       public int getInstructionCount() {
+         return instructionCount;
+      }
+
+   /**
+    * @return everything the program wrote to the console (file descriptor 1)
+    */
+       public String getOutput() {
+         return output;
+      }
+
+   /**
+    * @return everything the program wrote to file descriptor 2
+    */
+       public String getErrorOutput() {
+         return errorOutput;
+      }
+
+   /**
+    * @return assembler warnings and error reports, empty if none
+    */
+       public String getMessages() {
+         return messages;
+      }
+
+   /**
+    * @return elapsed time to assemble and run the job, in milliseconds
+    */
+       public long getWallTime() {
+         return wallTime;
+      }
+   }
@@ -0,0 +1,117 @@
+   package mars.simulator;
+   import mars.*;
+   import mars.util.*;
+   import mars.mips.hardware.*;
+   import java.io.*;
+   import java.util.*;
+
+/*
+Copyright (c) 2003-2006,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * The half of SimulationContext that lives inside the context's own class
+ * loader, and so sees that context's Globals, Memory, register files and
+ * SystemIO.  Called reflectively; arguments and results are HashMaps of
+ * java.* values because the two sides do not share MARS classes.
+ * Not for direct use: see SimulationContext.
+ */
+
+    public class SimulationWorker {
+
+   /**
+    * Initialize this copy of MARS for command-mode use.  This is where the
+    * instruction set is populated, once per context.
+    */
+       public SimulationWorker() {
+         Globals.initialize(false);
+      }
+
+   /**
+    * Assemble and run one program, starting from freshly reset machine state.
+    * @param job map produced by SimulationJob.toMap()
+    * @return map read by the SimulationResult constructor
+    */
+       public HashMap run(HashMap job) {
+         ByteArrayOutputStream out = new ByteArrayOutputStream();
+         ByteArrayOutputStream err = new ByteArrayOutputStream();
+         String input = (String) job.get("input");
+         SystemIO.setConsoleStreams(
+            new ByteArrayInputStream((input == null) ? new byte[0] : input.getBytes()),
+            new PrintStream(out, true), new PrintStream(err, true));
+         StringBuffer messages = new StringBuffer();
+         int status = SimulationResult.COMPLETED;
+         boolean programRan = false;
+         Globals.exitCode = 0;
+         try {
+            Settings settings = Globals.getSettings();
+            settings.setBooleanSettingNonPersistent(Settings.DELAYED_BRANCHING_ENABLED, ((Boolean) job.get("delayedBranching")).booleanValue());
+            settings.setBooleanSettingNonPersistent(Settings.SELF_MODIFYING_CODE_ENABLED, ((Boolean) job.get("selfModifyingCode")).booleanValue());
+            settings.setBooleanSettingNonPersistent(Settings.TURBO_SIMULATION_ENABLED, true);
+            ArrayList files = (ArrayList) job.get("files");
+            String mainFile = new File((String) files.get(0)).getAbsolutePath();
+            Globals.program = new MIPSprogram();
+            ArrayList programs = Globals.program.prepareFilesForAssembly(files, mainFile, null);
+            ErrorList warnings = Globals.program.assemble(programs, true, false);
+            if (warnings != null && warnings.warningsOccurred()) {
+               messages.append(warnings.generateWarningReport());
+            }
+            RegisterFile.resetRegisters();
+            Coprocessor1.resetRegisters();
+            Coprocessor0.resetRegisters();
+            RegisterFile.initializeProgramCounter(((Boolean) job.get("startAtMain")).booleanValue());
+            DelayedBranch.clear();
+            Simulator.externalInterruptingDevice = Simulator.NO_DEVICE;
+            SystemIO.resetFiles();
+            ArrayList arguments = (ArrayList) job.get("arguments");
+            if (arguments != null && arguments.size() > 0) {
+               new ProgramArgumentList(arguments).storeProgramArguments();
+            }
+            programRan = true;
+            if (!Globals.program.simulate(((Integer) job.get("maxSteps")).intValue())) {
+               status = SimulationResult.STEP_LIMIT;
+            }
+         } 
+             catch (ProcessingException e) {
+               status = (programRan) ? SimulationResult.RUNTIME_ERROR : SimulationResult.ASSEMBLY_ERROR;
+               messages.append(e.errors().generateErrorAndWarningReport());
+            } 
+             catch (Throwable t) {
+               status = SimulationResult.INTERNAL_ERROR;
+               messages.append(t.toString());
+            }
+         SystemIO.resetFiles(); // close any files the program left open
+         HashMap result = new HashMap();
+         result.put("status", new Integer(status));
+         result.put("exitCode", new Integer(Globals.exitCode));
+         result.put("instructionCount", new Integer(programRan ? Simulator.getInstance().getInstructionCount() : 0));
+         result.put("output", out.toString());
+         result.put("errorOutput", err.toString());
+         result.put("messages", messages.toString());
+         return result;
+      }
+   }
@@ -46,6 +46,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       private SimThread simulatorThread;
       private static Simulator simulator = null;  // Singleton object
       private static Runnable interactiveGUIUpdater = null;
+      private int instructionCount = 0;
       // Others can set this true to indicate external interrupt.  Initially used
    	// to simulate keyboard and display interrupts.  The device is identified
    	// by the address of its MMIO control register.  keyboard 0xFFFF0000 and
@@ -121,6 +122,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             Object dun = simulatorThread.get(); // this should emulate join()
             ProcessingException pe = simulatorThread.pe;
             boolean done = simulatorThread.done;
+            instructionCount = simulatorThread.steps;
+            SystemIO.flushOutput();
             if (done) SystemIO.resetFiles(); // close any files opened in MIPS progra
             this.simulatorThread = null;
             if (pe != null) {
@@ -130,8 +133,18 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          }
          return true;
       }
-   		
-   
+
+   /**
+    * Number of MIPS instructions completed by the most recent simulate() call made
+    * without a GUI actor (command mode).  The instruction that ends the program
+    * (exit syscall or an unhandled exception) is not included.
+    * @return instruction count of the last command-mode run
+    **/
+       public int getInstructionCount() {
+         return instructionCount;
+      }
+
+
        /**
    	  *  Set the volatile stop boolean variable checked by the execution
    	  *  thread at the end of each MIPS instruction execution.  If variable
@@ -174,16 +187,50 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 // "stop" just means it is leaving execution state; this could be triggered
    	 // by Stop button, by Pause button, by Step button, by runtime exception, by
    	 // instruction count limit, by breakpoint, or by end of simulation (truly done).
+      // Decoded image and basic block cache of the program most recently run in turbo
+      // mode.  Rebuilt whenever a different (or re-assembled) program is run.
+      private DecodedProgram decodedProgram = null;
+      private BasicBlockCache blockCache = null;
+   
+       private DecodedProgram getDecodedProgram(MIPSprogram p) {
+         if (decodedProgram == null || decodedProgram.getMachineList() != p.getMachineList()) {
+            decodedProgram = new DecodedProgram(p.getMachineList());
+            blockCache = new BasicBlockCache(decodedProgram);
+         }
+         return decodedProgram;
+      }
+   
+   /**
+    *  Called by Memory whenever a statement is stored into the text segment, so the
+    *  turbo loop's decoded image and block cache do not run stale code.  Does nothing
+    *  if no program has been run in turbo mode.
+    *
+    *  @param address text segment address that was written
+    *  @param statement the statement now stored there
+    */
+       public static void textStatementChanged(int address, ProgramStatement statement) {
+         if (simulator != null && simulator.decodedProgram != null &&
+             simulator.decodedProgram.update(address, statement)) {
+            simulator.blockCache.invalidate();
+         }
+      }
+   
+    // The run speed in effect.  Replays for reverse execution always run at full speed.
+       private static double runSpeed() {
+         return ExecutionHistory.isReplaying() ? RunSpeedPanel.UNLIMITED_SPEED : RunSpeedPanel.getInstance().getRunSpeed();
+      }
+   
        private void notifyObserversOfExecutionStart(int maxSteps, int programCounter) {
          this.setChanged();
          this.notifyObservers(new SimulatorNotice(SimulatorNotice.SIMULATOR_START,
-            maxSteps, RunSpeedPanel.getInstance().getRunSpeed(), programCounter) );
+            maxSteps, runSpeed(), programCounter) );
       }
    
        private void notifyObserversOfExecutionStop(int maxSteps, int programCounter) {
+         SystemIO.flushOutput(); // run output up to the stop is shown before anything that follows it
          this.setChanged();
          this.notifyObservers(new SimulatorNotice(SimulatorNotice.SIMULATOR_STOP,
-            maxSteps, RunSpeedPanel.getInstance().getRunSpeed(), programCounter) );
+            maxSteps, runSpeed(), programCounter) );
       }
    	 
    	 
@@ -207,6 +254,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          private volatile AbstractAction stopper;
          private AbstractAction starter;
          private int constructReturnReason;
+         private int steps; // instructions completed so far in this run
+         private ExecutionHistory history; // null unless reverse execution is enabled
       
       
          /**
@@ -269,6 +318,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             Simulator.getInstance().notifyObserversOfExecutionStart(maxSteps, pc);
          	
             RegisterFile.initializeProgramCounter(pc);
+            history = ExecutionHistory.forRun(p);
+            if (turboAllowed()) {
+               return runTurbo();
+            }
             ProgramStatement statement = null;
             try {
                statement = Globals.memory.getStatement(RegisterFile.getProgramCounter());
@@ -288,7 +341,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                   Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
                   return new Boolean(done);
                }
-            int steps = 0;
+            steps = 0;
          	
          	// *******************  PS addition 26 July 2006  **********************
          	// A couple statements below were added for the purpose of assuring that when
@@ -392,6 +445,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                else if (DelayedBranch.isRegistered()) {
                   DelayedBranch.trigger();
                }//////////////////////////////////////////////////////////////////////
+               if (history != null) {
+                  history.advance();
+               }
             	
             	// Volatile variable initialized false but can be set true by the main thread.
             	// Used to stop or pause a running MIPS program.  See stopSimulation() above.
@@ -410,14 +466,12 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                   return new Boolean(done); // false;
                }
             	// Check number of MIPS instructions executed.  Return if at limit (-1 is no limit).
-               if (maxSteps > 0) {
-                  steps++;
-                  if (steps >= maxSteps) {
-                     this.constructReturnReason = MAX_STEPS;
-                     this.done = false;
-                     Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
-                     return new Boolean(done);// false;
-                  }
+               steps++;
+               if (maxSteps > 0 && steps >= maxSteps) {
+                  this.constructReturnReason = MAX_STEPS;
+                  this.done = false;
+                  Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
+                  return new Boolean(done);// false;
                }
             	
             	// schedule GUI update only if: there is in fact a GUI! AND
@@ -425,12 +479,12 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             	//                              running slowly enough for GUI to keep up
                //if (Globals.getGui() != null && maxSteps != 1 &&             
                if (interactiveGUIUpdater != null && maxSteps != 1 && 
-                          RunSpeedPanel.getInstance().getRunSpeed() < RunSpeedPanel.UNLIMITED_SPEED) {
+                          runSpeed() < RunSpeedPanel.UNLIMITED_SPEED) {
                   SwingUtilities.invokeLater(interactiveGUIUpdater);
                }
                if (Globals.getGui() != null || Globals.runSpeedPanelExists) { // OR added by DPS 24 July 2008 to enable speed control by stand-alone tool
                   if (maxSteps != 1 && 
-                          RunSpeedPanel.getInstance().getRunSpeed() < RunSpeedPanel.UNLIMITED_SPEED) {
+                          runSpeed() < RunSpeedPanel.UNLIMITED_SPEED) {
                      try { Thread.sleep((int)(1000/RunSpeedPanel.getInstance().getRunSpeed())); // make sure it's never zero!
                      } 
                          catch (InterruptedException e) {}
@@ -477,6 +531,213 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          }
          
       	
+      	/**
+      	 *  Determine whether this run may use the pre-decoded "turbo" loop.  It skips
+      	 *  the per-step instruction fetch notification, settings lookups, run speed
+      	 *  check and breakpoint search, so it is used only when nobody could observe
+      	 *  the difference: no breakpoints, no backstepping, no memory observers (tools,
+      	 *  instruction counter) and unlimited run speed.  Self-modifying code is fine;
+      	 *  Memory reports text segment stores through textStatementChanged().
+      	 *
+      	 *  @return true if runTurbo() can be used for this run
+      	 */
+          private boolean turboAllowed() {
+            if (!Globals.getSettings().getBooleanSetting(Settings.TURBO_SIMULATION_ENABLED)) {
+               return false;
+            }
+            if (breakPoints != null || maxSteps == 1 ||
+                (history != null && history.isWatchingBreakPoints()) ||
+                Globals.getSettings().getBackSteppingEnabled() ||
+                Globals.memory.countObservers() > 0) {
+               return false;
+            }
+            if ((Globals.getGui() != null || Globals.runSpeedPanelExists) &&
+                runSpeed() < RunSpeedPanel.UNLIMITED_SPEED) {
+               return false;
+            }
+            return true;
+         }
+      
+      	/**
+      	 *  The "turbo" counterpart of the loop in construct().  Instructions are fetched
+      	 *  from a DecodedProgram rather than through Memory, and everything that cannot
+      	 *  change during the run was checked once by turboAllowed().  Delayed branching,
+      	 *  exception handler dispatch, external interrupts and the stop flag behave as
+      	 *  in construct().
+      	 *
+      	 *  Unless delayed branching is enabled, straight-line code is run a basic block
+      	 *  at a time out of the BasicBlockCache, following block links from one block
+      	 *  to the next.  Anything else (kernel text, code outside the decoded range,
+      	 *  undefined instructions, delay slots) is run one statement at a time.
+      	 *
+      	 *  @return  boolean value true if execution done, false otherwise
+      	 */
+          private Object runTurbo() {
+            Simulator sim = Simulator.getInstance();
+            DecodedProgram decoded = sim.getDecodedProgram(p);
+            BasicBlockCache blockCache = (Globals.getSettings().getDelayedBranchingEnabled())
+               ? null : sim.blockCache;
+            BasicBlockCache.BasicBlock block = null;
+            steps = 0;
+            int pc = RegisterFile.getProgramCounter();
+            while (true) {
+               int index = decoded.indexOf(pc);
+               if (blockCache != null && index >= 0) {
+                  if (block == null) {
+                     block = blockCache.getBlock(index);
+                  }
+                  if (block != null) {
+                  	// Run the block.  Leave it early if an instruction sends the program
+                  	// counter anywhere but the next statement, if it stores into the text
+                  	// segment (the rest of the block may be stale), or if maxSteps is reached.
+                     ProgramStatement[] statements = block.statements;
+                     SimulationCode[] codes = block.codes;
+                     int count = statements.length;
+                     if (maxSteps > 0 && maxSteps - steps < count) {
+                        count = maxSteps - steps;
+                     }
+                     if (history != null) {
+                        count = Math.min(count, history.stepsToCheckpoint());
+                     }
+                     int next = pc;
+                     for (int i=0; i<count; i++) {
+                        next += Instruction.INSTRUCTION_LENGTH;
+                        RegisterFile.initializeProgramCounter(next);
+                        try {
+                           codes[i].simulate(statements[i]);
+                        } 
+                            catch (ProcessingException pe) {
+                              if (!handleTurboException(pe)) {
+                                 return turboStopped(this.pe == null ? NORMAL_TERMINATION : EXCEPTION, true, next - Instruction.INSTRUCTION_LENGTH);
+                              }
+                           }
+                        steps++;
+                        if (history != null) {
+                           history.position++;
+                        }
+                        if (RegisterFile.getProgramCounter() != next || !blockCache.isCurrent(block)) {
+                           break;
+                        }
+                     }
+                     int lastPc = next - Instruction.INSTRUCTION_LENGTH;
+                     pc = RegisterFile.getProgramCounter();
+                     if (history != null) {
+                        history.checkpointIfDue();
+                     }
+                     if (stop) {
+                        return turboStopped(PAUSE_OR_STOP, false, lastPc);
+                     }
+                     if (maxSteps > 0 && steps >= maxSteps) {
+                        return turboStopped(MAX_STEPS, false, lastPc);
+                     }
+                     block = (Simulator.externalInterruptingDevice == NO_DEVICE)
+                        ? blockCache.getSuccessor(block, pc) : null;
+                     if (block != null) {
+                        continue;
+                     }
+                     index = decoded.indexOf(pc);
+                  }
+               }
+               block = null;
+               ProgramStatement statement;
+               SimulationCode code;
+               if (index >= 0) {
+                  statement = decoded.getStatement(index);
+                  code = decoded.getSimulationCode(index);
+               } 
+               else {
+                  try {
+                     statement = Globals.memory.getStatementNoNotify(pc);
+                  } 
+                      catch (AddressErrorException e) {
+                        ErrorList el = new ErrorList();
+                        el.add(new ErrorMessage((MIPSprogram)null,0,0,"invalid program counter value: "+Binary.intToHexString(pc)));
+                        this.pe = new ProcessingException(el, e);
+                        // See the comment on the same statement in construct().  DPS 8-July-2013
+                        Coprocessor0.updateRegister(Coprocessor0.EPC, pc);
+                        return turboStopped(EXCEPTION, true, pc);
+                     }
+                  code = (statement != null && statement.getInstruction() instanceof BasicInstruction)
+                     ? ((BasicInstruction)statement.getInstruction()).getSimulationCode()
+                     : null;
+               }
+               if (statement == null) {
+                  // fell off the end of the program; see the comment at the end of construct().
+                  if (DelayedBranch.isTriggered() || DelayedBranch.isRegistered()) {
+                     DelayedBranch.clear();
+                  }
+                  return turboStopped(CLIFF_TERMINATION, true, pc);
+               }
+               RegisterFile.incrementPC();
+               try {
+                  if (Simulator.externalInterruptingDevice != NO_DEVICE) {
+                     int deviceInterruptCode = externalInterruptingDevice;
+                     Simulator.externalInterruptingDevice = NO_DEVICE;
+                     throw new ProcessingException(statement, "External Interrupt", deviceInterruptCode);
+                  }
+                  if (code == null) {
+                     throw new ProcessingException(statement,
+                         "undefined instruction ("+Binary.intToHexString(statement.getBinaryStatement())+")",
+                         Exceptions.RESERVED_INSTRUCTION_EXCEPTION);
+                  }
+                  code.simulate(statement);
+               } 
+                   catch (ProcessingException pe) {
+                     if (!handleTurboException(pe)) {
+                        return turboStopped(this.pe == null ? NORMAL_TERMINATION : EXCEPTION, true, pc);
+                     }
+                  }
+               if (DelayedBranch.isTriggered()) {
+                  RegisterFile.setProgramCounter(DelayedBranch.getBranchTargetAddress());
+                  DelayedBranch.clear();
+               } 
+               else if (DelayedBranch.isRegistered()) {
+                  DelayedBranch.trigger();
+               }
+               if (history != null) {
+                  history.advance();
+               }
+               if (stop) {
+                  return turboStopped(PAUSE_OR_STOP, false, pc);
+               }
+               if (maxSteps > 0 && ++steps >= maxSteps) {
+                  return turboStopped(MAX_STEPS, false, pc);
+               }
+               pc = RegisterFile.getProgramCounter();
+            }
+         }
+      
+         // Exception handling for runTurbo(), as in construct().  Returns true if execution
+      	// continues in the exception handler, false if the program ends here.  In the latter
+      	// case this.pe is left null for normal termination (e.g. exit syscall).
+          private boolean handleTurboException(ProcessingException pe) {
+            if (pe.errors() == null) {
+               return false;
+            }
+            ProgramStatement exceptionHandler = null;
+            try {
+               exceptionHandler = Globals.memory.getStatementNoNotify(Memory.exceptionHandlerAddress);
+            } 
+                catch (AddressErrorException aee) { } // will not occur with this well-known addres
+            if (exceptionHandler == null) {
+               this.pe = pe;
+               return false;
+            }
+            RegisterFile.setProgramCounter(Memory.exceptionHandlerAddress);
+            return true;
+         }
+      
+         // Common exit from runTurbo(): record why, release MIPS files if done, tell observers.
+          private Object turboStopped(int reason, boolean done, int pc) {
+            this.constructReturnReason = reason;
+            this.done = done;
+            if (done) {
+               SystemIO.resetFiles(); // close any files opened in MIPS program
+            }
+            Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
+            return new Boolean(done);
+         }
+      
       	/**
       	 *   This method is invoked by the SwingWorker when the "construct" method returns.  
       	 *   It will update the GUI appropriately.  According to Sun's documentation, it 
@@ -489,7 +750,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       	 
           public void finished() {
            // If running from the command-line, then there is no GUI to update.
-            if (Globals.getGui() == null) {
+           // Nor is there if run for the GUI but not from a GUI action (e.g. a replay).
+            if (Globals.getGui() == null || starter == null) {
                return;
             }
             String starterName = (String) starter.getValue(AbstractAction.NAME);
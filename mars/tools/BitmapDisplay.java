@@ -4,9 +4,11 @@
    import javax.swing.event.*;
    import java.awt.*;
    import java.awt.event.*;
+   import java.awt.image.*;
    import java.util.*;
    import mars.tools.*;
    import mars.mips.hardware.*;
+   import mars.Globals;
 
 /*
 Copyright (c) 2010-2011,  Pete Sanderson and Kenneth Vollmar
@@ -42,7 +44,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 	 * maximum use of methods inherited from its abstract superclass AbstractMarsToolAndApplication.
 	 * Pete Sanderson, verison 1.0, 23 December 2010.
 	 */
-    public class BitmapDisplay extends AbstractMarsToolAndApplication {
+    public class BitmapDisplay extends AbstractMarsToolAndApplication implements MemoryRangeObserver {
    
       private static String version = "Version 1.0";
       private static String heading =  "Bitmap Display";
@@ -85,6 +87,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       private int baseAddress;
    	
       private Grid theGrid;
+   	
+   	// Writes only mark the grid; the display is repainted at most once per interval.
+      private static final int REPAINT_INTERVAL = 16; // milliseconds, about 60 per second
+      private javax.swing.Timer repaintTimer;
    	         	
    	/**
    	 * Simple constructor, likely used to run a stand-alone bitmap display tool.
@@ -218,7 +224,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 *  is running in timed mode.  Overrides inherited method that does nothing.
    	 */
        protected void updateDisplay() {
-         canvas.repaint();
+         if (repaintTimer != null && !repaintTimer.isRunning()) {
+            repaintTimer.start();
+         }
       }
    
        
@@ -391,6 +399,17 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          canvas = new GraphicsPanel();
          canvas.setPreferredSize(getDisplayAreaDimension());
          canvas.setToolTipText("Bitmap display area");
+         repaintTimer = new javax.swing.Timer(REPAINT_INTERVAL, 
+                new ActionListener() {
+                   public void actionPerformed(ActionEvent e) {
+                     Rectangle dirty = theGrid.takeDirtyArea();
+                     if (dirty != null) {
+                        canvas.repaint(dirty.x*unitPixelWidth, dirty.y*unitPixelHeight,
+                                       dirty.width*unitPixelWidth, dirty.height*unitPixelHeight);
+                     }
+                  }
+               });
+         repaintTimer.setRepeats(false);
          return canvas;
       }
    
@@ -467,6 +486,20 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          int address = notice.getAddress();
          int value   = notice.getValue();
          int offset = (address - baseAddress)/Memory.WORD_LENGTH_BYTES;
+         if (notice.getLength() > Memory.WORD_LENGTH_BYTES) {
+            // Bulk store: one notice covers a run of words, so read each back.
+            int[] colors = new int[notice.getLength()/Memory.WORD_LENGTH_BYTES];
+            try {
+               for (int i = 0; i < colors.length; i++) {
+                  colors[i] = Globals.memory.getWordNoNotify(address + i * Memory.WORD_LENGTH_BYTES);
+               }
+            } 
+                catch (AddressErrorException e) {
+                  return;
+               }
+            theGrid.setElements(offset, colors);
+            return;
+         }
          try {
             theGrid.setElement(offset / theGrid.getColumns(), offset % theGrid.getColumns(), value);
          } 
@@ -492,32 +525,29 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                paintGrid(g, theGrid);
          }
       
-      	// Paint the color codes.
+      	// Paint the color codes: the grid's image, scaled by the unit size.  Swing
+      	// clips this to the area being repainted.
           private void paintGrid(Graphics g, Grid grid) {
-            int upperLeftX = 0, upperLeftY = 0;
-            for (int i=0; i<grid.getRows(); i++) {
-               for (int j=0; j<grid.getColumns(); j++) {
-                  g.setColor(grid.getElementFast(i,j));
-                  g.fillRect(upperLeftX, upperLeftY, unitPixelWidth, unitPixelHeight); 
-                  upperLeftX += unitPixelWidth;   // faster than multiplying
-               }
-            	// get ready for next row...
-               upperLeftX = 0;
-               upperLeftY += unitPixelHeight;     // faster than multiplying
-            }
+            g.drawImage(grid.getImage(), 0, 0, grid.getColumns()*unitPixelWidth, 
+                        grid.getRows()*unitPixelHeight, null);
          }
       }
    
    	
       ////////////////////////////////////////////////////////////////////////
-   	// Represents grid of colors
+   	// Represents grid of colors, one image pixel per grid element.  Elements are
+   	// written straight into the image's int raster, and the bounds of those written
+   	// since the last repaint are kept so only that area need be repainted.
        private class Grid {
       
-         Color[][] grid;
+         BufferedImage image;
+         int[] pixels; // the image's raster, row-major
          int rows, columns;
+         int dirtyTop, dirtyLeft, dirtyBottom, dirtyRight; // clean if dirtyTop > dirtyBottom
       	 		  
           private Grid(int rows, int columns) {
-            grid = new Color[rows][columns];
+            image = new BufferedImage(columns, rows, BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
             this.rows = rows;
             this.columns = columns;
             reset();
@@ -531,35 +561,66 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             return columns;
          }
       
-      	// Returns value in given grid element; null if row or column is out of range.			
-          private Color getElement(int row, int column) {
-            return (row>=0 && row<=rows && column>=0 && column<=columns) ? grid[row][column] : null;			
-         }
-      
-      	// Returns value in given grid element without doing any row/column index checking.
-      	// Is faster than getElement but will throw array index out of bounds exception if
-      	// parameter values are outside the bounds of the grid.			
-          private Color getElementFast(int row, int column) {
-            return grid[row][column];			
+          private BufferedImage getImage() {
+            return image;
          }
       	      	
-      	// Set the grid element.
+      	// Set the grid element.  Throws index out of bounds exception if row is out of range.
           private void setElement(int row, int column, int color) {
-            grid[row][column] = new Color(color);
+            pixels[row*columns + column] = color;
+            markDirty(row, column, row, column);
          }
       	
-      	// Set the grid element.
-          private void setElement(int row, int column, Color color) {
-            grid[row][column] = color;
+      	// Set consecutive grid elements, in row-major order starting at the given one.
+      	// Those beyond the end of the grid are ignored.
+          private void setElements(int first, int[] colors) {
+            int start = Math.max(first, 0);
+            int end = Math.min(first + colors.length, pixels.length);
+            if (start >= end) {
+               return;
+            }
+            System.arraycopy(colors, start - first, pixels, start, end - start);
+            int top = start / columns;
+            int bottom = (end - 1) / columns;
+            if (top == bottom) {
+               markDirty(top, start % columns, bottom, (end - 1) % columns);
+            } 
+            else {
+               markDirty(top, 0, bottom, columns - 1);
+            }
          }
       
       	// Just set all grid elements to black.
           private void reset() {
-            for (int i=0; i<rows; i++) {
-               for (int j=0; j<columns; j++) {
-                  grid[i][j] = Color.BLACK;
-               }
+            Arrays.fill(pixels, 0);
+            markDirty(0, 0, rows - 1, columns - 1);
+         }
+      	
+      	// Grow the dirty area to include the given rows and columns.
+          private synchronized void markDirty(int top, int left, int bottom, int right) {
+            if (dirtyTop > dirtyBottom) {
+               dirtyTop = top;
+               dirtyLeft = left;
+               dirtyBottom = bottom;
+               dirtyRight = right;
+            } 
+            else {
+               dirtyTop = Math.min(dirtyTop, top);
+               dirtyLeft = Math.min(dirtyLeft, left);
+               dirtyBottom = Math.max(dirtyBottom, bottom);
+               dirtyRight = Math.max(dirtyRight, right);
+            }
+         }
+      	
+      	// Return the dirty area in grid units, or null if clean, and mark the grid clean.
+          private synchronized Rectangle takeDirtyArea() {
+            if (dirtyTop > dirtyBottom) {
+               return null;
             }
+            Rectangle dirty = new Rectangle(dirtyLeft, dirtyTop, dirtyRight - dirtyLeft + 1, dirtyBottom - dirtyTop + 1);
+            dirtyTop = 1;
+            dirtyBottom = 0;
+            return dirty;
          }
       }  	
    
@@ -0,0 +1,295 @@
+   package mars.tools;
+   import javax.swing.*;
+   import javax.swing.border.*;
+   import java.awt.*;
+   import java.awt.event.*;
+   import java.awt.image.*;
+   import java.util.*;
+   import mars.mips.hardware.*;
+   import mars.Globals;
+
+/*
+Copyright (c) 2010-2011,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+	
+   /**
+	 * Frame buffer display.  Like the Bitmap Display, each memory word is one pixel in
+	 * row-major order, its value a 24-bit RGB color.  Unlike it, this tool does not observe
+	 * memory stores at all.  The program draws a whole frame in memory and then presents it
+	 * with the PresentFrame syscall (60), at which point the frame is copied in one pass
+	 * from memory into the display.  Drawing into one buffer while presenting another gives
+	 * double buffering.  It can be run either as a stand-alone Java application having
+	 * access to the mars package, or through MARS as an item in its Tools menu.
+	 */
+    public class FrameBufferDisplay extends AbstractMarsToolAndApplication {
+   
+      private static String version = "Version 1.0";
+      private static String heading =  "Frame Buffer Display";
+   	
+   	// Displays currently connected to MIPS, which receive presented frames.
+      private static ArrayList connectedDisplays = new ArrayList();
+   	
+   	// Major GUI components
+      private JComboBox frameWidthSelector, frameHeightSelector, pixelsPerWordSelector;
+      private JPanel canvas;
+   	
+   	// Values for Combo Boxes
+      private final String[] frameSizeChoices  = {"64","128","256","512","1024"};
+      private final int defaultFrameWidthIndex  = 3;
+      private final int defaultFrameHeightIndex  = 2;
+      private final String[] pixelsPerWordChoices  = {"1","2","4","8"};
+      private final int defaultPixelsPerWordIndex  = 0;
+   
+      // The frame as last presented, one image pixel per word.  Guarded by this object's lock,
+      // since frames are presented from the simulator thread and painted from the GUI's.
+      private int frameWidth = Integer.parseInt(frameSizeChoices[defaultFrameWidthIndex]);
+      private int frameHeight = Integer.parseInt(frameSizeChoices[defaultFrameHeightIndex]);
+      private int pixelsPerWord = Integer.parseInt(pixelsPerWordChoices[defaultPixelsPerWordIndex]);
+      private BufferedImage frame;
+      private int[] pixels; // the image's raster, row-major
+   	
+   	/**
+   	 * Simple constructor, likely used to run a stand-alone frame buffer display tool.
+   	 * @param title String containing title for title bar
+   	 * @param heading String containing text for heading shown in upper part of window.
+   	 */
+       public FrameBufferDisplay(String title, String heading) {
+         super(title,heading);
+      }
+   	 
+   	 /**
+   	  *  Simple constructor, likely used by the MARS Tools menu mechanism
+   	  */
+       public FrameBufferDisplay() {
+         super ("Frame Buffer Display, "+version, heading);
+      }
+   		 
+   	/**
+   	 * Main provided for pure stand-alone use.
+   	 */
+       public static void main(String[] args) {
+         new FrameBufferDisplay("Frame Buffer Display stand-alone, "+version,heading).go();
+      }
+   
+       /**
+   	  *  Required MarsTool method to return Tool name.  
+   	  *  @return  Tool name.  MARS will display this in menu item.
+   	  */
+       public String getName() {
+         return "Frame Buffer Display";
+      }
+   	
+   	/**
+   	 *  Present a frame to every connected frame buffer display: copy each one's worth of
+   	 *  words, starting at the given address, straight out of memory into the display.
+   	 *  Called by the PresentFrame syscall.  Memory observers are not notified.
+   	 *  @param address Address of the frame's first (upper left) word.  Must be word-aligned.
+   	 *  @throws AddressErrorException If the frame is not aligned or not within one data segment.
+   	 */
+       public static void presentFrame(int address) throws AddressErrorException {
+         Object[] displays;
+         synchronized (connectedDisplays) {
+            if (connectedDisplays.isEmpty()) {
+               return;
+            }
+            displays = connectedDisplays.toArray();
+         }
+         for (int i=0; i<displays.length; i++) {
+            ((FrameBufferDisplay) displays[i]).present(address);
+         }
+      }
+   	
+   	/**
+   	 *  Instead of observing memory, join the displays that presented frames go to.
+   	 */
+       protected void addAsObserver() {
+         synchronized (connectedDisplays) {
+            if (!connectedDisplays.contains(this)) {
+               connectedDisplays.add(this);
+            }
+         }
+      }
+   	
+   	/**
+   	 *  Leave the displays that presented frames go to.
+   	 */
+       protected void deleteAsObserver() {
+         synchronized (connectedDisplays) {
+            connectedDisplays.remove(this);
+         }
+      }
+   	
+   	/**
+   	 *  Create the initial frame.  Overrides inherited method that does nothing.
+   	 */
+       protected void initializePreGUI() {
+         createNewFrame();
+      }
+   	
+   	/**
+   	 *  Method that constructs the main display area: the frame configuration, which can
+   	 *  be modified using combo boxes, and the frame itself.
+   	 *  @return the GUI component containing these two areas
+   	 */
+       protected JComponent buildMainDisplayArea() {
+         JPanel results = new JPanel();
+         results.add(buildOrganizationArea());
+         canvas = new GraphicsPanel();
+         canvas.setPreferredSize(getDisplayAreaDimension());
+         canvas.setToolTipText("Frame buffer display area");
+         results.add(canvas);
+         return results;
+      }
+   	
+   	/**
+   	 *  Method to clear the display when the Reset button selected.
+   	 *  Overrides inherited method that does nothing.
+   	 */
+       protected void reset() {
+         synchronized (this) {
+            Arrays.fill(pixels, 0);
+         }
+         canvas.repaint();
+      }
+   
+   	 /**
+   	  *  Overrides default method, to provide a Help button for this tool/app.
+   	  */
+       protected JComponent getHelpComponent() {
+         final String helpContent = 
+                              "Use this program to simulate a frame buffer display where\n"+
+                              "each memory word of a frame corresponds to one display pixel\n"+
+            						"in row-major order starting at the upper left corner.  The\n"+
+            						"value stored in that word is interpreted as a 24-bit RGB color\n"+
+            						"value with the red component in bits 16-23, the green component\n"+
+            						"in bits 8-15, and the blue component in bits 0-7.\n"+
+            						"\n"+
+            						"Stores to memory do not change the display.  Instead, draw a\n"+
+            						"whole frame, then present it with syscall 60 (PresentFrame),\n"+
+            						"passing the frame's address in $a0.  The display then shows\n"+
+            						"that frame until the next one is presented.  To avoid showing\n"+
+            						"half-drawn frames, draw alternately into two frames in memory\n"+
+            						"and present each one when it is finished.\n";
+         JButton help = new JButton("Help");
+         help.addActionListener(
+                new ActionListener() {
+                   public void actionPerformed(ActionEvent e) {
+                     JOptionPane.showMessageDialog(theWindow, helpContent);
+                  }
+               });		
+         return help;  
+      }
+   	
+      //////////////////////////////////////////////////////////////////////////////////////
+      //  Private methods defined to support the above.
+      //////////////////////////////////////////////////////////////////////////////////////
+   	
+   	// Copy a frame from memory into the display and schedule a repaint.  Swing
+   	// coalesces repaints, so presenting faster than the screen updates costs only the copy.
+       private void present(int address) throws AddressErrorException {
+         synchronized (this) {
+            Globals.memory.getWordsNoNotify(address, pixels);
+         }
+         canvas.repaint();
+      }
+   	
+   	// Allocate a blank frame of the currently selected size.
+       private synchronized void createNewFrame() {
+         frame = new BufferedImage(frameWidth, frameHeight, BufferedImage.TYPE_INT_RGB);
+         pixels = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+      }
+   	
+   	// UI components and layout for left half of GUI, where settings are specified.
+       private JComponent buildOrganizationArea() {
+         JPanel organization = new JPanel(new GridLayout(8,1));
+         ActionListener resize = 
+                new ActionListener() {
+                   public void actionPerformed(ActionEvent e) {
+                     frameWidth = getIntComboBoxSelection(frameWidthSelector);
+                     frameHeight = getIntComboBoxSelection(frameHeightSelector);
+                     pixelsPerWord = getIntComboBoxSelection(pixelsPerWordSelector);
+                     createNewFrame();
+                     canvas.setPreferredSize(getDisplayAreaDimension());
+                     canvas.setSize(getDisplayAreaDimension());
+                     canvas.repaint();
+                  }
+               };
+         frameWidthSelector = new JComboBox(frameSizeChoices);
+         frameWidthSelector.setEditable(false);
+         frameWidthSelector.setSelectedIndex(defaultFrameWidthIndex);
+         frameWidthSelector.setToolTipText("Width of frame in words (one word per pixel)");
+         frameWidthSelector.addActionListener(resize);
+         frameHeightSelector = new JComboBox(frameSizeChoices);
+         frameHeightSelector.setEditable(false);
+         frameHeightSelector.setSelectedIndex(defaultFrameHeightIndex);
+         frameHeightSelector.setToolTipText("Height of frame in words (one word per pixel)");
+         frameHeightSelector.addActionListener(resize);
+         pixelsPerWordSelector = new JComboBox(pixelsPerWordChoices);
+         pixelsPerWordSelector.setEditable(false);
+         pixelsPerWordSelector.setSelectedIndex(defaultPixelsPerWordIndex);
+         pixelsPerWordSelector.setToolTipText("Width and height in screen pixels of each frame pixel");
+         pixelsPerWordSelector.addActionListener(resize);
+         organization.add(getLabeledRow("Frame Width in Words ", frameWidthSelector));
+         organization.add(getLabeledRow("Frame Height in Words ", frameHeightSelector));
+         organization.add(getLabeledRow("Screen Pixels per Word ", pixelsPerWordSelector));
+         return organization;
+      }
+   	
+   	// A combo box with its label to the left.
+       private JPanel getLabeledRow(String label, JComboBox comboBox) {
+         JPanel row = new JPanel(new BorderLayout(2,2));
+         row.setBorder(new EmptyBorder(4,4,4,4));
+         row.add(new JLabel(label),BorderLayout.WEST);
+         row.add(comboBox, BorderLayout.EAST);
+         return row;
+      }
+   	
+   	 // Returns Dimension object with current width and height of display area.
+       private Dimension getDisplayAreaDimension() {
+         return new Dimension(frameWidth*pixelsPerWord, frameHeight*pixelsPerWord);
+      }
+   	
+   	// Will return int equivalent of specified combo box's current selection.
+       private int getIntComboBoxSelection(JComboBox comboBox) {
+         try {
+            return Integer.parseInt((String)comboBox.getSelectedItem());
+         } 
+             catch (NumberFormatException nfe) {
+               return 1;
+            }
+      }
+   
+   	/////////////////////////////////////////////////////////////////////////////
+   	//  Class that represents the panel showing the frame, scaled.
+       private class GraphicsPanel extends JPanel {
+          public void paint(Graphics g) {
+            synchronized (FrameBufferDisplay.this) {
+               g.drawImage(frame, 0, 0, frameWidth*pixelsPerWord, frameHeight*pixelsPerWord, null);
+            }
+         }
+      }
+   }
@@ -342,6 +342,17 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          return result.toString();
       }
    	    
+    /**
+     * Quick check of whether a string starting with the given character could be
+     * accepted by stringToInt(), so callers can avoid an attempt that is sure to fail.
+     *
+     * @param c first character of candidate string
+     * @return false if no string starting with c is a valid integer, true otherwise
+     */
+       public static boolean couldStartInteger(char c) {
+         return Character.isDigit(c) || c == '-' || c == '+' || c == '#';
+      }
+   
     /**
      * Attempt to validate given string whose characters represent a 32 bit integer.
      * Integer.decode() is insufficient because it will not allow incorporation of
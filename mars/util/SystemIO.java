@@ -1,5 +1,6 @@
    package mars.util;
    import mars.*;
+   import mars.simulator.ExecutionHistory;
    import java.io.*;
    import javax.swing.*;
    import java.util.*;
@@ -68,6 +69,37 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	// Added by DPS 28 Feb 2008.  See getInputReader() below.
       private static BufferedReader inputReader = null;
    
+      // Console streams used in command mode.  Normally System.in/out/err, but they
+      // can be replaced to give a program its own console, e.g. by SimulationContext.
+      private static InputStream consoleIn = System.in;
+      private static PrintStream consoleOut = System.out;
+      private static PrintStream consoleErr = System.err;
+   
+      // Run output from the print syscalls is collected here and handed on in
+      // batches: when OUTPUT_FLUSH_SIZE characters are waiting, OUTPUT_FLUSH_DELAY
+      // milliseconds after the first of them arrived, before any input is read
+      // and when the simulator stops.  Guarded by its own lock.
+      private static final int OUTPUT_FLUSH_SIZE = 8192;
+      private static final long OUTPUT_FLUSH_DELAY = 100;
+      private static final StringBuffer outputBuffer = new StringBuffer();
+      private static java.util.Timer outputTimer = null;
+   
+    /**
+     * Replace the console streams used in command mode.  Affects the print/read
+     * syscalls and file descriptors 0, 1 and 2 from the next resetFiles() on.
+     * @param in stream for keyboard input, or null for System.in
+     * @param out stream for console output, or null for System.out
+     * @param err stream for error output, or null for System.err
+     */
+       public static void setConsoleStreams(InputStream in, PrintStream out, PrintStream err)
+      {
+         flushOutput();
+         consoleIn = (in == null) ? System.in : in;
+         consoleOut = (out == null) ? System.out : out;
+         consoleErr = (err == null) ? System.err : err;
+         inputReader = null;
+      }
+   
     /**
      * Implements syscall to read an integer value.  
      * Client is responsible for catching NumberFormatException.
@@ -77,8 +109,13 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    
        public static int readInteger(int serviceNumber)
       {
+         flushOutput();
          String input = "0";
-         if (Globals.getGui() == null)
+         if (ExecutionHistory.hasReplayInput())
+         {
+            input = (String) ExecutionHistory.replayInput();
+         } 
+         else if (Globals.getGui() == null)
          {
             try
             {  
@@ -97,6 +134,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                input = Globals.getGui().getMessagesPane().getInputString(-1);
             }
          }
+         ExecutionHistory.recordInput(input);
       
         // Client is responsible for catching NumberFormatException
          return new Integer(input.trim()).intValue();
@@ -112,8 +150,13 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
      */
        public static float readFloat(int serviceNumber)
       {
+         flushOutput();
          String input = "0";
-         if (Globals.getGui() == null)
+         if (ExecutionHistory.hasReplayInput())
+         {
+            input = (String) ExecutionHistory.replayInput();
+         } 
+         else if (Globals.getGui() == null)
          {
             try
             {
@@ -132,6 +175,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                input = Globals.getGui().getMessagesPane().getInputString(-1);
             }
          }
+         ExecutionHistory.recordInput(input);
          return new Float(input.trim()).floatValue();
       
       }
@@ -146,8 +190,13 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
      */
        public static double readDouble(int serviceNumber)
       {
+         flushOutput();
          String input = "0";
-         if (Globals.getGui() == null)
+         if (ExecutionHistory.hasReplayInput())
+         {
+            input = (String) ExecutionHistory.replayInput();
+         } 
+         else if (Globals.getGui() == null)
          {
             try
             {
@@ -166,25 +215,71 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                input = Globals.getGui().getMessagesPane().getInputString(-1);
             }
          }
+         ExecutionHistory.recordInput(input);
          return new Double(input.trim()).doubleValue();
       
       }
     
     
     /**
-     * Implements syscall having 4 in $v0, to print a string.
+     * Implements syscall having 4 in $v0, to print a string.  Output is buffered;
+     * see flushOutput().
      */
        public static void printString(String string)
       {
-         if (Globals.getGui() == null)
-         {
-            System.out.print(string);
-         } 
-         else
-         {
-            Globals.getGui().getMessagesPane().postRunMessage(string);
+         if (ExecutionHistory.isReplaying()) {
+            return; // already printed when first executed
+         }
+         boolean full;
+         synchronized (outputBuffer) {
+            if (outputBuffer.length() == 0) {
+               scheduleOutputFlush();
+            }
+            outputBuffer.append(string);
+            full = outputBuffer.length() >= OUTPUT_FLUSH_SIZE;
+         }
+         if (full) {
+            flushOutput();
          }
-      
+      }
+   
+    /**
+     * Send any buffered run output to the console, or to the Run I/O window when
+     * using the GUI.  Called before reading input and when the simulator stops.
+     */
+       public static void flushOutput()
+      {
+         synchronized (outputBuffer) {
+            if (outputBuffer.length() == 0) {
+               return;
+            }
+            String output = outputBuffer.toString();
+            outputBuffer.setLength(0);
+            if (Globals.getGui() == null)
+            {
+               consoleOut.print(output);
+               consoleOut.flush();
+            } 
+            else
+            {
+               Globals.getGui().getMessagesPane().postRunMessage(output);
+            }
+         }
+      }
+   
+      // Make sure output that arrives while the program is busy computing is
+      // still shown promptly.  Caller holds the outputBuffer lock.
+       private static void scheduleOutputFlush()
+      {
+         if (outputTimer == null) {
+            outputTimer = new java.util.Timer(true);
+         }
+         outputTimer.schedule(
+                new TimerTask() {
+                   public void run() {
+                     flushOutput();
+                  }
+               }, OUTPUT_FLUSH_DELAY);
       }
    	
    	
@@ -196,8 +291,13 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
      */
        public static String readString(int serviceNumber, int maxLength)
       {
+         flushOutput();
          String input = "";
-         if (Globals.getGui() == null)
+         if (ExecutionHistory.hasReplayInput())
+         {
+            input = (String) ExecutionHistory.replayInput();
+         } 
+         else if (Globals.getGui() == null)
          {
             try
             {
@@ -220,6 +320,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                }
             }
          }
+         ExecutionHistory.recordInput(input);
       	
          if (input.length() > maxLength) {
             // Modified DPS 13-July-2011.  Originally: return input.substring(0, maxLength);
@@ -238,9 +339,14 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
      */
        public static int readChar(int serviceNumber)
       {
+         flushOutput();
          String input = "0";
          int returnValue = 0;
-         if (Globals.getGui() == null)
+         if (ExecutionHistory.hasReplayInput())
+         {
+            input = (String) ExecutionHistory.replayInput();
+         } 
+         else if (Globals.getGui() == null)
          {
             try
             {
@@ -259,6 +365,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                input = Globals.getGui().getMessagesPane().getInputString(1);
             }
          }
+         ExecutionHistory.recordInput(input);
          // The whole try-catch is not really necessary in this case since I'm
       	// just propagating the runtime exception (the default behavior), but 
       	// I want to make it explicit.  The client needs to catch it.
@@ -286,6 +393,12 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    
        public static int writeToFile(int fd, byte[] myBuffer, int lengthRequested)
       {
+         if (fd==STDOUT || fd==STDERR) {
+            if (ExecutionHistory.isReplaying()) {
+               return lengthRequested; // already written when first executed
+            }
+            flushOutput(); // keep print syscall output in order with it
+         }
        /////////////// DPS 8-Jan-2013  ////////////////////////////////////////////////////
        /// Write to STDOUT or STDERR file descriptor while using IDE - write to Messages pane. 
          if ((fd==STDOUT || fd==STDERR) && Globals.getGui() != null) {
@@ -352,10 +465,16 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        public static int readFromFile(int fd, byte[] myBuffer, int lengthRequested)
       {
          int retValue = -1;  
+         if (fd==STDIN) {
+            flushOutput(); // show any prompt before waiting for input
+         }
        /////////////// DPS 8-Jan-2013  //////////////////////////////////////////////////
        /// Read from STDIN file descriptor while using IDE - get input from Messages pane. 
          if (fd==STDIN && Globals.getGui() != null) {
-            String input = Globals.getGui().getMessagesPane().getInputString(lengthRequested);
+            String input = (ExecutionHistory.hasReplayInput())
+               ? (String) ExecutionHistory.replayInput()
+               : Globals.getGui().getMessagesPane().getInputString(lengthRequested);
+            ExecutionHistory.recordInput(input);
             byte[] bytesRead = input.getBytes();;
             for (int i=0; i < myBuffer.length; i++) {
                myBuffer[i] = (i < bytesRead.length) ? bytesRead[i] : 0 ;
@@ -364,6 +483,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          }
        ////////////////////////////////////////////////////////////////////////////////////
        //// When running in command mode, code below works for either regular file or STDIN
+         if (fd==STDIN && ExecutionHistory.hasReplayInput()) {
+            byte[] recorded = (byte[]) ExecutionHistory.replayInput();
+            System.arraycopy(recorded, 0, myBuffer, 0, recorded.length);
+            return recorded.length;
+         }
        
          if (!FileIOData.fdInUse(fd, 0)) // Check the existence of the "read" fd
          {
@@ -382,6 +506,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             if (retValue == -1) {
                retValue = 0;
             }
+            if (fd==STDIN) {
+               byte[] recorded = new byte[retValue];
+               System.arraycopy(myBuffer, 0, recorded, 0, retValue);
+               ExecutionHistory.recordInput(recorded);
+            }
          } 
              catch (IOException e)
             {
@@ -478,6 +607,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
      */
        public static void resetFiles()
       {
+         flushOutput();
          FileIOData.resetFiles();
       }
    
@@ -491,6 +621,106 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          return fileErrorString;
       }
    
+   /**
+    * The file descriptor table at one moment, as returned by captureFiles(): the
+    * name and flags of each open file and its position in the file.
+    */
+       public static class OpenFiles
+      {
+         private String[] fileNames = new String[ SYSCALL_MAXFILES ];
+         private int[] fileFlags = new int[ SYSCALL_MAXFILES ];
+         private Object[] streams = new Object[ SYSCALL_MAXFILES ];
+         private long[] positions = new long[ SYSCALL_MAXFILES ];
+      }
+   
+   /**
+    * Record the open file descriptors, so that restoreFiles() can later put them
+    * back as they are now.  Pending run output is flushed first.  Console input
+    * already read cannot be taken back.
+    *
+    * @return the file descriptor table
+    */
+       public static OpenFiles captureFiles()
+      {
+         flushOutput();
+         OpenFiles files = new OpenFiles();
+         for (int fd = STDERR + 1; fd < SYSCALL_MAXFILES; fd++)
+         {
+            Object stream = FileIOData.streams[fd];
+            if (FileIOData.fileNames[fd] == null || stream == null)
+               continue;
+            try {
+               files.positions[fd] = getChannel(stream).position();
+            } 
+                catch (IOException e) {
+                  continue; // treat as closed
+               }
+            files.fileNames[fd] = FileIOData.fileNames[fd];
+            files.fileFlags[fd] = FileIOData.fileFlags[fd];
+            files.streams[fd] = stream;
+         }
+         return files;
+      }
+   
+   /**
+    * Put the file descriptor table back as it was when captured.  Files opened since
+    * are closed.  Files still open are repositioned, and those closed since are
+    * reopened at their old position; a file open for writing loses whatever was
+    * written past that position.  A file that can no longer be opened is left closed.
+    *
+    * @param files the file descriptor table returned by captureFiles()
+    */
+       public static void restoreFiles(OpenFiles files)
+      {
+         flushOutput();
+         for (int fd = STDERR + 1; fd < SYSCALL_MAXFILES; fd++)
+         {
+            Object stream = FileIOData.streams[fd];
+            if (stream != null && (stream != files.streams[fd] || !getChannel(stream).isOpen()))
+            {
+               FileIOData.close(fd);
+               stream = null;
+            }
+            if (files.fileNames[fd] == null)
+            {
+               FileIOData.close(fd);
+               continue;
+            }
+            try
+            {
+               if (stream == null)
+               {
+                  stream = (files.fileFlags[fd] == O_RDONLY)
+                     ? (Object) new FileInputStream(files.fileNames[fd])
+                     : (Object) new FileOutputStream(new RandomAccessFile(files.fileNames[fd], "rw").getFD());
+               }
+               java.nio.channels.FileChannel channel = getChannel(stream);
+               if (files.fileFlags[fd] != O_RDONLY && (files.fileFlags[fd] & O_APPEND) == 0)
+                  channel.truncate(files.positions[fd]);
+               channel.position(files.positions[fd]);
+            } 
+                catch (IOException e)
+               {
+                  fileErrorString = new String(
+                        "File " + files.fileNames[fd] + " could not be restored.");
+                  FileIOData.fileNames[fd] = null;
+                  FileIOData.fileFlags[fd] = -1;
+                  FileIOData.streams[fd] = null;
+                  continue;
+               }
+            FileIOData.fileNames[fd] = files.fileNames[fd];
+            FileIOData.fileFlags[fd] = files.fileFlags[fd];
+            FileIOData.streams[fd] = stream;
+         }
+      }
+   
+       private static java.nio.channels.FileChannel getChannel(Object stream)
+      {
+         return (stream instanceof FileInputStream)
+            ? ((FileInputStream) stream).getChannel()
+            : ((FileOutputStream) stream).getChannel();
+      }
+   
       ///////////////////////////////////////////////////////////////////////
       // Private method to simply return the BufferedReader used for
    	// keyboard input, redirected input, or piped input.
@@ -499,7 +729,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	
        private static BufferedReader getInputReader() {
          if (inputReader == null) {
-            inputReader = new BufferedReader(new InputStreamReader(System.in));  
+            inputReader = new BufferedReader(new InputStreamReader(consoleIn));  
          }
          return inputReader;
       }
@@ -532,11 +762,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             fileFlags[STDIN]  = SystemIO.O_RDONLY;
             fileFlags[STDOUT] = SystemIO.O_WRONLY;
             fileFlags[STDERR] = SystemIO.O_WRONLY;
-            streams[STDIN]  = System.in;
-            streams[STDOUT] = System.out;
-            streams[STDERR] = System.err;
-            System.out.flush();
-            System.err.flush();
+            streams[STDIN]  = consoleIn;
+            streams[STDOUT] = consoleOut;
+            streams[STDERR] = consoleErr;
+            consoleOut.flush();
+            consoleErr.flush();
          }
       
         // Preserve a stream that is in use
@@ -55,6 +55,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	// must obviously be smaller than the former.
       public static final int MAXIMUM_SCROLLED_CHARACTERS = Globals.maximumMessageCharacters;
       public static final int NUMBER_OF_CHARACTERS_TO_CUT = Globals.maximumMessageCharacters/10 ; // 10%
+      // Run output waiting for the event thread to append it; see postRunMessage().
+      private final StringBuffer pendingRunMessages = new StringBuffer();
    
    /**
      *  Constructor for the class, sets up two fresh tabbed text areas for program feedback.
@@ -298,11 +300,24 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	// "print" syscalls. "invokeLater" schedules the code to be
    	// run under the event-processing thread no matter what.
    	// DPS, 23 Aug 2005.
+   	// Messages posted before the event thread gets to them are appended
+   	// together, so a burst of output costs one invokeLater and one append.
        public void postRunMessage(String message) {
-         final String mess = message;
+         synchronized (pendingRunMessages) {
+            boolean scheduled = pendingRunMessages.length() > 0;
+            pendingRunMessages.append(message);
+            if (scheduled) {
+               return;
+            }
+         }
          SwingUtilities.invokeLater(
                 new Runnable() { 
                    public void run() { 
+                     String mess;
+                     synchronized (pendingRunMessages) {
+                        mess = pendingRunMessages.toString();
+                        pendingRunMessages.setLength(0);
+                     }
                      setSelectedComponent(runTab);
                      run.append(mess);
                   // can do some crude cutting here.  If the document gets "very large", 
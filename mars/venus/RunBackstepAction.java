@@ -1,5 +1,6 @@
    package mars.venus;
    import mars.*;
+   import mars.simulator.ExecutionHistory;
    import mars.mips.hardware.*;
    import java.awt.*;
    import java.awt.event.*;
@@ -59,6 +60,23 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          mainUI.setStarted(true);
          mainUI.messagesPane.setSelectedComponent(mainUI.messagesPane.runTab);
          executePane.getTextSegmentWindow().setCodeHighlighting(true);
+      	
+         // With nothing left to undo, go back through the execution history instead.
+         // After the program terminates, the instruction that ended it did not complete,
+         // so going back one instruction means going to just before it.
+         ExecutionHistory history = ExecutionHistory.getCurrent();
+         if (history != null && history.canReverse() && 
+             !(Globals.getSettings().getBackSteppingEnabled() && !Globals.program.getBackStepper().empty())) {
+            try {
+               history.goTo((FileStatus.get() == FileStatus.TERMINATED) ? history.getPosition() : history.getPosition() - 1);
+            } 
+                catch (ProcessingException pe) {
+                  mainUI.getMessagesPane().postMarsMessage(pe.errors().generateErrorReport());
+                  return;
+               }
+            RunRestoreSnapshotAction.showMachineState(mainUI);
+            return;
+         }
       		
          if (Globals.getSettings().getBackSteppingEnabled()) {
             boolean inDelaySlot = Globals.program.getBackStepper().inDelaySlot(); // Added 25 June 2007
@@ -66,7 +84,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 				RegisterFile.addRegistersObserver(executePane.getRegistersWindow());
 				Coprocessor0.addRegistersObserver(executePane.getCoprocessor0Window());
 				Coprocessor1.addRegistersObserver(executePane.getCoprocessor1Window());
-            Globals.program.getBackStepper().backStep();
+            synchronized (Globals.memoryAndRegistersLock) {
+               Globals.program.getBackStepper().backStep();
+            }
 				Memory.getInstance().deleteObserver(executePane.getDataSegmentWindow());
 				RegisterFile.deleteRegistersObserver(executePane.getRegistersWindow());
             executePane.getRegistersWindow().updateRegisters();
@@ -0,0 +1,95 @@
+   package mars.venus;
+   import mars.*;
+   import mars.simulator.*;
+   import java.awt.*;
+   import java.awt.event.*;
+   import javax.swing.*;
+	
+	/*
+Copyright (c) 2003-2009,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+	
+   /**
+    * Action  for the Run -> Restore snapshot menu item
+    */   
+    public class RunRestoreSnapshotAction extends GuiAction {
+   	 
+       public RunRestoreSnapshotAction(String name, Icon icon, String descrip,
+                             Integer mnemonic, KeyStroke accel, VenusUI gui) {
+         super(name, icon, descrip, mnemonic, accel, gui);
+      }
+   
+   /**
+    * put machine state back as it was at the last Save snapshot
+    */
+       public void actionPerformed(ActionEvent e){
+         String name = this.getValue(Action.NAME).toString();
+         MachineSnapshot snapshot = RunSaveSnapshotAction.getSnapshot();
+         if (snapshot == null) {
+            mainUI.getMessagesPane().postRunMessage(
+                             "\n"+name+": no snapshot has been saved since the program was assembled.\n\n");
+            return;
+         }
+         try {
+            snapshot.restore();
+         } 
+             catch (IllegalStateException ise) {
+               mainUI.getMessagesPane().postRunMessage(
+                             "\n"+name+": unable to restore, "+ise.getMessage()+".\n\n");
+               return;
+            }
+         if (Globals.program.getExecutionHistory() != null) {
+            Globals.program.getExecutionHistory().clear(); // it does not lead here
+         }
+         showMachineState(mainUI);
+         mainUI.getMessagesPane().postRunMessage(
+                             "\n"+name+": machine state restored.\n\n");
+      }
+   
+   /**
+    * Show the machine state in the Execute pane after it has been replaced as a whole,
+    * by restoring a snapshot or by reverse execution, and make the program runnable
+    * from there.
+    * @param mainUI the GUI
+    */
+       static void showMachineState(VenusUI mainUI) {
+         ExecutePane executePane = mainUI.getMainPane().getExecutePane();
+         executePane.getRegistersWindow().clearHighlighting();
+         executePane.getRegistersWindow().updateRegisters();
+         executePane.getCoprocessor1Window().clearHighlighting();
+         executePane.getCoprocessor1Window().updateRegisters();
+         executePane.getCoprocessor0Window().clearHighlighting();
+         executePane.getCoprocessor0Window().updateRegisters();
+         executePane.getDataSegmentWindow().updateValues();
+         executePane.getDataSegmentWindow().clearHighlighting();
+         executePane.getTextSegmentWindow().setCodeHighlighting(true);
+         executePane.getTextSegmentWindow().highlightStepAtPC();
+         FileStatus.set(FileStatus.RUNNABLE);
+         mainUI.setReset(false);
+         mainUI.setStarted(true);
+      }
+   }
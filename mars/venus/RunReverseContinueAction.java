@@ -0,0 +1,73 @@
+   package mars.venus;
+   import mars.*;
+   import mars.simulator.*;
+   import java.awt.*;
+   import java.awt.event.*;
+   import javax.swing.*;
+	
+	/*
+Copyright (c) 2003-2009,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+	
+   /**
+    * Action  for the Run -> Reverse continue menu item
+    */   
+    public class RunReverseContinueAction extends GuiAction {
+   	 
+       public RunReverseContinueAction(String name, Icon icon, String descrip,
+                             Integer mnemonic, KeyStroke accel, VenusUI gui) {
+         super(name, icon, descrip, mnemonic, accel, gui);
+      }
+   
+   /**
+    * run backward to the most recent point at which execution reached a breakpoint
+    */
+       public void actionPerformed(ActionEvent e){
+         String name = this.getValue(Action.NAME).toString();
+         ExecutionHistory history = ExecutionHistory.getCurrent();
+         if (history == null || !history.canReverse()) {
+            mainUI.getMessagesPane().postRunMessage(
+                             "\n"+name+": no earlier execution is recorded.  Reverse execution is enabled in the Settings menu.\n\n");
+            return;
+         }
+         int[] breakPoints = mainUI.getMainPane().getExecutePane().getTextSegmentWindow().getSortedBreakPointsArray();
+         boolean found;
+         try {
+            found = history.reverseContinue(breakPoints);
+         } 
+             catch (ProcessingException pe) {
+               mainUI.getMessagesPane().postMarsMessage(pe.errors().generateErrorReport());
+               mainUI.getMessagesPane().postRunMessage(
+                             "\n"+name+": the program no longer runs as recorded.\n\n");
+               return;
+            }
+         RunRestoreSnapshotAction.showMachineState(mainUI);
+         mainUI.getMessagesPane().postRunMessage(found 
+                             ? "\n"+name+": stopped at breakpoint.\n\n"
+                             : "\n"+name+": no earlier breakpoint, stopped at earliest recorded point.\n\n");
+      }
+   }
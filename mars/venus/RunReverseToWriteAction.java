@@ -0,0 +1,93 @@
+   package mars.venus;
+   import mars.*;
+   import mars.simulator.*;
+   import mars.mips.hardware.*;
+   import java.awt.*;
+   import java.awt.event.*;
+   import javax.swing.*;
+	
+	/*
+Copyright (c) 2003-2009,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+	
+   /**
+    * Action  for the Run -> Reverse to register write menu item
+    */   
+    public class RunReverseToWriteAction extends GuiAction {
+   	 
+       private String lastRegisterName = "$t0";
+   
+       public RunReverseToWriteAction(String name, Icon icon, String descrip,
+                             Integer mnemonic, KeyStroke accel, VenusUI gui) {
+         super(name, icon, descrip, mnemonic, accel, gui);
+      }
+   
+   /**
+    * run backward to just before the most recent instruction that wrote a register
+    */
+       public void actionPerformed(ActionEvent e){
+         String name = this.getValue(Action.NAME).toString();
+         ExecutionHistory history = ExecutionHistory.getCurrent();
+         if (history == null || !history.canReverse()) {
+            mainUI.getMessagesPane().postRunMessage(
+                             "\n"+name+": no earlier execution is recorded.  Reverse execution is enabled in the Settings menu.\n\n");
+            return;
+         }
+         String registerName = JOptionPane.showInputDialog(mainUI,
+                             "Run backward to the last write of register:", lastRegisterName);
+         if (registerName == null || registerName.trim().length() == 0) {
+            return;
+         }
+         registerName = registerName.trim();
+         Register register = RegisterFile.getUserRegister(registerName);
+         if (register == null) {
+            register = Coprocessor1.getRegister(registerName);
+         }
+         if (register == null) {
+            register = Coprocessor0.getRegister(registerName);
+         }
+         if (register == null) {
+            JOptionPane.showMessageDialog(mainUI, "\""+registerName+"\" is not a register name.");
+            return;
+         }
+         lastRegisterName = registerName;
+         boolean found;
+         try {
+            found = history.reverseToWrite(register);
+         } 
+             catch (ProcessingException pe) {
+               mainUI.getMessagesPane().postMarsMessage(pe.errors().generateErrorReport());
+               mainUI.getMessagesPane().postRunMessage(
+                             "\n"+name+": the program no longer runs as recorded.\n\n");
+               return;
+            }
+         RunRestoreSnapshotAction.showMachineState(mainUI);
+         mainUI.getMessagesPane().postRunMessage(found 
+                             ? "\n"+name+": stopped before the instruction that writes "+registerName+".\n\n"
+                             : "\n"+name+": "+registerName+" is not written earlier, stopped at earliest recorded point.\n\n");
+      }
+   }
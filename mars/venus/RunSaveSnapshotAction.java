@@ -0,0 +1,73 @@
+   package mars.venus;
+   import mars.*;
+   import mars.simulator.*;
+   import java.awt.*;
+   import java.awt.event.*;
+   import javax.swing.*;
+   import java.util.*;
+	
+	/*
+Copyright (c) 2003-2009,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+	
+   /**
+    * Action  for the Run -> Save snapshot menu item
+    */   
+    public class RunSaveSnapshotAction extends GuiAction {
+   
+      // The saved snapshot, and the program it was taken of.
+      private static MachineSnapshot snapshot = null;
+      private static ArrayList snapshotProgram = null;
+   	 
+       public RunSaveSnapshotAction(String name, Icon icon, String descrip,
+                             Integer mnemonic, KeyStroke accel, VenusUI gui) {
+         super(name, icon, descrip, mnemonic, accel, gui);
+      }
+   
+   /**
+    * capture machine state, replacing any snapshot saved before
+    */
+       public void actionPerformed(ActionEvent e){
+         String name = this.getValue(Action.NAME).toString();
+         snapshot = MachineSnapshot.capture();
+         snapshotProgram = Globals.program.getMachineList();
+         mainUI.getMessagesPane().postRunMessage(
+                             "\n"+name+": machine state saved.\n\n");
+      }
+   
+   /**
+    * Get the saved snapshot, if it was taken of the program now assembled.
+    * @return the snapshot, or null if there is none for this program
+    */
+       static MachineSnapshot getSnapshot() {
+         if (snapshot == null || Globals.program == null ||
+             snapshotProgram != Globals.program.getMachineList()) {
+            return null;
+         }
+         return snapshot;
+      }
+   }
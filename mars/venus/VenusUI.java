@@ -1,5 +1,6 @@
    package mars.venus;
    import mars.*;
+   import mars.simulator.ExecutionHistory;
    import mars.mips.dump.*;
    import javax.swing.*;
    import java.awt.*;
@@ -74,10 +75,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       private JMenu file, run, window, help, edit, settings; // , language;
       private JMenuItem fileNew, fileOpen, fileClose, fileCloseAll, fileSave, fileSaveAs, fileSaveAll, fileDumpMemory, filePrint, fileExit;
       private JMenuItem editUndo, editRedo, editCut, editCopy, editPaste, editFindReplace, editSelectAll;
-      private JMenuItem runGo, runStep, runBackstep, runReset, runAssemble, runStop, runPause, runClearBreakpoints, runToggleBreakpoints;
+      private JMenuItem runGo, runStep, runBackstep, runReset, runSaveSnapshot, runRestoreSnapshot, runReverseContinue, runReverseToWrite, runAssemble, runStop, runPause, runClearBreakpoints, runToggleBreakpoints;
       private JCheckBoxMenuItem settingsLabel, settingsPopupInput, settingsValueDisplayBase, settingsAddressDisplayBase,
               settingsExtended, settingsAssembleOnOpen, settingsAssembleAll, settingsWarningsAreErrors, settingsStartAtMain,
-      		  settingsDelayedBranching, settingsProgramArguments, settingsSelfModifyingCode;
+      		  settingsDelayedBranching, settingsProgramArguments, settingsSelfModifyingCode,
+      		  settingsReverseExecution;
       private JMenuItem settingsExceptionHandler, settingsEditor, settingsHighlighting, settingsMemoryConfiguration;
       private JMenuItem helpHelp, helpAbout;
          
@@ -97,12 +99,13 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       EditRedoAction editRedoAction;
       private Action editCutAction, editCopyAction, editPasteAction, editFindReplaceAction, editSelectAllAction;
       private Action runAssembleAction, runGoAction, runStepAction, runBackstepAction, runResetAction, 
-                     runStopAction, runPauseAction, runClearBreakpointsAction, runToggleBreakpointsAction;
+                     runSaveSnapshotAction, runRestoreSnapshotAction, runReverseContinueAction, runReverseToWriteAction, runStopAction, runPauseAction, runClearBreakpointsAction, runToggleBreakpointsAction;
       private Action settingsLabelAction, settingsPopupInputAction, settingsValueDisplayBaseAction, settingsAddressDisplayBaseAction,
                      settingsExtendedAction, settingsAssembleOnOpenAction, settingsAssembleAllAction,
       					settingsWarningsAreErrorsAction, settingsStartAtMainAction, settingsProgramArgumentsAction,
       					settingsDelayedBranchingAction, settingsExceptionHandlerAction, settingsEditorAction,
-      					settingsHighlightingAction, settingsMemoryConfigurationAction, settingsSelfModifyingCodeAction;    
+      					settingsHighlightingAction, settingsMemoryConfigurationAction, settingsSelfModifyingCodeAction,
+      					settingsReverseExecutionAction;    
       private Action helpHelpAction, helpAboutAction;
    
    
@@ -352,6 +355,26 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                									  "Reset MIPS memory and registers", new Integer(KeyEvent.VK_R),
                									  KeyStroke.getKeyStroke( KeyEvent.VK_F12,0),
                									  mainUI);	
+            runSaveSnapshotAction = new RunSaveSnapshotAction("Save snapshot",
+                                            null,
+               									  "Save the current MIPS memory, registers and open files, to return to later",
+               									  null, null,
+               									  mainUI);
+            runRestoreSnapshotAction = new RunRestoreSnapshotAction("Restore snapshot",
+                                            null,
+               									  "Return MIPS memory, registers and open files to the last saved snapshot",
+               									  null, null,
+               									  mainUI);
+            runReverseContinueAction = new RunReverseContinueAction("Reverse continue",
+                                            null,
+               									  "Run backward to the most recent breakpoint (requires Reverse execution setting)",
+               									  null, null,
+               									  mainUI);
+            runReverseToWriteAction = new RunReverseToWriteAction("Reverse to register write...",
+                                            null,
+               									  "Run backward to the most recent change of a register (requires Reverse execution setting)",
+               									  null, null,
+               									  mainUI);
             runClearBreakpointsAction = new RunClearBreakpointsAction("Clear all breakpoints",
                                             null,
                									  "Clears all execution breakpoints set since the last assemble.",
@@ -425,6 +448,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                									  "If set, the MIPS program can write and branch to both text and data segments.",
                									  null,null,
                									  mainUI);
+            settingsReverseExecutionAction  = new SettingsReverseExecutionAction("Reverse execution",
+                                            null,
+               									  "If set, MIPS execution is recorded so the program can be run backward.",
+               									  null,null,
+               									  mainUI);
             settingsEditorAction          = new SettingsEditorAction("Editor...",
                                             null,
                									  "View and modify text editor settings.",
@@ -556,6 +584,14 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          runBackstep.setIcon(new ImageIcon(tk.getImage(cs.getResource(Globals.imagesPath+"StepBack16.png"))));//"MyStepBack16.gif"))));
          runReset = new JMenuItem(runResetAction);
          runReset.setIcon(new ImageIcon(tk.getImage(cs.getResource(Globals.imagesPath+"Reset16.png"))));//"MyReset16.gif"))));
+         runSaveSnapshot = new JMenuItem(runSaveSnapshotAction);
+         runSaveSnapshot.setIcon(new ImageIcon(tk.getImage(cs.getResource(Globals.imagesPath+"MyBlank16.gif"))));
+         runRestoreSnapshot = new JMenuItem(runRestoreSnapshotAction);
+         runRestoreSnapshot.setIcon(new ImageIcon(tk.getImage(cs.getResource(Globals.imagesPath+"MyBlank16.gif"))));
+         runReverseContinue = new JMenuItem(runReverseContinueAction);
+         runReverseContinue.setIcon(new ImageIcon(tk.getImage(cs.getResource(Globals.imagesPath+"MyBlank16.gif"))));
+         runReverseToWrite = new JMenuItem(runReverseToWriteAction);
+         runReverseToWrite.setIcon(new ImageIcon(tk.getImage(cs.getResource(Globals.imagesPath+"MyBlank16.gif"))));
          runStop = new JMenuItem(runStopAction);
          runStop.setIcon(new ImageIcon(tk.getImage(cs.getResource(Globals.imagesPath+"Stop16.png"))));//"Stop16.gif"))));
          runPause = new JMenuItem(runPauseAction);
@@ -573,6 +609,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          run.add(runStop);
          run.add(runReset);
          run.addSeparator();
+         run.add(runSaveSnapshot);
+         run.add(runRestoreSnapshot);
+         run.add(runReverseContinue);
+         run.add(runReverseToWrite);
+         run.addSeparator();
          run.add(runClearBreakpoints);
          run.add(runToggleBreakpoints);
       	
@@ -594,6 +635,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          settingsDelayedBranching.setSelected(Globals.getSettings().getDelayedBranchingEnabled());
          settingsSelfModifyingCode = new JCheckBoxMenuItem(settingsSelfModifyingCodeAction);
          settingsSelfModifyingCode.setSelected(Globals.getSettings().getBooleanSetting(Settings.SELF_MODIFYING_CODE_ENABLED));
+         settingsReverseExecution = new JCheckBoxMenuItem(settingsReverseExecutionAction);
+         settingsReverseExecution.setSelected(Globals.getSettings().getBooleanSetting(Settings.REVERSE_EXECUTION_ENABLED));
          settingsAssembleOnOpen = new JCheckBoxMenuItem(settingsAssembleOnOpenAction);
          settingsAssembleOnOpen.setSelected(Globals.getSettings().getAssembleOnOpenEnabled());
          settingsAssembleAll = new JCheckBoxMenuItem(settingsAssembleAllAction);
@@ -623,6 +666,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          settings.add(settingsExtended);
          settings.add(settingsDelayedBranching);
          settings.add(settingsSelfModifyingCode);
+         settings.add(settingsReverseExecution);
          settings.addSeparator();
          settings.add(settingsEditor);
          settings.add(settingsHighlighting);
@@ -818,6 +862,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          runStepAction.setEnabled(false);
          runBackstepAction.setEnabled(false);
          runResetAction.setEnabled(false);
+         runSaveSnapshotAction.setEnabled(false);
+         runRestoreSnapshotAction.setEnabled(false);
+         runReverseContinueAction.setEnabled(false);
+         runReverseToWriteAction.setEnabled(false);
          runStopAction.setEnabled(false);
          runPauseAction.setEnabled(false);
          runClearBreakpointsAction.setEnabled(false);
@@ -858,6 +906,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             runStepAction.setEnabled(false);
             runBackstepAction.setEnabled(false);
             runResetAction.setEnabled(false);
+            runSaveSnapshotAction.setEnabled(false);
+            runRestoreSnapshotAction.setEnabled(false);
+            runReverseContinueAction.setEnabled(false);
+            runReverseToWriteAction.setEnabled(false);
             runStopAction.setEnabled(false);
             runPauseAction.setEnabled(false);
             runClearBreakpointsAction.setEnabled(false);
@@ -896,6 +948,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          runStepAction.setEnabled(false);
          runBackstepAction.setEnabled(false);
          runResetAction.setEnabled(false);
+         runSaveSnapshotAction.setEnabled(false);
+         runRestoreSnapshotAction.setEnabled(false);
+         runReverseContinueAction.setEnabled(false);
+         runReverseToWriteAction.setEnabled(false);
          runStopAction.setEnabled(false);
          runPauseAction.setEnabled(false);
          runClearBreakpointsAction.setEnabled(false);
@@ -932,6 +988,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          runStepAction.setEnabled(false);
          runBackstepAction.setEnabled(false);
          runResetAction.setEnabled(false);
+         runSaveSnapshotAction.setEnabled(false);
+         runRestoreSnapshotAction.setEnabled(false);
+         runReverseContinueAction.setEnabled(false);
+         runReverseToWriteAction.setEnabled(false);
          runStopAction.setEnabled(false);
          runPauseAction.setEnabled(false);
          runClearBreakpointsAction.setEnabled(false);
@@ -942,6 +1002,12 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          editRedoAction.updateRedoState();
       }
     	 
+     // Backstep also goes back through the execution history when reverse execution is on.
+       private static boolean reverseExecutionAvailable() {
+         ExecutionHistory history = ExecutionHistory.getCurrent();
+         return history != null && history.canReverse();
+      }
+    	 
      /* Use this upon successful assemble or reset
       */
        void setMenuStateRunnable() {
@@ -968,8 +1034,12 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          runStepAction.setEnabled(true);
          runBackstepAction.setEnabled(
             (Globals.getSettings().getBackSteppingEnabled()&& !Globals.program.getBackStepper().empty())
-             ? true : false);
+             || reverseExecutionAvailable());
          runResetAction.setEnabled(true);
+         runSaveSnapshotAction.setEnabled(true);
+         runRestoreSnapshotAction.setEnabled(true);
+         runReverseContinueAction.setEnabled(true);
+         runReverseToWriteAction.setEnabled(true);
          runStopAction.setEnabled(false);
          runPauseAction.setEnabled(false);
          runToggleBreakpointsAction.setEnabled(true);
@@ -1005,6 +1075,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          runStepAction.setEnabled(false);
          runBackstepAction.setEnabled(false);
          runResetAction.setEnabled(false);
+         runSaveSnapshotAction.setEnabled(false);
+         runRestoreSnapshotAction.setEnabled(false);
+         runReverseContinueAction.setEnabled(false);
+         runReverseToWriteAction.setEnabled(false);
          runStopAction.setEnabled(true);
          runPauseAction.setEnabled(true);
          runToggleBreakpointsAction.setEnabled(false);
@@ -1039,8 +1113,12 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          runStepAction.setEnabled(false);
          runBackstepAction.setEnabled(
             (Globals.getSettings().getBackSteppingEnabled()&& !Globals.program.getBackStepper().empty())
-             ? true : false);
+             || reverseExecutionAvailable());
          runResetAction.setEnabled(true);
+         runSaveSnapshotAction.setEnabled(true);
+         runRestoreSnapshotAction.setEnabled(true);
+         runReverseContinueAction.setEnabled(true);
+         runReverseToWriteAction.setEnabled(true);
          runStopAction.setEnabled(false);
          runPauseAction.setEnabled(false);
          runToggleBreakpointsAction.setEnabled(true);
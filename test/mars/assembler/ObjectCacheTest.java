@@ -0,0 +1,97 @@
+   package mars.assembler;
+   import mars.*;
+   import mars.mips.hardware.*;
+   import java.io.*;
+   import java.util.*;
+
+/**
+ * Checks that a program loaded from the object cache starts with the same data memory as
+ * one just assembled, including data placed in the stack region, the kernel data segment
+ * and the ordinary data segment.  Run from the MARS directory:
+ * <pre>
+ *   javac -d test-classes -cp . test/mars/assembler/ObjectCacheTest.java
+ *   java -cp test-classes:. mars.assembler.ObjectCacheTest
+ * </pre>
+ * Prints each failed check and exits with status 1 if there was one.
+ */
+    public class ObjectCacheTest {
+      private static final String SOURCE =
+           ".data\n" +
+           "d: .word 1, 2, 3\n" +
+           ".data 0x7ffffff0\n" +
+           "v: .word 12345\n" +
+           ".data 0x7fffeff8\n" +
+           "w: .word 55, 66, 77, 88\n" +
+           ".kdata\n" +
+           "k: .word 111\n" +
+           ".text\n" +
+           "lw $a0, v\n";
+      private static final int[][] EXPECTED = {
+           {Memory.dataBaseAddress + 8, 3},
+           {0x7ffffff0, 12345},
+           {0x7fffeff8, 55},
+           {0x7ffff004, 88},  // in the next stack block up
+           {Memory.kernelDataBaseAddress, 111},
+           };
+      private static int failures = 0;
+   
+       public static void main(String[] args) throws Exception {
+         Globals.initialize(false);
+         File directory = createTempDirectory();
+         File source = new File(directory, "stack.asm");
+         Writer writer = new FileWriter(source);
+         writer.write(SOURCE);
+         writer.close();
+         ArrayList files = new ArrayList();
+         files.add(source.getAbsolutePath());
+         ObjectCache cache = new ObjectCache(new File(directory, "cache"));
+      
+         Globals.memory.clear();
+         MIPSprogram assembled = new MIPSprogram();
+         ArrayList programs = assembled.prepareFilesForAssembly(files, source.getAbsolutePath(), null);
+         ErrorList warnings = assembled.assemble(programs, true, false);
+         checkMemory("assembled");
+         cache.store(programs, warnings, files, source.getAbsolutePath(), true, false);
+      
+         Globals.memory.clear();
+         MIPSprogram loaded = new MIPSprogram();
+         check(cache.load(loaded, files, source.getAbsolutePath(), true, false) != null, "object file was not loaded");
+         checkMemory("loaded");
+      
+         deleteTree(directory);
+         System.out.println((failures == 0) ? "ObjectCacheTest passed" : "ObjectCacheTest failed");
+         System.exit((failures == 0) ? 0 : 1);
+      }
+   
+       private static void checkMemory(String when) throws AddressErrorException {
+         for (int i=0; i<EXPECTED.length; i++) {
+            int value = Globals.memory.getWord(EXPECTED[i][0]);
+            check(value == EXPECTED[i][1], when + ": word at " + mars.util.Binary.intToHexString(EXPECTED[i][0])
+                  + " is " + value + ", expected " + EXPECTED[i][1]);
+         }
+      }
+   
+       private static void check(boolean condition, String message) {
+         if (!condition) {
+            failures++;
+            System.out.println("FAILED: " + message);
+         }
+      }
+   
+       private static File createTempDirectory() throws IOException {
+         File directory = File.createTempFile("objectcache", "");
+         directory.delete();
+         directory.mkdir();
+         return directory;
+      }
+   
+       private static void deleteTree(File file) {
+         File[] children = file.listFiles();
+         if (children != null) {
+            for (int i=0; i<children.length; i++) {
+               deleteTree(children[i]);
+            }
+         }
+         file.delete();
+      }
+   }
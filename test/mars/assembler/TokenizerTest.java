@@ -0,0 +1,59 @@
+   package mars.assembler;
+   import mars.*;
+   import java.io.*;
+   import java.util.*;
+
+/**
+ * Checks that the tokenizer reports an invalid language element once, on a line without
+ * .include and on a line after one.  Run from the MARS directory:
+ * <pre>
+ *   javac -d test-classes -cp . test/mars/assembler/TokenizerTest.java
+ *   java -cp test-classes:. mars.assembler.TokenizerTest
+ * </pre>
+ * Prints each failed check and exits with status 1 if there was one.
+ */
+    public class TokenizerTest {
+      private static int failures = 0;
+   
+       public static void main(String[] args) throws Exception {
+         Globals.initialize(false);
+         File directory = File.createTempFile("tokenizer", "");
+         directory.delete();
+         directory.mkdir();
+         File included = write(directory, "included.asm", "nop\n");
+         checkErrorCount(write(directory, "plain.asm", ".text\naddi $t0, $t0, 1abc\n"), 1);
+         checkErrorCount(write(directory, "include.asm", ".include \"" + included.getName() + "\"\n" +
+                                                         "addi $t0, $t0, 1abc\n"), 1);
+         included.delete();
+         new File(directory, "plain.asm").delete();
+         new File(directory, "include.asm").delete();
+         directory.delete();
+         System.out.println((failures == 0) ? "TokenizerTest passed" : "TokenizerTest failed");
+         System.exit((failures == 0) ? 0 : 1);
+      }
+   
+    // Tokenize the file and check how many errors are reported.
+       private static void checkErrorCount(File file, int expected) {
+         MIPSprogram program = new MIPSprogram();
+         int count = 0;
+         try {
+            program.readSource(file.getAbsolutePath());
+            program.tokenize();
+         } 
+             catch (ProcessingException e) {
+               count = e.errors().errorCount();
+            }
+         if (count != expected) {
+            failures++;
+            System.out.println("FAILED: " + file.getName() + " reported " + count + " errors, expected " + expected);
+         }
+      }
+   
+       private static File write(File directory, String name, String contents) throws IOException {
+         File file = new File(directory, name);
+         Writer writer = new FileWriter(file);
+         writer.write(contents);
+         writer.close();
+         return file;
+      }
+   }